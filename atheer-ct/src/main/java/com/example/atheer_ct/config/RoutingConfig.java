@@ -0,0 +1,17 @@
+package com.example.atheer_ct.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+public class RoutingConfig {
+
+    // Shared workers for snapshot preprocessing and parallel routing work
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool routingPool(@Value("${atheer.routing.parallelism:0}") int parallelism) {
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -1,10 +1,12 @@
 package com.example.atheer_ct.controllers;
 
 import com.example.atheer_ct.dto.TowerDto;
+import com.example.atheer_ct.graph.TowerSnapshot;
 import com.example.atheer_ct.services.CombinedPathService;
 import com.example.atheer_ct.services.OldPathService;
 import com.example.atheer_ct.services.POPService;
 import com.example.atheer_ct.services.PathService;
+import com.example.atheer_ct.services.TowerService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -20,17 +22,20 @@ public class TowerController {
     private final POPService popService;
     private final OldPathService oldPathService;
     private final CombinedPathService combinedPathService;
+    private final TowerService towerService;
 
-    public TowerController(PathService pathService, POPService popService, OldPathService oldPathService, CombinedPathService combinedPathService) {
+    public TowerController(PathService pathService, POPService popService, OldPathService oldPathService, CombinedPathService combinedPathService, TowerService towerService) {
         this.oldPathService = oldPathService;
         this.pathService = pathService;
         this.combinedPathService = combinedPathService;
         this.popService = popService;
+        this.towerService = towerService;
 
     }
     @GetMapping("/findpath")
-    public ResponseEntity<?> getShortestPath(@RequestParam  double startLat, @RequestParam double startLon, @RequestParam double endLat, @RequestParam double endLon) {
-        Map<String, Object> path = combinedPathService.findShortestPath(startLat, startLon , endLat, endLon);
+    public ResponseEntity<?> getShortestPath(@RequestParam  double startLat, @RequestParam double startLon, @RequestParam double endLat, @RequestParam double endLon,
+                                             @RequestParam(defaultValue = "false") boolean legacy) {
+        Map<String, Object> path = combinedPathService.findShortestPath(startLat, startLon , endLat, endLon, legacy);
         if (path.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No path found.");
         }
@@ -44,17 +49,42 @@ public class TowerController {
         }
         return ResponseEntity.ok(path);
     }
+    @GetMapping("/towers/nearest")
+    public ResponseEntity<?> getNearestTowers(@RequestParam double lat, @RequestParam double lon, @RequestParam(defaultValue = "5") int k) {
+        if (k <= 0 || k > 1000) {
+            return ResponseEntity.badRequest().body(Map.of("error", "k must be between 1 and 1000."));
+        }
+        return ResponseEntity.ok(towerService.findNearestTowers(lat, lon, k));
+    }
+    @PostMapping("/towers/refresh")
+    public ResponseEntity<?> refreshTowers() {
+        // Reload towers after the database has been (re)populated
+        TowerSnapshot snapshot = towerService.refreshSnapshot();
+        return ResponseEntity.ok(Map.of(
+                "version", snapshot.getVersion(),
+                "towerCount", snapshot.size()
+        ));
+    }
     @PostMapping("/pop")
     public ResponseEntity<?> getPOPMapping(
             @RequestParam double popLat,
             @RequestParam double popLon,
             @RequestParam(required = false) boolean optimizeTowers,
+            @RequestParam(defaultValue = "greedy") String mode,
+            @RequestParam(defaultValue = "0") long maxMillis,
             @RequestBody List<Map<String, Double>> destinations) {
 
+        if (!mode.equals("greedy") && !mode.equals("exact")) {
+            return ResponseEntity.badRequest().body(Map.of("error", "mode must be greedy or exact."));
+        }
+        if (maxMillis < 0 || maxMillis > 60000) {
+            return ResponseEntity.badRequest().body(Map.of("error", "maxMillis must be between 0 and 60000."));
+        }
+
         try {
             Map<String, Object> result;
 
-                result = popService.findMinimumTowerPOPPaths(popLat, popLon, destinations);
+                result = popService.findMinimumTowerPOPPaths(popLat, popLon, destinations, mode.equals("exact"), maxMillis);
 
             return ResponseEntity.ok(result);
         } catch (Exception e) {
@@ -0,0 +1,100 @@
+package com.example.atheer_ct.graph;
+
+import java.util.Arrays;
+
+/**
+ * Weighted A* over a {@link QueryGraph}. A node's heuristic is the larger of its straight-line
+ * distance to the end and the snapshot's landmark (ALT) bound, and f = g + weight * h is fixed
+ * when a node is pushed or its key is lowered; the frontier is an {@link IndexedMinHeap}, so
+ * queued entries never go stale.
+ * The zigzag penalty is part of the edge cost: each edge costs its length plus
+ * bearingPenalty per degree its stored bearing deviates from the start-to-end bearing.
+ */
+public final class AStarSearch {
+
+    private AStarSearch() {
+    }
+
+    /**
+     * @param heuristicWeight multiplier on the straight-line distance to the end (1 = plain A*)
+     * @param bearingPenalty  cost per degree of deviation from the start-to-end bearing, 0 for none
+     * @param maxDetourKm     skip neighbors this much farther from the end than the current node
+     * @return node ids from start to end, or an empty array when the end is unreachable
+     */
+    public static int[] findPath(QueryGraph query, int start, int end,
+                                 double heuristicWeight, double bearingPenalty, double maxDetourKm) {
+        int nodeCount = query.nodeCount();
+        double[] g = new double[nodeCount];
+        Arrays.fill(g, Double.POSITIVE_INFINITY);
+        double[] h = new double[nodeCount];
+        Arrays.fill(h, Double.NaN);
+        int[] parent = new int[nodeCount];
+        Arrays.fill(parent, -1);
+        IndexedMinHeap open = new IndexedMinHeap(nodeCount);
+        QueryGraph.Cursor cursor = query.cursor();
+
+        double endLat = query.lat(end);
+        double endLon = query.lon(end);
+        Landmarks landmarks = query.getSnapshot().getLandmarks();
+        Landmarks.Target target = landmarks.target(query, end);
+        double idealBearing = GeoMath.bearingDeg(query.lat(start), query.lon(start), endLat, endLon);
+
+        g[start] = 0;
+        open.insertOrDecrease(start, heuristicWeight * heuristic(query, start, endLat, endLon, h));
+
+        while (!open.isEmpty()) {
+            int current = open.poll();
+            if (current == end) {
+                break;
+            }
+
+            double currentToEnd = h[current];
+
+            cursor.reset(current);
+            while (cursor.next()) {
+                int neighbor = cursor.target();
+                double neighborToEnd = heuristic(query, neighbor, endLat, endLon, h);
+
+                // Only consider towers that don't take us too far off course
+                if (neighborToEnd > currentToEnd + maxDetourKm) {
+                    continue;
+                }
+
+                double cost = cursor.length();
+                if (bearingPenalty > 0) {
+                    double deviation = Math.abs(cursor.bearing() - idealBearing);
+                    if (deviation > 180) deviation = 360 - deviation;
+                    cost += bearingPenalty * deviation;
+                }
+
+                // A better route to a node re-queues it, even if it was expanded before
+                double tentative = g[current] + cost;
+                if (tentative < g[neighbor]) {
+                    g[neighbor] = tentative;
+                    parent[neighbor] = current;
+                    double bound = Math.max(neighborToEnd, landmarks.lowerBound(query, neighbor, target));
+                    open.insertOrDecrease(neighbor, tentative + heuristicWeight * bound);
+                }
+            }
+        }
+
+        if (start != end && parent[end] == -1) {
+            return new int[0];
+        }
+
+        int length = 1;
+        for (int node = end; node != start; node = parent[node]) length++;
+        int[] path = new int[length];
+        for (int node = end, i = length - 1; i >= 0; node = parent[node], i--) path[i] = node;
+        return path;
+    }
+
+    private static double heuristic(QueryGraph query, int node, double endLat, double endLon, double[] cache) {
+        double value = cache[node];
+        if (Double.isNaN(value)) {
+            value = GeoMath.distanceKm(query.lat(node), query.lon(node), endLat, endLon);
+            cache[node] = value;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.atheer_ct.graph;
+
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+/**
+ * Anytime local search over a POP backbone (the POP plus the towers chosen to reach the
+ * destinations). Each move keeps every destination linked and the backbone connected and
+ * strictly lowers the tower count:
+ * <ul>
+ *   <li>drop a tower the backbone does not need,</li>
+ *   <li>replace a key path (a chain of relay towers between two towers that matter) with a
+ *       shorter bridge,</li>
+ *   <li>move a leaf tower's destinations to a tower that is reached with fewer towers.</li>
+ * </ul>
+ * The search stops at its deadline, when stopped, or when no move helps; {@link #best()} is the
+ * best backbone so far at any time.
+ */
+public final class BackboneImprover {
+
+    private final QueryGraph query;
+    private final int root;
+    private final BitSet[] coverage; // destinations (by position) each node links to, null when none
+    private final BitSet required;   // destinations the starting backbone links
+    private final long deadline;     // System.nanoTime() value
+    private final BitSet selected;
+
+    private volatile BitSet best;
+    private volatile int iterations;
+    private volatile boolean stopped;
+
+    // Search scratch, indexed by query node
+    private final int[] parent;
+    private final int[] queue;
+    private final int[] childCount;
+    private final int[] order;
+    private int orderSize;
+    private final BitSet visited;
+    private final int[] via;       // bridge search: node it was reached from, -1 for sources
+    private final BitSet reached;
+    private final QueryGraph.Cursor cursor;
+
+    /**
+     * @param backbone      selected nodes, including the root; not modified
+     * @param deadlineNanos System.nanoTime() value after which no further move is started
+     */
+    public BackboneImprover(QueryGraph query, int root, int[] destinations, BitSet backbone, long deadlineNanos) {
+        this.query = query;
+        this.root = root;
+        this.deadline = deadlineNanos;
+        this.selected = (BitSet) backbone.clone();
+        this.best = (BitSet) backbone.clone();
+
+        int n = query.nodeCount();
+        coverage = new BitSet[n];
+        for (int d = 0; d < destinations.length; d++) {
+            for (int tower : query.realAttachments(destinations[d])) {
+                coverageOf(tower).set(d);
+            }
+            if (query.inLinkRange(root, destinations[d])) {
+                coverageOf(root).set(d);
+            }
+        }
+        required = covered(selected);
+
+        parent = new int[n];
+        queue = new int[n];
+        childCount = new int[n];
+        order = new int[n];
+        visited = new BitSet(n);
+        via = new int[n];
+        reached = new BitSet(n);
+        cursor = query.cursor();
+    }
+
+    private BitSet coverageOf(int node) {
+        if (coverage[node] == null) {
+            coverage[node] = new BitSet();
+        }
+        return coverage[node];
+    }
+
+    /**
+     * Improves until the deadline, a stop request, or a local optimum.
+     */
+    public void run() {
+        while (!expired()) {
+            boolean improved = prune();
+            if (!expired()) improved |= exchangeKeyPath();
+            if (!expired()) improved |= reattachLeaf();
+            if (!improved) break;
+        }
+    }
+
+    /**
+     * Makes the search stop before its next move.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Best backbone found so far.
+     */
+    public BitSet best() {
+        return (BitSet) best.clone();
+    }
+
+    /**
+     * Number of improving moves made.
+     */
+    public int iterations() {
+        return iterations;
+    }
+
+    private boolean expired() {
+        return stopped || System.nanoTime() - deadline >= 0;
+    }
+
+    private void accept() {
+        best = (BitSet) selected.clone();
+        iterations++;
+    }
+
+    /**
+     * Drops every tower whose removal keeps the backbone valid.
+     */
+    boolean prune() {
+        boolean improved = false;
+        for (int v = selected.nextSetBit(0); v >= 0; v = selected.nextSetBit(v + 1)) {
+            if (v == root) continue;
+            if (expired()) break;
+            selected.clear(v);
+            if (isValid()) {
+                accept();
+                improved = true;
+            } else {
+                selected.set(v);
+            }
+        }
+        return improved;
+    }
+
+    /**
+     * Replaces the first key path that has a shorter bridge between the two parts it joins.
+     */
+    boolean exchangeKeyPath() {
+        buildTree();
+        BitSet removed = new BitSet();
+        for (int i = 1; i < orderSize; i++) {
+            if (expired()) return false;
+            int v = order[i];
+            if (!isKey(v) || isKey(parent[v])) continue;
+
+            removed.clear();
+            for (int w = parent[v]; !isKey(w); w = parent[w]) {
+                removed.set(w);
+            }
+            BitSet lower = subtree(v);
+            BitSet upper = (BitSet) selected.clone();
+            upper.andNot(lower);
+            upper.andNot(removed);
+
+            selected.andNot(removed);
+            int[] bridge = bridge(lower, upper::get);
+            if (bridge != null && bridge.length - 1 < removed.cardinality()) {
+                for (int node : bridge) selected.set(node);
+                accept();
+                return true;
+            }
+            selected.or(removed);
+        }
+        return false;
+    }
+
+    /**
+     * Moves the destinations of the first leaf tower to a tower that costs fewer towers to reach
+     * than the leaf and the relays leading to it.
+     */
+    boolean reattachLeaf() {
+        buildTree();
+        BitSet removed = new BitSet();
+        for (int i = 1; i < orderSize; i++) {
+            if (expired()) return false;
+            int v = order[i];
+            if (childCount[v] != 0) continue;
+
+            removed.clear();
+            removed.set(v);
+            for (int w = parent[v]; !isKey(w); w = parent[w]) {
+                removed.set(w);
+            }
+
+            selected.andNot(removed);
+            BitSet orphans = (BitSet) required.clone();
+            orphans.andNot(covered(selected));
+            if (orphans.isEmpty()) {
+                accept();
+                return true;
+            }
+            int[] bridge = bridge(selected, node -> covers(node, orphans));
+            if (bridge != null && bridge.length < removed.cardinality()) {
+                for (int node : bridge) selected.set(node);
+                accept();
+                return true;
+            }
+            selected.or(removed);
+        }
+        return false;
+    }
+
+    private boolean covers(int node, BitSet destinations) {
+        if (coverage[node] == null) return destinations.isEmpty();
+        BitSet missing = (BitSet) destinations.clone();
+        missing.andNot(coverage[node]);
+        return missing.isEmpty();
+    }
+
+    // The root, branch points, leaves and towers that link a destination
+    private boolean isKey(int node) {
+        return node == root || childCount[node] != 1
+                || (coverage[node] != null && coverage[node].intersects(required));
+    }
+
+    private BitSet covered(BitSet nodes) {
+        BitSet result = new BitSet();
+        for (int v = nodes.nextSetBit(0); v >= 0; v = nodes.nextSetBit(v + 1)) {
+            if (coverage[v] != null) result.or(coverage[v]);
+        }
+        return result;
+    }
+
+    // Every required destination is linked and every selected node is reachable from the root
+    private boolean isValid() {
+        BitSet missing = (BitSet) required.clone();
+        missing.andNot(covered(selected));
+        if (!missing.isEmpty()) return false;
+        buildTree();
+        return orderSize == selected.cardinality();
+    }
+
+    /**
+     * BFS tree of the selected nodes from the root: parent, childCount and the visit order.
+     */
+    private void buildTree() {
+        visited.clear();
+        orderSize = 0;
+        order[orderSize++] = root;
+        visited.set(root);
+        parent[root] = -1;
+        childCount[root] = 0;
+        for (int head = 0; head < orderSize; head++) {
+            int node = order[head];
+            cursor.reset(node);
+            while (cursor.next()) {
+                int neighbor = cursor.target();
+                if (!selected.get(neighbor) || visited.get(neighbor)) continue;
+                visited.set(neighbor);
+                parent[neighbor] = node;
+                childCount[neighbor] = 0;
+                childCount[node]++;
+                order[orderSize++] = neighbor;
+            }
+        }
+    }
+
+    // The node and its descendants in the current tree
+    private BitSet subtree(int node) {
+        BitSet result = new BitSet();
+        result.set(node);
+        for (int i = 0; i < orderSize; i++) {
+            int v = order[i];
+            if (v != root && result.get(parent[v])) result.set(v);
+        }
+        return result;
+    }
+
+    /**
+     * Fewest-hop walk from any source node over unselected real towers to the first node
+     * accepted by the target test: the nodes after the source up to and including the target,
+     * or null when no such walk exists.
+     */
+    private int[] bridge(BitSet sources, IntPredicate target) {
+        reached.clear();
+        int head = 0;
+        int tail = 0;
+        for (int v = sources.nextSetBit(0); v >= 0; v = sources.nextSetBit(v + 1)) {
+            reached.set(v);
+            via[v] = -1;
+            queue[tail++] = v;
+        }
+        while (head < tail) {
+            int node = queue[head++];
+            cursor.reset(node);
+            while (cursor.next()) {
+                int neighbor = cursor.target();
+                if (reached.get(neighbor) || (query.isVirtual(neighbor) && neighbor != root)) continue;
+                if (target.test(neighbor)) {
+                    int length = 1;
+                    for (int w = node; via[w] != -1; w = via[w]) length++;
+                    int[] path = new int[length];
+                    path[--length] = neighbor;
+                    for (int w = node; via[w] != -1; w = via[w]) path[--length] = w;
+                    return path;
+                }
+                if (selected.get(neighbor)) continue;
+                reached.set(neighbor);
+                via[neighbor] = node;
+                queue[tail++] = neighbor;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.atheer_ct.graph;
+
+import java.util.BitSet;
+
+/**
+ * Greedy POP backbone: the POP plus the towers chosen to reach every destination, grown one
+ * tower at a time in the spirit of the Steiner tree heuristics and then bridged into one
+ * connected network. Destinations are receivers only and never relay.
+ *
+ * <p>An instance is the state of one greedy run. Each node's coverage (the destinations it
+ * links to) is a bitset computed once, so a candidate's gain is one and-not count instead of a
+ * range check per destination, and the towers linked to the network (the frontier) grow with
+ * each pick instead of being re-derived from every tower.
+ *
+ * <p>Gains only shrink as destinations get connected, so the queue keeps each frontier tower
+ * under the last gain it was scored with: the top is rescored, and taken once it still beats
+ * the next entry's (possibly stale) score. That picks the same tower as rescoring everything.
+ */
+public final class BackboneSelection {
+
+    private final QueryGraph query;
+    private final BitSet[] coverage;
+    private final BitSet selectedTowers;
+    private final BitSet connectedDests;
+    private final BitSet frontier;
+    private final DoubleKeyHeap queue = new DoubleKeyHeap(); // key = -gain
+    private final QueryGraph.Cursor cursor;
+
+    BackboneSelection(QueryGraph query, int[] destNodes) {
+        this.query = query;
+        this.coverage = new BitSet[query.nodeCount()];
+        this.selectedTowers = new BitSet(query.nodeCount());
+        this.connectedDests = new BitSet(destNodes.length);
+        this.frontier = new BitSet(query.nodeCount());
+        this.cursor = query.cursor();
+
+        for (int d = 0; d < destNodes.length; d++) {
+            for (int tower : query.realAttachments(destNodes[d])) {
+                coverageOf(tower).set(d);
+            }
+        }
+        // The POP is the only virtual node a destination can hang off
+        int popNode = query.virtualNode(0);
+        for (int d = 0; d < destNodes.length; d++) {
+            if (query.inLinkRange(popNode, destNodes[d])) {
+                coverageOf(popNode).set(d);
+            }
+        }
+    }
+
+    /**
+     * Find the minimum set of intermediate towers needed to form a backbone network
+     * that can reach all destinations. Uses a greedy approach inspired by the
+     * Steiner Tree problem solution: repeatedly add the tower linked to the network
+     * that reaches the most unconnected destinations (lowest index on ties).
+     *
+     * @param popNode   the POP, virtual node 0 of the query graph
+     * @param destNodes the destinations, the other virtual nodes
+     * @return the POP and the selected real towers
+     */
+    public static BitSet greedy(QueryGraph query, int popNode, int[] destNodes) {
+        BackboneSelection selection = new BackboneSelection(query, destNodes);
+
+        // Start with just the POP tower
+        selection.select(popNode);
+
+        // Keep adding towers until all destinations are connected
+        while (selection.connectedDests.cardinality() < destNodes.length) {
+            // Find the best intermediate tower to add to our network
+            int bestTower = selection.pollBestTower();
+
+            // If we found a good tower, add it
+            if (bestTower != -1) {
+                selection.select(bestTower);
+                continue;
+            }
+
+            // If we didn't find any good tower, add the frontier tower closest to any unconnected destination
+            BitSet connectedDests = selection.connectedDests;
+            double minDistance = Double.MAX_VALUE;
+            int closestTower = -1;
+
+            BitSet frontier = selection.frontier;
+            for (int candidate = frontier.nextSetBit(0); candidate >= 0; candidate = frontier.nextSetBit(candidate + 1)) {
+                for (int d = connectedDests.nextClearBit(0); d < destNodes.length; d = connectedDests.nextClearBit(d + 1)) {
+                    double distance = distanceBetween(query, candidate, destNodes[d]);
+
+                    if (distance < minDistance) {
+                        minDistance = distance;
+                        closestTower = candidate;
+                    }
+                }
+            }
+
+            if (closestTower != -1) {
+                selection.select(closestTower);
+                continue;
+            }
+
+            // If we couldn't find any tower that connects, let's just pick the closest tower
+            // to the POP that can reach any unconnected destination (the POP, then every tower)
+            for (int i = -1; i < query.realCount(); i++) {
+                int candidate = i < 0 ? popNode : i;
+                if (selection.selectedTowers.get(candidate)) {
+                    continue;
+                }
+
+                double distanceToPop = distanceBetween(query, popNode, candidate);
+
+                if (distanceToPop <= TowerGraph.MAX_TOWER_DISTANCE && distanceToPop < minDistance) {
+                    if (selection.gain(candidate) > 0) {
+                        minDistance = distanceToPop;
+                        closestTower = candidate;
+                    }
+                }
+            }
+
+            if (closestTower != -1) {
+                selection.select(closestTower);
+            } else {
+                // If we still can't find any tower, just add all remaining destinations
+                // to the connected set to break out of the loop
+                connectedDests.set(0, destNodes.length);
+            }
+        }
+
+        // Connect the backbone network
+        BitSet selectedTowers = selection.selectedTowers;
+        ensureConnectedBackbone(query, popNode, selectedTowers);
+
+        return selectedTowers;
+    }
+
+    private BitSet coverageOf(int node) {
+        if (coverage[node] == null) {
+            coverage[node] = new BitSet();
+        }
+        return coverage[node];
+    }
+
+    /**
+     * Number of still unconnected destinations the node links to.
+     */
+    int gain(int node) {
+        BitSet covered = coverage[node];
+        if (covered == null) {
+            return 0;
+        }
+        BitSet fresh = (BitSet) covered.clone();
+        fresh.andNot(connectedDests);
+        return fresh.cardinality();
+    }
+
+    /**
+     * Adds the node to the backbone: connects its destinations and opens its real neighbours.
+     */
+    void select(int node) {
+        selectedTowers.set(node);
+        frontier.clear(node);
+        if (coverage[node] != null) {
+            connectedDests.or(coverage[node]);
+        }
+
+        cursor.reset(node);
+        while (cursor.next()) {
+            int neighbor = cursor.target();
+            if (query.isVirtual(neighbor) || selectedTowers.get(neighbor) || frontier.get(neighbor)) {
+                continue;
+            }
+            frontier.set(neighbor);
+            int gain = gain(neighbor);
+            if (gain > 0) {
+                queue.push(neighbor, -gain);
+            }
+        }
+    }
+
+    /**
+     * Frontier tower reaching the most unconnected destinations, lowest index on ties;
+     * -1 when no frontier tower reaches any.
+     */
+    int pollBestTower() {
+        while (!queue.isEmpty()) {
+            int tower = queue.poll();
+            if (selectedTowers.get(tower)) {
+                continue;
+            }
+            int gain = gain(tower);
+            if (gain == 0) {
+                continue; // connected destinations never disconnect, so it stays useless
+            }
+            if (queue.isEmpty() || -gain < queue.peekKey()
+                    || (-gain == queue.peekKey() && tower < queue.peek())) {
+                return tower;
+            }
+            queue.push(tower, -gain);
+        }
+        return -1;
+    }
+
+    /**
+     * Ensure that all selected towers form a connected backbone network. Starting from the POP's
+     * component, a multi-source BFS over the unselected towers finds the fewest towers that
+     * bridge to another component; the bridge and that component join the backbone, and the
+     * search repeats until every selected tower is connected or no bridge exists.
+     */
+    private static void ensureConnectedBackbone(
+            QueryGraph query,
+            int popNode,
+            BitSet selectedTowers) {
+
+        // Use a simple BFS from the POP to check connectivity
+        BitSet connected = collectComponent(query, popNode, selectedTowers);
+        if (connected.cardinality() == selectedTowers.cardinality()) {
+            return;
+        }
+
+        int[] parent = new int[query.nodeCount()];
+        int[] queue = new int[query.nodeCount()];
+        BitSet visited = new BitSet(query.nodeCount());
+        QueryGraph.Cursor cursor = query.cursor();
+
+        while (connected.cardinality() < selectedTowers.cardinality()) {
+            // Every connected tower is a source; bridging towers are unselected real towers
+            visited.clear();
+            int head = 0;
+            int tail = 0;
+            for (int node = connected.nextSetBit(0); node >= 0; node = connected.nextSetBit(node + 1)) {
+                visited.set(node);
+                parent[node] = -1;
+                queue[tail++] = node;
+            }
+
+            int bridgeEnd = -1;
+            int reached = -1;
+            while (head < tail && reached == -1) {
+                int node = queue[head++];
+                cursor.reset(node);
+                while (cursor.next()) {
+                    int neighbor = cursor.target();
+                    if (visited.get(neighbor)) {
+                        continue;
+                    }
+                    if (selectedTowers.get(neighbor)) {
+                        // First selected tower outside the backbone: the fewest towers bridge to it
+                        bridgeEnd = node;
+                        reached = neighbor;
+                        break;
+                    }
+                    if (query.isVirtual(neighbor)) {
+                        continue; // destinations are receivers only
+                    }
+                    visited.set(neighbor);
+                    parent[neighbor] = node;
+                    queue[tail++] = neighbor;
+                }
+            }
+
+            if (reached == -1) {
+                break; // The remaining components cannot be bridged
+            }
+
+            for (int node = bridgeEnd; node != -1 && !connected.get(node); node = parent[node]) {
+                selectedTowers.set(node);
+                connected.set(node);
+            }
+            connected.or(collectComponent(query, reached, selectedTowers));
+        }
+    }
+
+    /**
+     * Nodes of allowed reachable from the given node using only allowed nodes
+     */
+    private static BitSet collectComponent(QueryGraph query, int from, BitSet allowed) {
+        BitSet component = new BitSet(query.nodeCount());
+        int[] queue = new int[allowed.cardinality()];
+        int head = 0;
+        int tail = 0;
+        QueryGraph.Cursor cursor = query.cursor();
+
+        queue[tail++] = from;
+        component.set(from);
+
+        while (head < tail) {
+            cursor.reset(queue[head++]);
+            while (cursor.next()) {
+                int neighbor = cursor.target();
+                if (allowed.get(neighbor) && !component.get(neighbor)) {
+                    component.set(neighbor);
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+        return component;
+    }
+
+    private static double distanceBetween(QueryGraph query, int a, int b) {
+        return GeoMath.distanceKm(query.lat(a), query.lon(a), query.lat(b), query.lon(b));
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.atheer_ct.graph;
+
+import java.util.Arrays;
+
+/**
+ * Fewest-hop path over a {@link QueryGraph}, searched from both ends at once. Each round
+ * expands one full BFS level of whichever side has the smaller frontier, and the search stops
+ * after the level in which the two sides first touch. A long query then explores two discs of
+ * half the hop radius instead of one disc of the full radius.
+ */
+public final class BidirectionalBfs {
+
+    private BidirectionalBfs() {
+    }
+
+    /**
+     * @return node ids from start to end, or an empty array when the end is unreachable
+     */
+    public static int[] findPath(QueryGraph query, int start, int end) {
+        if (start == end) {
+            return new int[] {start};
+        }
+
+        int nodeCount = query.nodeCount();
+        Side forward = new Side(nodeCount, start);
+        Side backward = new Side(nodeCount, end);
+        QueryGraph.Cursor cursor = query.cursor();
+
+        int bestHops = Integer.MAX_VALUE;
+        int meetFrom = -1; // node on the expanding side
+        int meetTo = -1;   // its neighbor already reached by the other side
+        boolean meetForward = true;
+
+        while (forward.size > 0 && backward.size > 0) {
+            boolean expandForward = forward.size <= backward.size;
+            Side side = expandForward ? forward : backward;
+            Side other = expandForward ? backward : forward;
+
+            int nextSize = 0;
+            for (int i = 0; i < side.size; i++) {
+                int current = side.frontier[i];
+                cursor.reset(current);
+                while (cursor.next()) {
+                    int neighbor = cursor.target();
+                    if (other.hops[neighbor] >= 0) {
+                        int total = side.hops[current] + 1 + other.hops[neighbor];
+                        if (total < bestHops) {
+                            bestHops = total;
+                            meetFrom = current;
+                            meetTo = neighbor;
+                            meetForward = expandForward;
+                        }
+                    }
+                    if (side.hops[neighbor] < 0) {
+                        side.hops[neighbor] = side.hops[current] + 1;
+                        side.parent[neighbor] = current;
+                        side.next[nextSize++] = neighbor;
+                    }
+                }
+            }
+            side.advance(nextSize);
+
+            // The whole level has been checked, so the best meeting found is a shortest path
+            if (meetFrom >= 0) {
+                break;
+            }
+        }
+
+        if (meetFrom < 0) {
+            return new int[0];
+        }
+
+        // Stitch start -> meetA (forward tree), meetB -> end (backward tree)
+        int meetA = meetForward ? meetFrom : meetTo;
+        int meetB = meetForward ? meetTo : meetFrom;
+        int[] path = new int[bestHops + 1];
+        int i = forward.hops[meetA];
+        for (int node = meetA; node != -1; node = forward.parent[node]) path[i--] = node;
+        i = forward.hops[meetA] + 1;
+        for (int node = meetB; node != -1; node = backward.parent[node]) path[i++] = node;
+        return path;
+    }
+
+    /**
+     * BFS state of one search direction.
+     */
+    private static final class Side {
+        final int[] hops;
+        final int[] parent;
+        int[] frontier;
+        int[] next;
+        int size;
+
+        Side(int nodeCount, int root) {
+            hops = new int[nodeCount];
+            Arrays.fill(hops, -1);
+            parent = new int[nodeCount];
+            Arrays.fill(parent, -1);
+            frontier = new int[nodeCount];
+            next = new int[nodeCount];
+            hops[root] = 0;
+            frontier[0] = root;
+            size = 1;
+        }
+
+        void advance(int nextSize) {
+            int[] swap = frontier;
+            frontier = next;
+            next = swap;
+            size = nextSize;
+        }
+    }
+}
@@ -0,0 +1,577 @@
+package com.example.atheer_ct.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Contraction hierarchy over the tower graph for one metric (link length or hop count).
+ * Towers are contracted one by one, least important first; whenever removing a tower would
+ * lengthen the shortest path between two of its remaining neighbours, a shortcut edge
+ * remembering the tower is added between them. A query then runs Dijkstra upwards (towards
+ * more important towers) from both ends and only touches a few hundred nodes, and shortcuts
+ * are unpacked back into the original links.
+ *
+ * <p>Links are symmetric, so one upward edge list serves both search directions. Distances are
+ * those of a plain Dijkstra over the same links; only the tie between equally short paths may
+ * be broken differently.
+ */
+public final class ContractionHierarchy {
+
+    /**
+     * Edge weight the hierarchy minimizes.
+     */
+    public enum Metric {
+        DISTANCE, HOPS;
+
+        double weight(float length) {
+            return this == HOPS ? 1 : length;
+        }
+    }
+
+    // Witness searches give up after settling this many towers and add the shortcut instead
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+    private static final int SEED = -2; // parent of a node reached straight from a virtual end
+
+    private static final ThreadLocal<Workspace> WORKSPACE = ThreadLocal.withInitial(Workspace::new);
+
+    private final Metric metric;
+    private final int[] rank;
+    private final int[] upOffsets;  // per node, its edges to higher-ranked nodes
+    private final int[] upTargets;
+    private final double[] upWeights;
+    private final int[] upMiddle;   // contracted node a shortcut skips, -1 for original links
+
+    private ContractionHierarchy(Metric metric, int[] rank, int[] upOffsets, int[] upTargets,
+                                 double[] upWeights, int[] upMiddle) {
+        this.metric = metric;
+        this.rank = rank;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upMiddle = upMiddle;
+    }
+
+    public static ContractionHierarchy build(TowerGraph graph, Metric metric) {
+        return build(graph, metric, () -> false);
+    }
+
+    /**
+     * @param cancelled polled between contractions; once it is true the build stops with a
+     *                  {@link CancellationException}
+     */
+    public static ContractionHierarchy build(TowerGraph graph, Metric metric, BooleanSupplier cancelled) {
+        return new Builder(graph, metric, cancelled).build();
+    }
+
+    public Metric getMetric() {
+        return metric;
+    }
+
+    /**
+     * Number of upward edges, original links and shortcuts together.
+     */
+    public int edgeCount() {
+        return upTargets.length;
+    }
+
+    /**
+     * Shortest path under this hierarchy's metric. Virtual start and end nodes are attached
+     * through their real links; other virtual nodes are never passed through.
+     *
+     * @return node ids from start to end, or an empty array when the end is unreachable
+     */
+    public int[] findPath(QueryGraph query, int start, int end) {
+        if (start == end) {
+            return new int[] {start};
+        }
+
+        Workspace ws = WORKSPACE.get();
+        ws.reset(rank.length);
+        QueryGraph.Cursor cursor = query.cursor();
+        seed(query, cursor, start, ws.forward);
+        seed(query, cursor, end, ws.backward);
+
+        // A direct virtual link between the two ends competes with every path through towers
+        double direct = Double.POSITIVE_INFINITY;
+        if (query.isVirtual(start) && query.isVirtual(end) && query.inLinkRange(start, end)) {
+            cursor.reset(start);
+            while (cursor.next()) {
+                if (cursor.target() == end) direct = Math.min(direct, metric.weight(cursor.length()));
+            }
+        }
+
+        double best = Double.POSITIVE_INFINITY;
+        int meet = -1;
+        Side forward = ws.forward;
+        Side backward = ws.backward;
+        while (true) {
+            double forwardKey = forward.heap.isEmpty() ? Double.POSITIVE_INFINITY : forward.heap.peekKey();
+            double backwardKey = backward.heap.isEmpty() ? Double.POSITIVE_INFINITY : backward.heap.peekKey();
+            // A side whose next node is already as far as the best meeting cannot improve it
+            if (Math.min(forwardKey, backwardKey) >= best) break;
+
+            Side side = forwardKey <= backwardKey ? forward : backward;
+            Side other = side == forward ? backward : forward;
+            double key = side.heap.peekKey();
+            int node = side.heap.poll();
+            if (side.isSettled(node, ws.generation) || key > side.dist[node]) {
+                continue; // Outdated entry
+            }
+            side.settled[node] = ws.generation;
+
+            if (other.isLabelled(node, ws.generation) && key + other.dist[node] < best) {
+                best = key + other.dist[node];
+                meet = node;
+            }
+            if (isStalled(side, node, key, ws.generation)) {
+                continue;
+            }
+
+            for (int e = upOffsets[node]; e < upOffsets[node + 1]; e++) {
+                int target = upTargets[e];
+                double next = key + upWeights[e];
+                if (!side.isLabelled(target, ws.generation) || next < side.dist[target]) {
+                    side.label(target, next, node, ws.generation);
+                    side.heap.push(target, next);
+                }
+            }
+        }
+
+        if (direct <= best) {
+            return direct == Double.POSITIVE_INFINITY ? new int[0] : new int[] {start, end};
+        }
+        return unpack(query, start, end, meet, forward, backward);
+    }
+
+    // Stall on demand: links are symmetric, so a higher neighbour already reached more cheaply
+    // proves the node's label is not its distance and nothing above it needs this route
+    private boolean isStalled(Side side, int node, double key, int generation) {
+        for (int e = upOffsets[node]; e < upOffsets[node + 1]; e++) {
+            int target = upTargets[e];
+            if (side.isLabelled(target, generation) && side.dist[target] + upWeights[e] < key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Labels the search's first nodes: a tower itself, or every tower a virtual node links to
+    private void seed(QueryGraph query, QueryGraph.Cursor cursor, int node, Side side) {
+        Workspace ws = WORKSPACE.get();
+        if (!query.isVirtual(node)) {
+            side.label(node, 0, -1, ws.generation);
+            side.heap.push(node, 0);
+            return;
+        }
+        cursor.reset(node);
+        while (cursor.next()) {
+            int tower = cursor.target();
+            if (query.isVirtual(tower)) continue;
+            double weight = metric.weight(cursor.length());
+            if (!side.isLabelled(tower, ws.generation) || weight < side.dist[tower]) {
+                side.label(tower, weight, SEED, ws.generation);
+                side.heap.push(tower, weight);
+            }
+        }
+    }
+
+    private int[] unpack(QueryGraph query, int start, int end, int meet, Side forward, Side backward) {
+        IntList path = new IntList();
+        if (query.isVirtual(start)) path.add(start);
+
+        // Upward chain from the start side, in start-to-meet order
+        IntList chain = new IntList();
+        for (int node = meet; node >= 0; node = forward.parent[node]) chain.add(node);
+        path.add(chain.data[chain.size - 1]);
+        for (int i = chain.size - 1; i > 0; i--) expand(chain.data[i], chain.data[i - 1], path);
+
+        // Downward chain towards the end side
+        for (int node = meet; backward.parent[node] >= 0; node = backward.parent[node]) {
+            expand(node, backward.parent[node], path);
+        }
+
+        if (query.isVirtual(end)) path.add(end);
+        return path.toArray();
+    }
+
+    // Appends the original links of the hierarchy edge a-b (without a itself)
+    private void expand(int a, int b, IntList path) {
+        IntList stack = new IntList();
+        stack.add(b);
+        stack.add(a);
+        while (stack.size > 0) {
+            int from = stack.data[--stack.size];
+            int to = stack.data[--stack.size];
+            int middle = upMiddle[edge(from, to)];
+            if (middle < 0) {
+                path.add(to);
+            } else {
+                stack.add(to);
+                stack.add(middle);
+                stack.add(middle);
+                stack.add(from);
+            }
+        }
+    }
+
+    private int edge(int a, int b) {
+        int lower = rank[a] < rank[b] ? a : b;
+        int upper = lower == a ? b : a;
+        for (int e = upOffsets[lower]; e < upOffsets[lower + 1]; e++) {
+            if (upTargets[e] == upper) return e;
+        }
+        throw new IllegalStateException("No hierarchy edge between " + a + " and " + b);
+    }
+
+    /**
+     * Contraction state: an editable adjacency list holding the links and shortcuts between
+     * towers not contracted yet. A contracted tower's remaining list is exactly its upward edges.
+     */
+    private static final class Builder {
+        private final Metric metric;
+        private final BooleanSupplier cancelled;
+        private final int n;
+        private final int[][] targets;
+        private final double[][] weights;
+        private final int[][] middles;
+        private final int[] degree;
+        private final boolean[] contracted;
+        private final int[] contractedNeighbors;
+
+        // Neighbourhood of the current u in a witness check, valid where stamp equals generation
+        private final int[] stamp;
+        private final double[] linkWeight;
+        private int generation;
+        // Bounded witness search for the pairs the neighbourhood check leaves open
+        private final int[] searchStamp;
+        private final double[] searchDist;
+        private final int[] targetStamp; // neighbours of v still without a witness
+        private final double[] targetVia;
+        private int searchGeneration;
+        private final DoubleKeyHeap heap = new DoubleKeyHeap();
+
+        Builder(TowerGraph graph, Metric metric, BooleanSupplier cancelled) {
+            this.metric = metric;
+            this.cancelled = cancelled;
+            n = graph.nodeCount();
+            targets = new int[n][];
+            weights = new double[n][];
+            middles = new int[n][];
+            degree = new int[n];
+            for (int v = 0; v < n; v++) {
+                int d = graph.degree(v);
+                targets[v] = new int[Math.max(4, d)];
+                weights[v] = new double[Math.max(4, d)];
+                middles[v] = new int[Math.max(4, d)];
+                for (int e = graph.start(v); e < graph.end(v); e++) {
+                    targets[v][degree[v]] = graph.target(e);
+                    weights[v][degree[v]] = metric.weight(graph.length(e));
+                    middles[v][degree[v]] = -1;
+                    degree[v]++;
+                }
+            }
+            contracted = new boolean[n];
+            contractedNeighbors = new int[n];
+            stamp = new int[n];
+            linkWeight = new double[n];
+            searchStamp = new int[n];
+            searchDist = new double[n];
+            targetStamp = new int[n];
+            targetVia = new double[n];
+        }
+
+        ContractionHierarchy build() {
+            int[] rank = new int[n];
+            int[][] upTargetLists = new int[n][];
+            double[][] upWeightLists = new double[n][];
+            int[][] upMiddleLists = new int[n][];
+
+            DoubleKeyHeap queue = new DoubleKeyHeap();
+            for (int v = 0; v < n; v++) {
+                queue.push(v, priority(v));
+            }
+            int next = 0;
+            while (!queue.isEmpty()) {
+                int v = queue.poll();
+                if (contracted[v]) continue;
+                if (cancelled.getAsBoolean()) throw new CancellationException("hierarchy build cancelled");
+                // Priorities only drift as neighbours go; re-check before contracting
+                double current = priority(v);
+                if (!queue.isEmpty() && current > queue.peekKey()) {
+                    queue.push(v, current);
+                    continue;
+                }
+                contract(v, true);
+                contracted[v] = true;
+                rank[v] = next++;
+
+                int d = degree[v];
+                upTargetLists[v] = Arrays.copyOf(targets[v], d);
+                upWeightLists[v] = Arrays.copyOf(weights[v], d);
+                upMiddleLists[v] = Arrays.copyOf(middles[v], d);
+                for (int i = 0; i < d; i++) {
+                    int u = targets[v][i];
+                    contractedNeighbors[u]++;
+                    removeEdge(u, v);
+                }
+                targets[v] = null;
+                weights[v] = null;
+                middles[v] = null;
+            }
+
+            int[] upOffsets = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                upOffsets[v + 1] = upOffsets[v] + upTargetLists[v].length;
+            }
+            int[] upTargets = new int[upOffsets[n]];
+            double[] upWeights = new double[upOffsets[n]];
+            int[] upMiddle = new int[upOffsets[n]];
+            for (int v = 0; v < n; v++) {
+                System.arraycopy(upTargetLists[v], 0, upTargets, upOffsets[v], upTargetLists[v].length);
+                System.arraycopy(upWeightLists[v], 0, upWeights, upOffsets[v], upWeightLists[v].length);
+                System.arraycopy(upMiddleLists[v], 0, upMiddle, upOffsets[v], upMiddleLists[v].length);
+            }
+            return new ContractionHierarchy(metric, rank, upOffsets, upTargets, upWeights, upMiddle);
+        }
+
+        // Edge difference, weighted double, plus the number of neighbours already contracted,
+        // which spreads contraction evenly over the map
+        private double priority(int v) {
+            return 2.0 * (contract(v, false) - degree[v]) + contractedNeighbors[v];
+        }
+
+        /**
+         * Shortcuts needed to contract v; added to the graph when apply is set. A pair of
+         * neighbours u, w needs none when some path u..w avoiding v is no longer than u-v-w.
+         * Most pairs in the dense tower graph have such a path of one or two links, which is
+         * checked first; only the rest run a bounded Dijkstra from u. A witness the bounded
+         * search misses only costs a superfluous shortcut, never correctness.
+         */
+        private int contract(int v, boolean apply) {
+            int shortcuts = 0;
+            int count = degree[v];
+            int[] pending = new int[count];
+            for (int i = 0; i < count; i++) {
+                int u = targets[v][i];
+                markNeighbors(u, v);
+                int pendingCount = 0;
+                double limit = 0;
+                for (int j = i + 1; j < count; j++) {
+                    double via = weights[v][i] + weights[v][j];
+                    if (!hasShortWitness(targets[v][j], v, via)) {
+                        pending[pendingCount++] = j;
+                        limit = Math.max(limit, via);
+                    }
+                }
+                if (pendingCount == 0) continue;
+                if (!apply) {
+                    // Priorities are re-estimated often; counting the open pairs is close enough
+                    shortcuts += pendingCount;
+                    continue;
+                }
+
+                nextSearch();
+                for (int p = 0; p < pendingCount; p++) {
+                    int j = pending[p];
+                    targetStamp[targets[v][j]] = searchGeneration;
+                    targetVia[targets[v][j]] = weights[v][i] + weights[v][j];
+                }
+                witnessSearch(u, v, limit, pendingCount);
+                for (int p = 0; p < pendingCount; p++) {
+                    int j = pending[p];
+                    int w = targets[v][j];
+                    double via = weights[v][i] + weights[v][j];
+                    if (targetStamp[w] != searchGeneration) continue; // Witnessed
+                    shortcuts++;
+                    if (apply) {
+                        addEdge(u, w, via, v);
+                        addEdge(w, u, via, v);
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+        private void markNeighbors(int u, int skip) {
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(stamp, 0);
+                generation = 1;
+            }
+            for (int k = 0; k < degree[u]; k++) {
+                int x = targets[u][k];
+                if (x == skip) continue;
+                stamp[x] = generation;
+                linkWeight[x] = weights[u][k];
+            }
+        }
+
+        // A link from the marked node to w, or a path through one of w's neighbours, within via
+        private boolean hasShortWitness(int w, int skip, double via) {
+            if (stamp[w] == generation && linkWeight[w] <= via) {
+                return true;
+            }
+            int[] wTargets = targets[w];
+            double[] wWeights = weights[w];
+            for (int k = 0; k < degree[w]; k++) {
+                int x = wTargets[k];
+                if (x != skip && stamp[x] == generation && linkWeight[x] + wWeights[k] <= via) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void nextSearch() {
+            if (++searchGeneration == Integer.MAX_VALUE) {
+                Arrays.fill(searchStamp, 0);
+                Arrays.fill(targetStamp, 0);
+                searchGeneration = 1;
+            }
+        }
+
+        /**
+         * Dijkstra from source avoiding skip, up to limit or WITNESS_SETTLE_LIMIT settled nodes.
+         * A target is witnessed, and its stamp cleared, as soon as it is labelled within its via
+         * length; labels are lengths of real paths, so the search ends once no target is left.
+         */
+        private void witnessSearch(int source, int skip, double limit, int pending) {
+            heap.clear();
+            searchStamp[source] = searchGeneration;
+            searchDist[source] = 0;
+            heap.push(source, 0);
+            int settled = 0;
+            while (!heap.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+                double key = heap.peekKey();
+                int node = heap.poll();
+                if (key > searchDist[node]) continue;
+                if (key > limit) break;
+                settled++;
+                for (int k = 0; k < degree[node]; k++) {
+                    int next = targets[node][k];
+                    if (next == skip) continue;
+                    double d = key + weights[node][k];
+                    if (d <= limit && (searchStamp[next] != searchGeneration || d < searchDist[next])) {
+                        searchStamp[next] = searchGeneration;
+                        searchDist[next] = d;
+                        heap.push(next, d);
+                        if (targetStamp[next] == searchGeneration && d <= targetVia[next]) {
+                            targetStamp[next] = 0;
+                            if (--pending == 0) return;
+                        }
+                    }
+                }
+            }
+        }
+
+        // Adds or shortens the edge a-b in a's list
+        private void addEdge(int a, int b, double weight, int middle) {
+            for (int i = 0; i < degree[a]; i++) {
+                if (targets[a][i] == b) {
+                    if (weight < weights[a][i]) {
+                        weights[a][i] = weight;
+                        middles[a][i] = middle;
+                    }
+                    return;
+                }
+            }
+            if (degree[a] == targets[a].length) {
+                int size = degree[a] * 2;
+                targets[a] = Arrays.copyOf(targets[a], size);
+                weights[a] = Arrays.copyOf(weights[a], size);
+                middles[a] = Arrays.copyOf(middles[a], size);
+            }
+            targets[a][degree[a]] = b;
+            weights[a][degree[a]] = weight;
+            middles[a][degree[a]] = middle;
+            degree[a]++;
+        }
+
+        private void removeEdge(int a, int b) {
+            int last = --degree[a];
+            for (int i = 0; i <= last; i++) {
+                if (targets[a][i] == b) {
+                    targets[a][i] = targets[a][last];
+                    weights[a][i] = weights[a][last];
+                    middles[a][i] = middles[a][last];
+                    return;
+                }
+            }
+            degree[a]++; // not linked
+        }
+    }
+
+    /**
+     * One direction of a query's search state, valid where its stamps equal the generation.
+     */
+    private static final class Side {
+        int[] labelled = new int[0];
+        int[] settled = new int[0];
+        double[] dist = new double[0];
+        int[] parent = new int[0];
+        final DoubleKeyHeap heap = new DoubleKeyHeap();
+
+        void ensure(int nodeCount) {
+            if (labelled.length < nodeCount) {
+                labelled = new int[nodeCount];
+                settled = new int[nodeCount];
+                dist = new double[nodeCount];
+                parent = new int[nodeCount];
+            }
+            heap.clear();
+        }
+
+        boolean isLabelled(int node, int generation) {
+            return labelled[node] == generation;
+        }
+
+        boolean isSettled(int node, int generation) {
+            return settled[node] == generation;
+        }
+
+        void label(int node, double distance, int from, int generation) {
+            labelled[node] = generation;
+            dist[node] = distance;
+            parent[node] = from;
+        }
+    }
+
+    /**
+     * Per-thread query state for both directions.
+     */
+    private static final class Workspace {
+        int generation;
+        final Side forward = new Side();
+        final Side backward = new Side();
+
+        void reset(int nodeCount) {
+            if (forward.labelled.length < nodeCount) generation = 0;
+            forward.ensure(nodeCount);
+            backward.ensure(nodeCount);
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(forward.labelled, 0);
+                Arrays.fill(forward.settled, 0);
+                Arrays.fill(backward.labelled, 0);
+                Arrays.fill(backward.settled, 0);
+                generation = 1;
+            }
+        }
+    }
+
+    /**
+     * Minimal growable int list for paths.
+     */
+    private static final class IntList {
+        int[] data = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
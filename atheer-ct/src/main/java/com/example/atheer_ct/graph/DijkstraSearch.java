@@ -0,0 +1,134 @@
+package com.example.atheer_ct.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Shortest path by link length over a {@link QueryGraph}, optionally restricted to a set of
+ * allowed nodes. The per-node arrays live in a per-thread workspace that is reset by bumping a
+ * generation stamp instead of being reallocated or refilled, so repeated searches (one per POP
+ * destination, say) only allocate their result.
+ */
+public final class DijkstraSearch {
+
+    private static final ThreadLocal<Workspace> WORKSPACE = ThreadLocal.withInitial(Workspace::new);
+
+    private DijkstraSearch() {
+    }
+
+    /**
+     * @param allowed nodes the path may use (start and end included), or null for the whole graph
+     * @return node ids from start to end, or an empty array when the end is unreachable
+     */
+    public static int[] findPath(QueryGraph query, int start, int end, BitSet allowed) {
+        Workspace ws = WORKSPACE.get();
+        return run(query, start, end, allowed, ws) ? ws.path(end) : new int[0];
+    }
+
+    /**
+     * Shortest paths from the root to every node it can reach. Each path read from the tree is
+     * the one {@link #findPath} returns for the same end, so one tree replaces a search per target.
+     *
+     * @param allowed nodes the paths may use, or null for the whole graph
+     */
+    public static ShortestPathTree shortestPathTree(QueryGraph query, int root, BitSet allowed) {
+        Workspace ws = WORKSPACE.get();
+        run(query, root, -1, allowed, ws);
+
+        int[] parent = new int[query.nodeCount()];
+        for (int node = 0; node < parent.length; node++) {
+            parent[node] = ws.isSettled(node) ? ws.parent[node] : ShortestPathTree.UNREACHED;
+        }
+        return new ShortestPathTree(root, parent);
+    }
+
+    // Settles nodes in distance order until end is reached (end = -1: until the queue is empty)
+    private static boolean run(QueryGraph query, int start, int end, BitSet allowed, Workspace ws) {
+        ws.reset(query.nodeCount());
+        QueryGraph.Cursor cursor = query.cursor();
+
+        ws.label(start, 0.0, -1);
+        ws.heap.push(start, 0.0);
+
+        while (!ws.heap.isEmpty()) {
+            double key = ws.heap.peekKey();
+            int current = ws.heap.poll();
+            if (ws.isSettled(current) || key > ws.dist[current]) {
+                continue; // Outdated entry, the node was reached more cheaply since
+            }
+            ws.settle(current);
+            if (current == end) {
+                return true;
+            }
+
+            cursor.reset(current);
+            while (cursor.next()) {
+                int neighbor = cursor.target();
+                if (ws.isSettled(neighbor) || (allowed != null && !allowed.get(neighbor))) {
+                    continue;
+                }
+                double newDist = key + cursor.length();
+                if (!ws.isLabelled(neighbor) || newDist < ws.dist[neighbor]) {
+                    ws.label(neighbor, newDist, current);
+                    ws.heap.push(neighbor, newDist);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Per-thread search state. A node's dist/parent are only meaningful when its label stamp
+     * equals the current generation.
+     */
+    private static final class Workspace {
+        int generation;
+        int[] labelled = new int[0];
+        int[] settled = new int[0];
+        double[] dist = new double[0];
+        int[] parent = new int[0];
+        final DoubleKeyHeap heap = new DoubleKeyHeap();
+
+        void reset(int nodeCount) {
+            if (labelled.length < nodeCount) {
+                labelled = new int[nodeCount];
+                settled = new int[nodeCount];
+                dist = new double[nodeCount];
+                parent = new int[nodeCount];
+                generation = 0;
+            }
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(labelled, 0);
+                Arrays.fill(settled, 0);
+                generation = 1;
+            }
+            heap.clear();
+        }
+
+        boolean isLabelled(int node) {
+            return labelled[node] == generation;
+        }
+
+        boolean isSettled(int node) {
+            return settled[node] == generation;
+        }
+
+        void label(int node, double distance, int from) {
+            labelled[node] = generation;
+            dist[node] = distance;
+            parent[node] = from;
+        }
+
+        void settle(int node) {
+            settled[node] = generation;
+        }
+
+        int[] path(int end) {
+            int length = 0;
+            for (int node = end; node != -1; node = parent[node]) length++;
+            int[] path = new int[length];
+            for (int node = end, i = length - 1; node != -1; node = parent[node], i--) path[i] = node;
+            return path;
+        }
+    }
+}
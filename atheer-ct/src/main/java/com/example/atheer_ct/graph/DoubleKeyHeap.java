@@ -0,0 +1,83 @@
+package com.example.atheer_ct.graph;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of (node, key) entries. Keys are stored with the entries, so they never change
+ * under the heap; a search that improves a node simply pushes it again and skips the outdated
+ * entry when it comes out (lazy deletion). Equal keys are ordered by node id.
+ */
+public final class DoubleKeyHeap {
+
+    private int[] nodes = new int[64];
+    private double[] keys = new double[64];
+    private int size;
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void push(int node, double key) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        int slot = size++;
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (!less(key, node, keys[parent], nodes[parent])) break;
+            nodes[slot] = nodes[parent];
+            keys[slot] = keys[parent];
+            slot = parent;
+        }
+        nodes[slot] = node;
+        keys[slot] = key;
+    }
+
+    /**
+     * Key of the smallest entry.
+     */
+    public double peekKey() {
+        return keys[0];
+    }
+
+    /**
+     * Node of the smallest entry.
+     */
+    public int peek() {
+        return nodes[0];
+    }
+
+    /**
+     * Removes the smallest entry and returns its node.
+     */
+    public int poll() {
+        int top = nodes[0];
+        int n = --size;
+        if (n > 0) {
+            int node = nodes[n];
+            double key = keys[n];
+            int slot = 0;
+            int half = n >>> 1;
+            while (slot < half) {
+                int child = 2 * slot + 1;
+                if (child + 1 < n && less(keys[child + 1], nodes[child + 1], keys[child], nodes[child])) child++;
+                if (!less(keys[child], nodes[child], key, node)) break;
+                nodes[slot] = nodes[child];
+                keys[slot] = keys[child];
+                slot = child;
+            }
+            nodes[slot] = node;
+            keys[slot] = key;
+        }
+        return top;
+    }
+
+    private static boolean less(double keyA, int nodeA, double keyB, int nodeB) {
+        return keyA < keyB || (keyA == keyB && nodeA < nodeB);
+    }
+}
@@ -0,0 +1,339 @@
+package com.example.atheer_ct.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Exact minimum-tower Steiner tree from a root (the POP) to a small set of terminals (the
+ * destinations) with the Dreyfus-Wagner dynamic program. cost[S][v] is the fewest real towers
+ * in a tree that contains v and links every terminal of S; it is built by merging two trees at
+ * v and then spreading each subset's table over the graph with a shortest-path pass (a tower
+ * costs 1 to enter, the root 0). Terminals only ever hang off the tree as leaves.
+ *
+ * <p>Subsets of the same size only read smaller subsets, so they are filled in parallel.
+ * Towers that cannot be on any tree within the given upper bound (the greedy result) are left
+ * out before the table is allocated.
+ */
+public final class DreyfusWagner {
+
+    public static final int MAX_TERMINALS = 12;
+    // Cells of one table; cost and back-pointer tables together use 8 bytes per cell
+    private static final long MAX_TABLE_CELLS = 1L << 23;
+    private static final int SUBSETS_PER_TASK = 4;
+
+    private static final int INF = Integer.MAX_VALUE / 4;
+    private static final int BASE = Integer.MIN_VALUE; // terminal links directly to the node
+
+    private DreyfusWagner() {
+    }
+
+    /**
+     * Fewest-tower tree linking every terminal to the root, as a set of query nodes holding the
+     * root and the chosen real towers; null when some terminal cannot be linked at all.
+     *
+     * @param upperBound number of real towers of a known tree, used to leave out towers that
+     *                   cannot be part of a better one; Integer.MAX_VALUE when none is known
+     * @throws IllegalArgumentException when there are more than MAX_TERMINALS terminals or the
+     *                                  table for the remaining towers would be too large
+     */
+    public static BitSet solve(QueryGraph query, int root, int[] terminals, int upperBound, ForkJoinPool pool) {
+        if (terminals.length > MAX_TERMINALS) {
+            throw new IllegalArgumentException("Exact mode supports at most " + MAX_TERMINALS + " destinations");
+        }
+
+        BitSet tree = solvePruned(query, root, terminals, upperBound, pool);
+        if (tree == null && upperBound != Integer.MAX_VALUE) {
+            // The bound came from a tree that did not actually link everything
+            tree = solvePruned(query, root, terminals, Integer.MAX_VALUE, pool);
+        }
+        return tree;
+    }
+
+    /**
+     * {@link #solve} over the towers a tree of at most upperBound towers can use: a tower v is
+     * kept when fromRoot[v] + toTerminal[v] - 1 is within the bound (v is counted by both).
+     *
+     * @return the tree, or null when no tree within the bound links every terminal
+     */
+    static BitSet solvePruned(QueryGraph query, int root, int[] terminals, int upperBound, ForkJoinPool pool) {
+        int n = query.nodeCount();
+        int k = terminals.length;
+
+        // A tower on an optimal tree lies on a tree path from the root to some terminal
+        int[] fromRoot = towerDistances(query, root, new int[] {root}, new int[] {0});
+        int[][] attachments = new int[k][];
+        int sourceCount = 0;
+        for (int t = 0; t < k; t++) {
+            attachments[t] = query.realAttachments(terminals[t]);
+            sourceCount += attachments[t].length + 1;
+        }
+        int[] sources = new int[sourceCount];
+        int[] sourceCost = new int[sourceCount];
+        int s = 0;
+        for (int t = 0; t < k; t++) {
+            for (int tower : attachments[t]) {
+                sources[s] = tower;
+                sourceCost[s++] = 1;
+            }
+            sources[s] = root;
+            sourceCost[s++] = query.inLinkRange(root, terminals[t]) ? 0 : INF;
+        }
+        int[] toTerminal = towerDistances(query, root, sources, sourceCost);
+
+        int[] localOf = new int[n];
+        Arrays.fill(localOf, -1);
+        int[] nodes = new int[n];
+        int m = 0;
+        nodes[m] = root;
+        localOf[root] = m++;
+        for (int v = 0; v < n; v++) {
+            if (v == root || query.isVirtual(v) || fromRoot[v] >= INF || toTerminal[v] >= INF) continue;
+            if ((long) fromRoot[v] + toTerminal[v] - 1 <= upperBound) {
+                nodes[m] = v;
+                localOf[v] = m++;
+            }
+        }
+        nodes = Arrays.copyOf(nodes, m);
+
+        int subsets = 1 << k;
+        if ((long) subsets * m > MAX_TABLE_CELLS) {
+            throw new IllegalArgumentException("Exact mode would need " + m + " candidate towers for "
+                    + k + " destinations; use fewer destinations or the greedy mode");
+        }
+
+        Workspace work = new Workspace(query, nodes, localOf);
+        int[][] cost = new int[subsets][];
+        int[][] back = new int[subsets][];
+
+        for (int t = 0; t < k; t++) {
+            int mask = 1 << t;
+            cost[mask] = new int[m];
+            back[mask] = new int[m];
+            Arrays.fill(cost[mask], INF);
+            for (int tower : attachments[t]) {
+                int local = localOf[tower];
+                if (local >= 0) {
+                    cost[mask][local] = 1;
+                    back[mask][local] = BASE;
+                }
+            }
+            if (query.inLinkRange(root, terminals[t])) {
+                cost[mask][0] = 0;
+                back[mask][0] = BASE;
+            }
+            work.relax(cost[mask], back[mask], new DoubleKeyHeap());
+        }
+
+        for (int size = 2; size <= k; size++) {
+            int[] masks = new int[binomial(k, size)];
+            int count = 0;
+            for (int mask = 1; mask < subsets; mask++) {
+                if (Integer.bitCount(mask) == size) masks[count++] = mask;
+            }
+            pool.invoke(new SubsetTask(work, cost, back, masks, 0, count));
+        }
+
+        int full = subsets - 1;
+        if (cost[full][0] >= INF) {
+            return null;
+        }
+
+        // Unwind the choices from (all terminals, root)
+        BitSet tree = new BitSet(n);
+        int[] stackMask = new int[16];
+        int[] stackNode = new int[16];
+        int top = 0;
+        stackMask[top] = full;
+        stackNode[top++] = 0;
+        while (top > 0) {
+            top--;
+            int mask = stackMask[top];
+            int v = stackNode[top];
+            tree.set(nodes[v]);
+            int b = back[mask][v];
+            if (b == BASE) continue;
+            if (top + 2 > stackMask.length) {
+                stackMask = Arrays.copyOf(stackMask, stackMask.length * 2);
+                stackNode = Arrays.copyOf(stackNode, stackNode.length * 2);
+            }
+            if (b < 0) {
+                int part = -b - 1;
+                stackMask[top] = part;
+                stackNode[top++] = v;
+                stackMask[top] = mask ^ part;
+                stackNode[top++] = v;
+            } else {
+                stackMask[top] = mask;
+                stackNode[top++] = b;
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Fewest towers on a path from any source to each node, counting the node itself and every
+     * tower after the source (the root costs nothing); INF where no path exists. Only real towers
+     * and the root are walked.
+     */
+    private static int[] towerDistances(QueryGraph query, int root, int[] sources, int[] sourceCost) {
+        int[] dist = new int[query.nodeCount()];
+        Arrays.fill(dist, INF);
+        DoubleKeyHeap heap = new DoubleKeyHeap();
+        for (int i = 0; i < sources.length; i++) {
+            if (sourceCost[i] < dist[sources[i]]) {
+                dist[sources[i]] = sourceCost[i];
+                heap.push(sources[i], sourceCost[i]);
+            }
+        }
+        QueryGraph.Cursor cursor = query.cursor();
+        while (!heap.isEmpty()) {
+            int d = (int) heap.peekKey();
+            int node = heap.poll();
+            if (d > dist[node]) continue;
+            cursor.reset(node);
+            while (cursor.next()) {
+                int neighbor = cursor.target();
+                if (neighbor != root && query.isVirtual(neighbor)) continue;
+                int next = d + (neighbor == root ? 0 : 1);
+                if (next < dist[neighbor]) {
+                    dist[neighbor] = next;
+                    heap.push(neighbor, next);
+                }
+            }
+        }
+        return dist;
+    }
+
+    private static int binomial(int n, int r) {
+        long result = 1;
+        for (int i = 1; i <= r; i++) {
+            result = result * (n - r + i) / i;
+        }
+        return (int) result;
+    }
+
+    /**
+     * The kept towers as a small CSR graph; local node 0 is the root.
+     */
+    private static final class Workspace {
+        private final int m;
+        private final int[] offsets;
+        private final int[] targets;
+
+        Workspace(QueryGraph query, int[] nodes, int[] localOf) {
+            m = nodes.length;
+            offsets = new int[m + 1];
+            int[] buffer = new int[16];
+            int size = 0;
+            QueryGraph.Cursor cursor = query.cursor();
+            for (int v = 0; v < m; v++) {
+                cursor.reset(nodes[v]);
+                while (cursor.next()) {
+                    int local = localOf[cursor.target()];
+                    if (local < 0) continue;
+                    if (size == buffer.length) buffer = Arrays.copyOf(buffer, size * 2);
+                    buffer[size++] = local;
+                }
+                offsets[v + 1] = size;
+            }
+            targets = Arrays.copyOf(buffer, size);
+        }
+
+        static int weight(int local) {
+            return local == 0 ? 0 : 1;
+        }
+
+        /**
+         * Spreads one subset's costs over the graph: a tree at v extends to a neighbour u by
+         * adding u.
+         */
+        void relax(int[] cost, int[] back, DoubleKeyHeap heap) {
+            heap.clear();
+            for (int v = 0; v < m; v++) {
+                if (cost[v] < INF) heap.push(v, cost[v]);
+            }
+            while (!heap.isEmpty()) {
+                int c = (int) heap.peekKey();
+                int v = heap.poll();
+                if (c > cost[v]) continue;
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int u = targets[e];
+                    int next = c + weight(u);
+                    if (next < cost[u]) {
+                        cost[u] = next;
+                        back[u] = v;
+                        heap.push(u, next);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Fills one subset: the best split of it at every node, then the relaxation pass.
+         */
+        void fill(int mask, int[][] cost, int[][] back, DoubleKeyHeap heap) {
+            int[] best = new int[m];
+            int[] choice = new int[m];
+            Arrays.fill(best, INF);
+
+            // Every split once: the part holding the lowest terminal, and the rest
+            int low = mask & -mask;
+            for (int part = (mask - 1) & mask; part > 0; part = (part - 1) & mask) {
+                if ((part & low) == 0) continue;
+                int[] a = cost[part];
+                int[] b = cost[mask ^ part];
+                for (int v = 0; v < m; v++) {
+                    int c = a[v] + b[v] - weight(v);
+                    if (c < best[v]) {
+                        best[v] = c;
+                        choice[v] = -part - 1;
+                    }
+                }
+            }
+            for (int v = 0; v < m; v++) {
+                if (best[v] >= INF) best[v] = INF;
+            }
+
+            relax(best, choice, heap);
+            cost[mask] = best;
+            back[mask] = choice;
+        }
+    }
+
+    /**
+     * Fills the subsets masks[from, to), all of the same size, splitting the range across the pool.
+     */
+    private static final class SubsetTask extends RecursiveAction {
+        private final Workspace work;
+        private final int[][] cost;
+        private final int[][] back;
+        private final int[] masks;
+        private final int from;
+        private final int to;
+
+        SubsetTask(Workspace work, int[][] cost, int[][] back, int[] masks, int from, int to) {
+            this.work = work;
+            this.cost = cost;
+            this.back = back;
+            this.masks = masks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SUBSETS_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SubsetTask(work, cost, back, masks, from, mid),
+                        new SubsetTask(work, cost, back, masks, mid, to));
+                return;
+            }
+            DoubleKeyHeap heap = new DoubleKeyHeap();
+            for (int i = from; i < to; i++) {
+                work.fill(masks[i], cost, back, heap);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.atheer_ct.graph;
+
+/**
+ * Trig-free range checks over the snapshot's towers. Every tower's unit vector on the sphere is
+ * computed once per snapshot; "within r km" then becomes a dot product against cos(r / R),
+ * so sin/cos/atan2/sqrt are only paid where a kilometre value is actually reported
+ * ({@link GeoMath#distanceKm}).
+ *
+ * <p>Near the link range the dot product resolves distances to a few micrometres, so it agrees
+ * with the Haversine check on every pair that is not sitting on the threshold itself
+ * (see GeoKernelTest for the bound).
+ */
+public final class GeoKernel {
+
+    // cos(MAX_TOWER_DISTANCE / R): two towers can link when their unit vectors' dot product reaches it
+    public static final double LINK_COS = cosThreshold(TowerGraph.MAX_TOWER_DISTANCE);
+
+    private final double[] x; // unit-vector coordinates, indexed like the snapshot's towers
+    private final double[] y;
+    private final double[] z;
+    private final RangeFilter rangeFilter;
+
+    public GeoKernel(TowerStore store) {
+        this(store, false);
+    }
+
+    /**
+     * @param vectorized run range scans on the Vector API when the build has the vector profile
+     *                   and the JVM the jdk.incubator.vector module; ignored otherwise
+     */
+    public GeoKernel(TowerStore store, boolean vectorized) {
+        int n = store.size();
+        x = new double[n];
+        y = new double[n];
+        z = new double[n];
+        for (int i = 0; i < n; i++) {
+            double phi = Math.toRadians(store.lat(i));
+            double lambda = Math.toRadians(store.lon(i));
+            double cosPhi = Math.cos(phi);
+            x[i] = cosPhi * Math.cos(lambda);
+            y[i] = cosPhi * Math.sin(lambda);
+            z[i] = Math.sin(phi);
+        }
+        rangeFilter = RangeFilter.create(vectorized);
+    }
+
+    /**
+     * Smallest dot product two unit vectors can have while being at most radiusKm apart.
+     */
+    public static double cosThreshold(double radiusKm) {
+        return Math.cos(Math.min(Math.PI, radiusKm / GeoMath.EARTH_RADIUS_KM));
+    }
+
+    public static double[] unitVector(double lat, double lon) {
+        double phi = Math.toRadians(lat);
+        double lambda = Math.toRadians(lon);
+        double cosPhi = Math.cos(phi);
+        return new double[] {cosPhi * Math.cos(lambda), cosPhi * Math.sin(lambda), Math.sin(phi)};
+    }
+
+    public static double dot(double[] a, double[] b) {
+        return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+    }
+
+    /**
+     * Whether two arbitrary points are within link range of each other.
+     */
+    public static boolean inLinkRange(double lat1, double lon1, double lat2, double lon2) {
+        return dot(unitVector(lat1, lon1), unitVector(lat2, lon2)) >= LINK_COS;
+    }
+
+    public int size() {
+        return x.length;
+    }
+
+    public double x(int tower) {
+        return x[tower];
+    }
+
+    public double y(int tower) {
+        return y[tower];
+    }
+
+    public double z(int tower) {
+        return z[tower];
+    }
+
+    public double dot(int tower, double[] point) {
+        return x[tower] * point[0] + y[tower] * point[1] + z[tower] * point[2];
+    }
+
+    public double dot(int towerA, int towerB) {
+        return x[towerA] * x[towerB] + y[towerA] * y[towerB] + z[towerA] * z[towerB];
+    }
+
+    /**
+     * Whether the tower is within link range of the point given as a unit vector.
+     */
+    public boolean inLinkRange(int tower, double[] point) {
+        return dot(tower, point) >= LINK_COS;
+    }
+
+    /**
+     * All towers within link range of the point given as a unit vector, ascending.
+     */
+    public int[] inLinkRange(double[] point) {
+        TowerSpatialIndex.IntBuffer out = new TowerSpatialIndex.IntBuffer();
+        rangeFilter.filter(x, y, z, 0, x.length, point, LINK_COS, out);
+        return out.toArray();
+    }
+
+    /**
+     * Whether range scans run on the Vector API.
+     */
+    public boolean isVectorized() {
+        return rangeFilter != RangeFilter.SCALAR;
+    }
+
+    RangeFilter rangeFilter() {
+        return rangeFilter;
+    }
+}
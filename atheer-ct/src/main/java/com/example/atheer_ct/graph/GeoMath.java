@@ -0,0 +1,42 @@
+package com.example.atheer_ct.graph;
+
+/**
+ * Geodesic helpers shared by the graph structures.
+ */
+public final class GeoMath {
+
+    public static final double EARTH_RADIUS_KM = 6371; // Same radius the path services use
+
+    // Kilometres per degree of latitude on the sphere above
+    public static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180.0;
+
+    private GeoMath() {
+    }
+
+    // Calculate distance between two coordinates using Haversine formula
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lonDistance = Math.toRadians(lon2 - lon1);
+
+        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return EARTH_RADIUS_KM * c; // Distance in km
+    }
+
+    // Initial bearing from the first point to the second, in degrees clockwise from north [0, 360)
+    public static double bearingDeg(double lat1, double lon1, double lat2, double lon2) {
+        lat1 = Math.toRadians(lat1);
+        lon1 = Math.toRadians(lon1);
+        lat2 = Math.toRadians(lat2);
+        lon2 = Math.toRadians(lon2);
+
+        double y = Math.sin(lon2 - lon1) * Math.cos(lat2);
+        double x = Math.cos(lat1) * Math.sin(lat2) -
+                Math.sin(lat1) * Math.cos(lat2) * Math.cos(lon2 - lon1);
+
+        return (Math.toDegrees(Math.atan2(y, x)) + 360) % 360;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.atheer_ct.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Lexicographic shortest path over a {@link QueryGraph}: fewest hops first, then the lowest
+ * cost among all fewest-hop paths. Runs as a level-synchronous BFS where each node keeps the
+ * cheapest parent from the previous level, so one pass gives the answer the separate
+ * fewest-towers and most-direct searches used to be compared for.
+ * Edge cost is the same as in {@link AStarSearch}: length plus bearingPenalty per degree of
+ * deviation from the start-to-end bearing.
+ */
+public final class HopCostSearch {
+
+    private static final ThreadLocal<Workspace> WORKSPACE = ThreadLocal.withInitial(Workspace::new);
+
+    private HopCostSearch() {
+    }
+
+    /**
+     * @return node ids from start to end, or an empty array when the end is unreachable
+     */
+    public static int[] findPath(QueryGraph query, int start, int end, double bearingPenalty) {
+        return findPath(query, start, end, bearingPenalty, null);
+    }
+
+    /**
+     * @param allowed nodes the path may use (start and end included), or null for the whole graph
+     * @return node ids from start to end, or an empty array when the end is unreachable
+     */
+    public static int[] findPath(QueryGraph query, int start, int end, double bearingPenalty, BitSet allowed) {
+        Workspace ws = WORKSPACE.get();
+        ws.reset(query.nodeCount());
+        int[] frontier = ws.frontier;
+        int[] next = ws.next;
+        QueryGraph.Cursor cursor = query.cursor();
+
+        double idealBearing = GeoMath.bearingDeg(query.lat(start), query.lon(start), query.lat(end), query.lon(end));
+
+        ws.reach(start, 0, 0.0, -1);
+        frontier[0] = start;
+        int frontierSize = 1;
+
+        // Expand whole levels; once the end is labelled its level is complete, so its cost is final
+        for (int level = 0; frontierSize > 0 && !ws.isReached(end); level++) {
+            int nextSize = 0;
+            for (int i = 0; i < frontierSize; i++) {
+                int current = frontier[i];
+
+                cursor.reset(current);
+                while (cursor.next()) {
+                    int neighbor = cursor.target();
+                    if (allowed != null && !allowed.get(neighbor)) {
+                        continue;
+                    }
+                    if (ws.isReached(neighbor) && ws.hops[neighbor] != level + 1) {
+                        continue; // Already reached with fewer hops
+                    }
+
+                    double edgeCost = cursor.length();
+                    if (bearingPenalty > 0) {
+                        double deviation = Math.abs(cursor.bearing() - idealBearing);
+                        if (deviation > 180) deviation = 360 - deviation;
+                        edgeCost += bearingPenalty * deviation;
+                    }
+
+                    double tentative = ws.cost[current] + edgeCost;
+                    if (!ws.isReached(neighbor)) {
+                        ws.reach(neighbor, level + 1, tentative, current);
+                        next[nextSize++] = neighbor;
+                    } else if (tentative < ws.cost[neighbor]) {
+                        ws.cost[neighbor] = tentative;
+                        ws.parent[neighbor] = current;
+                    }
+                }
+            }
+
+            int[] swap = frontier;
+            frontier = next;
+            next = swap;
+            frontierSize = nextSize;
+        }
+
+        if (!ws.isReached(end)) {
+            return new int[0];
+        }
+
+        int[] path = new int[ws.hops[end] + 1];
+        for (int node = end, i = path.length - 1; i >= 0; node = ws.parent[node], i--) path[i] = node;
+        return path;
+    }
+
+    /**
+     * Per-thread search state, so a search restricted to a corridor does not pay for clearing
+     * arrays over the whole graph. A node's hops/cost/parent are only meaningful when its stamp
+     * equals the current generation.
+     */
+    private static final class Workspace {
+        int generation;
+        int[] reached = new int[0];
+        int[] hops = new int[0];
+        double[] cost = new double[0];
+        int[] parent = new int[0];
+        int[] frontier = new int[0];
+        int[] next = new int[0];
+
+        void reset(int nodeCount) {
+            if (reached.length < nodeCount) {
+                reached = new int[nodeCount];
+                hops = new int[nodeCount];
+                cost = new double[nodeCount];
+                parent = new int[nodeCount];
+                frontier = new int[nodeCount];
+                next = new int[nodeCount];
+                generation = 0;
+            }
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(reached, 0);
+                generation = 1;
+            }
+        }
+
+        boolean isReached(int node) {
+            return reached[node] == generation;
+        }
+
+        void reach(int node, int level, double pathCost, int from) {
+            reached[node] = generation;
+            hops[node] = level;
+            cost[node] = pathCost;
+            parent[node] = from;
+        }
+    }
+}
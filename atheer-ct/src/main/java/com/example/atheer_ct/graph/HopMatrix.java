@@ -0,0 +1,168 @@
+package com.example.atheer_ct.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * All-pairs fewest-hop table over the tower graph: a byte hop count and a short next hop for
+ * every ordered tower pair (3 bytes per pair), so a minimum-tower path between two towers is
+ * read off in O(path length) with no search. Built with one BFS per tower, in parallel.
+ */
+public final class HopMatrix {
+
+    public static final int UNREACHABLE = 255;
+    private static final int MAX_HOPS = 254;
+    private static final int ROWS_PER_TASK = 16;
+
+    private final int n;
+    private final byte[] hops;  // n * n, unsigned, UNREACHABLE when no path
+    private final short[] next; // n * n, unsigned, first tower after 'from' on the way to 'to'
+
+    private HopMatrix(int n, byte[] hops, short[] next) {
+        this.n = n;
+        this.hops = hops;
+        this.next = next;
+    }
+
+    /**
+     * Memory the matrix needs for the given number of towers.
+     */
+    public static long bytesFor(int towerCount) {
+        return 3L * towerCount * towerCount;
+    }
+
+    /**
+     * Builds the matrix, or returns null when it does not fit in maxBytes, when the towers
+     * cannot be numbered in 16 bits, or when some shortest path is longer than 254 hops.
+     */
+    public static HopMatrix build(TowerGraph graph, ForkJoinPool pool, long maxBytes) {
+        int n = graph.nodeCount();
+        if (n == 0 || n > 65536 || bytesFor(n) > maxBytes || (long) n * n > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        byte[] hops = new byte[n * n];
+        short[] next = new short[n * n];
+        AtomicBoolean overflow = new AtomicBoolean();
+        pool.invoke(new RowTask(graph, hops, next, overflow, 0, n));
+        return overflow.get() ? null : new HopMatrix(n, hops, next);
+    }
+
+    /**
+     * Fills the rows [from, to) with one BFS each, splitting the range across the pool.
+     */
+    private static final class RowTask extends RecursiveAction {
+        private final TowerGraph graph;
+        private final byte[] hops;
+        private final short[] next;
+        private final AtomicBoolean overflow;
+        private final int from;
+        private final int to;
+
+        RowTask(TowerGraph graph, byte[] hops, short[] next, AtomicBoolean overflow, int from, int to) {
+            this.graph = graph;
+            this.hops = hops;
+            this.next = next;
+            this.overflow = overflow;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > ROWS_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RowTask(graph, hops, next, overflow, from, mid),
+                        new RowTask(graph, hops, next, overflow, mid, to));
+                return;
+            }
+
+            int n = graph.nodeCount();
+            int[] queue = new int[n];
+            for (int source = from; source < to && !overflow.get(); source++) {
+                int row = source * n;
+                Arrays.fill(hops, row, row + n, (byte) UNREACHABLE);
+                hops[row + source] = 0;
+                next[row + source] = (short) source;
+
+                int head = 0;
+                int tail = 0;
+                queue[tail++] = source;
+                while (head < tail) {
+                    int current = queue[head++];
+                    int depth = (hops[row + current] & 0xFF) + 1;
+                    for (int e = graph.start(current); e < graph.end(current); e++) {
+                        int neighbor = graph.target(e);
+                        if ((hops[row + neighbor] & 0xFF) != UNREACHABLE) continue;
+                        if (depth > MAX_HOPS) {
+                            overflow.set(true);
+                            return;
+                        }
+                        hops[row + neighbor] = (byte) depth;
+                        next[row + neighbor] = current == source ? (short) neighbor : next[row + current];
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+        }
+    }
+
+    public int hops(int from, int to) {
+        return hops[from * n + to] & 0xFF;
+    }
+
+    public int nextHop(int from, int to) {
+        return next[from * n + to] & 0xFFFF;
+    }
+
+    /**
+     * Fewest-hop path between two nodes of the query graph. Virtual nodes are attached through
+     * the real towers they link to, so only |links(start)| x |links(end)| table cells are read.
+     *
+     * @return node ids from start to end, or an empty array when the end is unreachable
+     */
+    public int[] findPath(QueryGraph query, int start, int end) {
+        if (start == end) {
+            return new int[] {start};
+        }
+
+        int[] startLinks = query.realAttachments(start);
+        int[] endLinks = query.realAttachments(end);
+
+        // A virtual start linked straight to the end needs no towers at all
+        QueryGraph.Cursor cursor = query.cursor();
+        cursor.reset(start);
+        while (cursor.next()) {
+            if (cursor.target() == end) return new int[] {start, end};
+        }
+
+        int best = Integer.MAX_VALUE;
+        int bestFrom = -1;
+        int bestTo = -1;
+        for (int a : startLinks) {
+            for (int b : endLinks) {
+                int h = hops(a, b);
+                if (h != UNREACHABLE && h < best) {
+                    best = h;
+                    bestFrom = a;
+                    bestTo = b;
+                }
+            }
+        }
+        if (bestFrom < 0) {
+            return new int[0];
+        }
+
+        boolean virtualStart = query.isVirtual(start);
+        boolean virtualEnd = query.isVirtual(end);
+        int[] path = new int[best + 1 + (virtualStart ? 1 : 0) + (virtualEnd ? 1 : 0)];
+        int i = 0;
+        if (virtualStart) path[i++] = start;
+        for (int node = bestFrom; node != bestTo; node = nextHop(node, bestTo)) path[i++] = node;
+        path[i++] = bestTo;
+        if (virtualEnd) path[i] = end;
+        return path;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.atheer_ct.graph;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of node ids 0..capacity-1 keyed by a double, with decrease-key.
+ * Each node is in the heap at most once; equal keys are ordered by node id so
+ * searches are deterministic.
+ */
+public final class IndexedMinHeap {
+
+    private final int[] heap;      // node ids in heap order
+    private final int[] position;  // slot of each node in heap, -1 when absent
+    private final double[] key;    // key of each node while it is in the heap
+    private int size;
+
+    public IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        position = new int[capacity];
+        key = new double[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int node) {
+        return position[node] >= 0;
+    }
+
+    /**
+     * Inserts the node, or lowers its key if it is already queued with a higher one.
+     */
+    public void insertOrDecrease(int node, double newKey) {
+        int slot = position[node];
+        if (slot < 0) {
+            slot = size++;
+            heap[slot] = node;
+            position[node] = slot;
+            key[node] = newKey;
+            siftUp(slot);
+        } else if (newKey < key[node]) {
+            key[node] = newKey;
+            siftUp(slot);
+        }
+    }
+
+    /**
+     * Removes and returns the node with the smallest key.
+     */
+    public int poll() {
+        int top = heap[0];
+        position[top] = -1;
+        int last = heap[--size];
+        if (size > 0) {
+            heap[0] = last;
+            position[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int slot) {
+        int node = heap[slot];
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (!less(node, heap[parent])) break;
+            move(heap[parent], slot);
+            slot = parent;
+        }
+        move(node, slot);
+    }
+
+    private void siftDown(int slot) {
+        int node = heap[slot];
+        int half = size >>> 1;
+        while (slot < half) {
+            int child = 2 * slot + 1;
+            if (child + 1 < size && less(heap[child + 1], heap[child])) child++;
+            if (!less(heap[child], node)) break;
+            move(heap[child], slot);
+            slot = child;
+        }
+        move(node, slot);
+    }
+
+    private boolean less(int a, int b) {
+        return key[a] < key[b] || (key[a] == key[b] && a < b);
+    }
+
+    private void move(int node, int slot) {
+        heap[slot] = node;
+        position[node] = slot;
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.atheer_ct.graph;
+
+import java.util.Arrays;
+
+/**
+ * Landmark distances for ALT (A*, landmarks, triangle inequality). A handful of towers spread
+ * over the largest component are chosen by farthest-point selection, and the link-length
+ * distance from each of them to every tower is stored as a float, interleaved per tower. Links
+ * are symmetric, so the distance to a landmark equals the distance from it and one value
+ * serves both directions.
+ *
+ * <p>For any tower v and target t, |d(L, t) - d(L, v)| is a lower bound on d(v, t), usually far
+ * tighter than the straight line when the network has to go around gaps.
+ */
+public final class Landmarks {
+
+    public static final int DEFAULT_COUNT = 16;
+
+    private final int[] towers;
+    private final float[] distance; // [tower * count + landmark], +infinity when unreachable
+
+    private Landmarks(int[] towers, float[] distance) {
+        this.towers = towers;
+        this.distance = distance;
+    }
+
+    /**
+     * Picks up to count landmarks: the tower farthest from an arbitrary tower of the largest
+     * component first, then repeatedly the tower farthest from all landmarks chosen so far.
+     */
+    public static Landmarks build(TowerGraph graph, TowerComponents components, int count) {
+        int n = graph.nodeCount();
+        if (n == 0 || count <= 0) {
+            return new Landmarks(new int[0], new float[0]);
+        }
+
+        int[] componentSize = new int[components.count()];
+        int seed = 0;
+        for (int v = 0; v < n; v++) {
+            int c = components.componentOf(v);
+            if (++componentSize[c] > componentSize[components.componentOf(seed)]) seed = v;
+        }
+
+        int[] towers = new int[count];
+        float[][] distance = new float[count][];
+        float[] closest = new float[n];
+        Arrays.fill(closest, Float.POSITIVE_INFINITY);
+
+        int next = farthest(shortestDistances(graph, seed), null);
+        if (next < 0) next = seed; // a single isolated tower
+        int chosen = 0;
+        while (chosen < count) {
+            towers[chosen] = next;
+            distance[chosen] = shortestDistances(graph, next);
+            for (int v = 0; v < n; v++) {
+                closest[v] = Math.min(closest[v], distance[chosen][v]);
+            }
+            chosen++;
+            next = farthest(closest, distance[0]);
+            if (next < 0) break; // every reachable tower already is a landmark
+        }
+        // One tower's distances to all landmarks share a cache line
+        float[] interleaved = new float[n * chosen];
+        for (int l = 0; l < chosen; l++) {
+            for (int v = 0; v < n; v++) {
+                interleaved[v * chosen + l] = distance[l][v];
+            }
+        }
+        return new Landmarks(Arrays.copyOf(towers, chosen), interleaved);
+    }
+
+    // Reachable tower with the largest positive value, lowest index on ties; -1 when none
+    private static int farthest(float[] values, float[] reachable) {
+        int best = -1;
+        for (int v = 0; v < values.length; v++) {
+            if (reachable != null && reachable[v] == Float.POSITIVE_INFINITY) continue;
+            if (values[v] == Float.POSITIVE_INFINITY || values[v] <= 0) continue;
+            if (best < 0 || values[v] > values[best]) best = v;
+        }
+        return best;
+    }
+
+    private static float[] shortestDistances(TowerGraph graph, int source) {
+        int n = graph.nodeCount();
+        double[] dist = new double[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        DoubleKeyHeap heap = new DoubleKeyHeap();
+        dist[source] = 0;
+        heap.push(source, 0);
+        while (!heap.isEmpty()) {
+            double d = heap.peekKey();
+            int node = heap.poll();
+            if (d > dist[node]) continue;
+            for (int e = graph.start(node); e < graph.end(node); e++) {
+                int neighbor = graph.target(e);
+                double next = d + graph.length(e);
+                if (next < dist[neighbor]) {
+                    dist[neighbor] = next;
+                    heap.push(neighbor, next);
+                }
+            }
+        }
+
+        float[] result = new float[n];
+        for (int v = 0; v < n; v++) {
+            result[v] = (float) dist[v];
+        }
+        return result;
+    }
+
+    public int count() {
+        return towers.length;
+    }
+
+    public int tower(int landmark) {
+        return towers[landmark];
+    }
+
+    public float distance(int landmark, int tower) {
+        return distance[tower * towers.length + landmark];
+    }
+
+    /**
+     * Landmark distances of a search target. A virtual target is only entered over its own real
+     * links, so for each landmark it keeps the smallest d(L, a) + link and the largest
+     * d(L, a) - link over its linked towers a; for a tower both are d(L, t).
+     */
+    public Target target(QueryGraph query, int node) {
+        int count = towers.length;
+        float[] near = new float[count];
+        float[] far = new float[count];
+        if (!query.isVirtual(node)) {
+            for (int l = 0; l < count; l++) {
+                near[l] = far[l] = distance[node * count + l];
+            }
+            return new Target(near, far);
+        }
+
+        Arrays.fill(near, Float.POSITIVE_INFINITY);
+        Arrays.fill(far, Float.NEGATIVE_INFINITY);
+        QueryGraph.Cursor cursor = query.cursor();
+        cursor.reset(node);
+        while (cursor.next()) {
+            int tower = cursor.target();
+            if (query.isVirtual(tower)) continue;
+            for (int l = 0; l < count; l++) {
+                double d = distance[tower * count + l];
+                if (d == Double.POSITIVE_INFINITY) continue;
+                near[l] = (float) Math.min(near[l], d + cursor.length());
+                far[l] = (float) Math.max(far[l], d - cursor.length());
+            }
+        }
+        return new Target(near, far);
+    }
+
+    /**
+     * Lower bound on the link-length distance from a tower to the target, 0 for virtual nodes.
+     * Paths into the target may end with its virtual links but not pass through other virtual
+     * nodes, which holds for the rest of any shortest path that starts at a virtual node.
+     */
+    public double lowerBound(QueryGraph query, int node, Target target) {
+        if (query.isVirtual(node)) {
+            return 0;
+        }
+        int count = towers.length;
+        int base = node * count;
+        double bound = 0;
+        for (int l = 0; l < count; l++) {
+            float d = distance[base + l];
+            float near = target.near[l];
+            if (d == Float.POSITIVE_INFINITY || near == Float.POSITIVE_INFINITY) continue;
+            // d(v, t) >= d(L, t) - d(L, v) and >= d(L, v) - d(L, t), each over the target's links
+            double gap = Math.max(near - (double) d, d - (double) target.far[l]);
+            // Every value went through float rounding; give back two ulps so this stays a lower bound
+            gap -= 2 * Math.ulp(Math.max(d, near));
+            if (gap > bound) bound = gap;
+        }
+        return bound;
+    }
+
+    /**
+     * Per-landmark distance range of a search target, see {@link #target}.
+     */
+    public static final class Target {
+        private final float[] near;
+        private final float[] far;
+
+        private Target(float[] near, float[] far) {
+            this.near = near;
+            this.far = far;
+        }
+    }
+}
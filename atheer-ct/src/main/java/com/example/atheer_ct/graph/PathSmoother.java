@@ -0,0 +1,122 @@
+package com.example.atheer_ct.graph;
+
+/**
+ * Straightens a path over a {@link QueryGraph} while keeping every step a link. A middle tower
+ * is dropped when its neighbours on the path are linked themselves, and where the path turns by
+ * more than 45 degrees it is swapped for the tower that lines up best between them. Candidates
+ * for that swap are in range of both neighbours, so they come from the spatial index as the
+ * lens where the two link-range discs overlap rather than from a scan over every tower.
+ * Passes repeat until one changes nothing.
+ */
+public final class PathSmoother {
+
+    private static final double ZIGZAG_DEGREES = 45;
+    private static final double BEARING_WEIGHT = 0.2; // score per degree off the direct bearing
+
+    // Two swaps can in principle keep undoing each other; a converging path settles far sooner
+    private static final int MAX_PASSES = 64;
+
+    private PathSmoother() {
+    }
+
+    /**
+     * @return the smoothed node ids, from the same start to the same end
+     */
+    public static int[] smooth(QueryGraph query, int[] nodes) {
+        if (nodes.length <= 3) {
+            return nodes; // Nothing to smooth for very short paths
+        }
+        int[] path = nodes.clone();
+        int size = path.length;
+
+        boolean changed = true;
+        for (int pass = 0; pass < MAX_PASSES && changed; pass++) {
+            changed = false;
+
+            // Look at each triplet of consecutive towers
+            for (int i = 0; i < size - 2; i++) {
+                int t1 = path[i];
+                int t2 = path[i + 1];
+                int t3 = path[i + 2];
+
+                // Skip the middle tower when its neighbours are linked
+                if (query.inLinkRange(t1, t3)) {
+                    System.arraycopy(path, i + 2, path, i + 1, size - i - 2);
+                    size--;
+                    changed = true;
+                    i--;
+                    continue;
+                }
+
+                // Consecutive path towers are linked, so both bearings are stored on their edges
+                double bearingChange = angleBetween(query.bearing(t1, t2), query.bearing(t2, t3));
+                if (bearingChange > ZIGZAG_DEGREES) {
+                    int better = betterMiddleTower(query, t1, t3, path, size, i + 1);
+                    if (better >= 0 && better != t2) {
+                        path[i + 1] = better;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        int[] result = new int[size];
+        System.arraycopy(path, 0, result, 0, size);
+        return result;
+    }
+
+    /**
+     * Tower in range of both t1 and t3 closest to their midpoint with the least bearing
+     * deviation, skipping towers already on the path other than the one at middleIndex.
+     *
+     * @return the tower's node id, or -1 when there is none
+     */
+    private static int betterMiddleTower(QueryGraph query, int t1, int t3, int[] path, int size, int middleIndex) {
+        double lat1 = query.lat(t1);
+        double lon1 = query.lon(t1);
+        double lat3 = query.lat(t3);
+        double lon3 = query.lon(t3);
+
+        // t1 and t3 are not linked, so this is the one bearing that has to be computed
+        double directBearing = GeoMath.bearingDeg(lat1, lon1, lat3, lon3);
+        double[] midpoint = GeoKernel.unitVector((lat1 + lat3) / 2, (lon1 + lon3) / 2);
+        GeoKernel kernel = query.getSnapshot().getGeoKernel();
+
+        int best = -1;
+        double bestScore = Double.MAX_VALUE;
+        for (int tower : query.getSnapshot().getSpatialIndex()
+                .withinLens(lat1, lon1, lat3, lon3, TowerGraph.MAX_TOWER_DISTANCE)) {
+            if (tower != path[middleIndex] && onPath(path, size, tower)) {
+                continue;
+            }
+
+            // Chord between unit vectors, within millimetres of the great-circle distance here
+            double dx = kernel.x(tower) - midpoint[0];
+            double dy = kernel.y(tower) - midpoint[1];
+            double dz = kernel.z(tower) - midpoint[2];
+            double distFromMidpoint = GeoMath.EARTH_RADIUS_KM * Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+            double score = distFromMidpoint
+                    + angleBetween(directBearing, query.bearing(t1, tower)) * BEARING_WEIGHT
+                    + angleBetween(directBearing, query.bearing(tower, t3)) * BEARING_WEIGHT;
+            if (score < bestScore) {
+                bestScore = score;
+                best = tower;
+            }
+        }
+        return best;
+    }
+
+    private static boolean onPath(int[] path, int size, int node) {
+        for (int i = 0; i < size; i++) {
+            if (path[i] == node) return true;
+        }
+        return false;
+    }
+
+    // Smallest angle between two bearings, in degrees [0, 180]
+    private static double angleBetween(double a, double b) {
+        double difference = Math.abs(a - b);
+        return difference > 180 ? 360 - difference : difference;
+    }
+}
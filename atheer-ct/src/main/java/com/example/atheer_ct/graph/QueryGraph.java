@@ -0,0 +1,328 @@
+package com.example.atheer_ct.graph;
+
+import com.example.atheer_ct.dto.TowerDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per-request view of the tower graph with a few virtual towers (START/END, POP, destinations)
+ * spliced in. Real towers keep their snapshot index as node id; virtual tower i gets
+ * node id {@code realCount() + i}. The shared {@link TowerGraph} is never modified.
+ */
+public final class QueryGraph {
+
+    private final TowerSnapshot snapshot;
+    private final TowerGraph graph;
+    private final TowerStore store;
+    private final List<TowerDto> virtualTowers;
+    private final double[] virtualLat;
+    private final double[] virtualLon;
+    private final double[][] virtualVector; // unit vectors of the virtual towers
+    private final GeoKernel kernel;
+    private final int realCount;
+
+    // Adjacency of the virtual nodes (to real and to other virtual nodes)
+    private final int[] virtualOffsets;
+    private final int[] virtualTargets;
+    private final float[] virtualLengths;
+    private final float[] virtualBearings;
+
+    // Reverse links: real towers that can reach a virtual node, sorted by id
+    private final int[] linkedReal;
+    private final int[] linkOffsets;
+    private final int[] linkTargets;
+    private final float[] linkLengths;
+    private final float[] linkBearings;
+
+    public QueryGraph(TowerSnapshot snapshot, List<TowerDto> virtualTowers) {
+        this.snapshot = snapshot;
+        this.graph = snapshot.getGraph();
+        this.store = snapshot.getStore();
+        this.virtualTowers = new ArrayList<>(virtualTowers);
+        this.realCount = snapshot.size();
+
+        int virtualCount = virtualTowers.size();
+        virtualLat = new double[virtualCount];
+        virtualLon = new double[virtualCount];
+        for (int v = 0; v < virtualCount; v++) {
+            virtualLat[v] = virtualTowers.get(v).getLatitude();
+            virtualLon[v] = virtualTowers.get(v).getLongitude();
+        }
+        TowerKdTree kdTree = snapshot.getKdTree();
+        TowerGraph.EdgeList links = new TowerGraph.EdgeList();
+        TowerGraph.EdgeList virtualPairs = new TowerGraph.EdgeList();
+
+        kernel = snapshot.getGeoKernel();
+        virtualVector = new double[virtualCount][];
+        for (int v = 0; v < virtualCount; v++) {
+            virtualVector[v] = GeoKernel.unitVector(virtualLat[v], virtualLon[v]);
+        }
+
+        for (int v = 0; v < virtualCount; v++) {
+            // Snap the virtual tower to the real towers in range; the KD-tree radius is padded
+            // slightly and the same dot-product test as the graph's own links decides
+            for (int i : kdTree.withinRadius(virtualLat[v], virtualLon[v], TowerGraph.MAX_TOWER_DISTANCE + 1e-6)) {
+                if (kernel.inLinkRange(i, virtualVector[v])) {
+                    links.add(i, v, (float) GeoMath.distanceKm(virtualLat[v], virtualLon[v], store.lat(i), store.lon(i)),
+                            (float) GeoMath.bearingDeg(store.lat(i), store.lon(i), virtualLat[v], virtualLon[v]),
+                            (float) GeoMath.bearingDeg(virtualLat[v], virtualLon[v], store.lat(i), store.lon(i)));
+                }
+            }
+            for (int w = v + 1; w < virtualCount; w++) {
+                if (GeoKernel.dot(virtualVector[v], virtualVector[w]) >= GeoKernel.LINK_COS) {
+                    virtualPairs.add(v, w, (float) GeoMath.distanceKm(virtualLat[v], virtualLon[v], virtualLat[w], virtualLon[w]),
+                            (float) GeoMath.bearingDeg(virtualLat[v], virtualLon[v], virtualLat[w], virtualLon[w]),
+                            (float) GeoMath.bearingDeg(virtualLat[w], virtualLon[w], virtualLat[v], virtualLon[v]));
+                }
+            }
+        }
+
+        // Virtual node adjacency: real links first, then virtual-to-virtual links
+        virtualOffsets = new int[virtualCount + 1];
+        for (int i = 0; i < links.size; i++) virtualOffsets[links.to[i] + 1]++;
+        for (int i = 0; i < virtualPairs.size; i++) {
+            virtualOffsets[virtualPairs.from[i] + 1]++;
+            virtualOffsets[virtualPairs.to[i] + 1]++;
+        }
+        for (int v = 0; v < virtualCount; v++) virtualOffsets[v + 1] += virtualOffsets[v];
+        virtualTargets = new int[virtualOffsets[virtualCount]];
+        virtualLengths = new float[virtualOffsets[virtualCount]];
+        virtualBearings = new float[virtualOffsets[virtualCount]];
+        int[] fill = Arrays.copyOf(virtualOffsets, virtualCount);
+        for (int i = 0; i < links.size; i++) {
+            int v = links.to[i];
+            virtualTargets[fill[v]] = links.from[i];
+            virtualLengths[fill[v]] = links.length[i];
+            virtualBearings[fill[v]++] = links.reverseBearing[i];
+        }
+        for (int i = 0; i < virtualPairs.size; i++) {
+            int v = virtualPairs.from[i];
+            int w = virtualPairs.to[i];
+            virtualTargets[fill[v]] = realCount + w;
+            virtualLengths[fill[v]] = virtualPairs.length[i];
+            virtualBearings[fill[v]++] = virtualPairs.bearing[i];
+            virtualTargets[fill[w]] = realCount + v;
+            virtualLengths[fill[w]] = virtualPairs.length[i];
+            virtualBearings[fill[w]++] = virtualPairs.reverseBearing[i];
+        }
+
+        // Reverse links grouped by real tower
+        Integer[] order = new Integer[links.size];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> links.from[a] != links.from[b]
+                ? Integer.compare(links.from[a], links.from[b])
+                : Integer.compare(links.to[a], links.to[b]));
+
+        int distinct = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (i == 0 || links.from[order[i]] != links.from[order[i - 1]]) distinct++;
+        }
+        linkedReal = new int[distinct];
+        linkOffsets = new int[distinct + 1];
+        linkTargets = new int[order.length];
+        linkLengths = new float[order.length];
+        linkBearings = new float[order.length];
+        int slot = -1;
+        for (int i = 0; i < order.length; i++) {
+            int e = order[i];
+            if (i == 0 || links.from[e] != links.from[order[i - 1]]) {
+                linkedReal[++slot] = links.from[e];
+                linkOffsets[slot] = i;
+            }
+            linkTargets[i] = realCount + links.to[e];
+            linkLengths[i] = links.length[e];
+            linkBearings[i] = links.bearing[e];
+        }
+        linkOffsets[distinct] = order.length;
+    }
+
+    public TowerSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public int nodeCount() {
+        return realCount + virtualTowers.size();
+    }
+
+    public int realCount() {
+        return realCount;
+    }
+
+    public int virtualNode(int index) {
+        return realCount + index;
+    }
+
+    public boolean isVirtual(int node) {
+        return node >= realCount;
+    }
+
+    public TowerDto tower(int node) {
+        return node < realCount ? store.tower(node) : virtualTowers.get(node - realCount);
+    }
+
+    public double lat(int node) {
+        return node < realCount ? store.lat(node) : virtualLat[node - realCount];
+    }
+
+    public double lon(int node) {
+        return node < realCount ? store.lon(node) : virtualLon[node - realCount];
+    }
+
+    /**
+     * Whether two nodes are within link range of each other, decided on their unit vectors
+     * exactly like the links of the graph.
+     */
+    public boolean inLinkRange(int a, int b) {
+        if (a >= realCount) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        if (b < realCount) {
+            return kernel.dot(a, b) >= GeoKernel.LINK_COS;
+        }
+        double[] vb = virtualVector[b - realCount];
+        return a < realCount
+                ? kernel.inLinkRange(a, vb)
+                : GeoKernel.dot(virtualVector[a - realCount], vb) >= GeoKernel.LINK_COS;
+    }
+
+    /**
+     * Initial bearing from a to b in degrees, read from their link when they have one.
+     */
+    public double bearing(int a, int b) {
+        if (a < realCount && b < realCount) {
+            int edge = graph.edge(a, b);
+            if (edge >= 0) {
+                return graph.bearing(edge);
+            }
+        } else if (a >= realCount) {
+            int v = a - realCount;
+            for (int i = virtualOffsets[v]; i < virtualOffsets[v + 1]; i++) {
+                if (virtualTargets[i] == b) return virtualBearings[i];
+            }
+        } else {
+            int slot = Arrays.binarySearch(linkedReal, a);
+            for (int i = slot >= 0 ? linkOffsets[slot] : 0, end = slot >= 0 ? linkOffsets[slot + 1] : 0; i < end; i++) {
+                if (linkTargets[i] == b) return linkBearings[i];
+            }
+        }
+        return GeoMath.bearingDeg(lat(a), lon(a), lat(b), lon(b));
+    }
+
+    /**
+     * Whether some chain of links joins the two nodes, answered from the snapshot's component
+     * labels. A search over this graph can only find a path between them when it does.
+     */
+    public boolean hasChain(int a, int b) {
+        return snapshot.getComponents().connected(this, a, b);
+    }
+
+    /**
+     * Number of real towers within range of the given virtual node.
+     */
+    public int virtualDegree(int node) {
+        int v = node - realCount;
+        return virtualOffsets[v + 1] - virtualOffsets[v];
+    }
+
+    /**
+     * Real towers a node joins the tower graph through: the node itself, or the towers a
+     * virtual node links to, ascending.
+     */
+    public int[] realAttachments(int node) {
+        if (node < realCount) {
+            return new int[] {node};
+        }
+        int v = node - realCount;
+        int end = virtualOffsets[v];
+        while (end < virtualOffsets[v + 1] && virtualTargets[end] < realCount) end++;
+        return Arrays.copyOfRange(virtualTargets, virtualOffsets[v], end);
+    }
+
+    /**
+     * Creates a reusable neighbor cursor. Allocate one per search, not per expanded node.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Iterates the neighbors of one node: its shared graph edges first, then its virtual links.
+     */
+    public final class Cursor {
+        private int edge;
+        private int edgeEnd;
+        private int extra;
+        private int extraEnd;
+        private int[] extraTargets;
+        private float[] extraLengths;
+        private float[] extraBearings;
+        private int target;
+        private float length;
+        private float bearing;
+
+        public Cursor reset(int node) {
+            if (node < realCount) {
+                edge = graph.start(node);
+                edgeEnd = graph.end(node);
+                int slot = Arrays.binarySearch(linkedReal, node);
+                if (slot >= 0) {
+                    extra = linkOffsets[slot];
+                    extraEnd = linkOffsets[slot + 1];
+                } else {
+                    extra = 0;
+                    extraEnd = 0;
+                }
+                extraTargets = linkTargets;
+                extraLengths = linkLengths;
+                extraBearings = linkBearings;
+            } else {
+                int v = node - realCount;
+                edge = 0;
+                edgeEnd = 0;
+                extra = virtualOffsets[v];
+                extraEnd = virtualOffsets[v + 1];
+                extraTargets = virtualTargets;
+                extraLengths = virtualLengths;
+                extraBearings = virtualBearings;
+            }
+            return this;
+        }
+
+        public boolean next() {
+            if (edge < edgeEnd) {
+                target = graph.target(edge);
+                length = graph.length(edge);
+                bearing = graph.bearing(edge);
+                edge++;
+                return true;
+            }
+            if (extra < extraEnd) {
+                target = extraTargets[extra];
+                length = extraLengths[extra];
+                bearing = extraBearings[extra];
+                extra++;
+                return true;
+            }
+            return false;
+        }
+
+        public int target() {
+            return target;
+        }
+
+        public float length() {
+            return length;
+        }
+
+        /**
+         * Initial bearing from the node towards the current neighbor, in degrees.
+         */
+        public float bearing() {
+            return bearing;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.atheer_ct.graph;
+
+/**
+ * Batched "which of these unit vectors are within range of the point" test over contiguous
+ * x/y/z arrays. The scalar version always works; the SIMD version lives in src/vector/java,
+ * is only compiled by the {@code vector} Maven profile, needs the JVM to be started with
+ * {@code --add-modules jdk.incubator.vector} and is only used when asked for.
+ */
+interface RangeFilter {
+
+    /**
+     * Appends to out every index in [from, to) whose vector has a dot product of at least
+     * minDot with the point, in ascending order.
+     */
+    void filter(double[] x, double[] y, double[] z, int from, int to,
+                double[] point, double minDot, TowerSpatialIndex.IntBuffer out);
+
+    RangeFilter SCALAR = (x, y, z, from, to, point, minDot, out) -> {
+        double px = point[0];
+        double py = point[1];
+        double pz = point[2];
+        for (int i = from; i < to; i++) {
+            if (x[i] * px + y[i] * py + z[i] * pz >= minDot) out.add(i);
+        }
+    };
+
+    /**
+     * The SIMD filter when vectorized is set, the incubator module is available and the class
+     * was built, otherwise the scalar one.
+     */
+    static RangeFilter create(boolean vectorized) {
+        if (vectorized && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                // Loaded by name: the class is absent from default builds, and the incubator classes
+                // are never touched without the module
+                return (RangeFilter) Class.forName("com.example.atheer_ct.graph.VectorRangeFilter")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return SCALAR;
+            }
+        }
+        return SCALAR;
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.atheer_ct.graph;
+
+/**
+ * Parent pointers of a shortest-path tree over a {@link QueryGraph}, as built by
+ * {@link DijkstraSearch#shortestPathTree}. Paths to any number of targets are read off in
+ * O(path length) each.
+ */
+public final class ShortestPathTree {
+
+    static final int UNREACHED = -2;
+
+    private final int root;
+    private final int[] parent; // -1 for the root, UNREACHED for nodes outside the tree
+
+    ShortestPathTree(int root, int[] parent) {
+        this.root = root;
+        this.parent = parent;
+    }
+
+    public int root() {
+        return root;
+    }
+
+    public boolean reaches(int node) {
+        return parent[node] != UNREACHED;
+    }
+
+    /**
+     * @return node ids from the root to the node, or an empty array when the node is unreachable
+     */
+    public int[] pathTo(int node) {
+        if (!reaches(node)) {
+            return new int[0];
+        }
+        int length = 0;
+        for (int current = node; current != -1; current = parent[current]) length++;
+        int[] path = new int[length];
+        for (int current = node, i = length - 1; current != -1; current = parent[current], i--) path[i] = current;
+        return path;
+    }
+}
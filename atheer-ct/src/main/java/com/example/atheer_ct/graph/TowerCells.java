@@ -0,0 +1,219 @@
+package com.example.atheer_ct.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Coarse routing graph over geographic cells. The map is cut into squares CELL_KM wide and the
+ * towers of each square are split into clusters that are linked inside it; every cluster is a
+ * coarse node, and two clusters share a portal edge when some tower link runs between them.
+ * A long query first routes across the clusters, a few per hundred kilometres, and then only
+ * searches the towers of the clusters along that route, so its work follows the route length
+ * rather than the size of the dataset.
+ */
+public final class TowerCells {
+
+    public static final double CELL_KM = 50;
+
+    private final int[] clusterOf;     // per tower
+    private final int[] towerStart;    // per cluster, its range in clusterTowers
+    private final int[] clusterTowers;
+    private final int[] portalStart;   // per cluster, its range in portalTarget
+    private final int[] portalTarget;
+    private final float[] portalLength; // km between the two cluster centres
+
+    private TowerCells(int[] clusterOf, int[] towerStart, int[] clusterTowers, int[] portalStart,
+                       int[] portalTarget, float[] portalLength) {
+        this.clusterOf = clusterOf;
+        this.towerStart = towerStart;
+        this.clusterTowers = clusterTowers;
+        this.portalStart = portalStart;
+        this.portalTarget = portalTarget;
+        this.portalLength = portalLength;
+    }
+
+    public static TowerCells build(TowerStore store, TowerGraph graph) {
+        int n = graph.nodeCount();
+        double minLat = 0, maxLat = 0, minLon = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || store.lat(i) < minLat) minLat = store.lat(i);
+            if (i == 0 || store.lat(i) > maxLat) maxLat = store.lat(i);
+            if (i == 0 || store.lon(i) < minLon) minLon = store.lon(i);
+        }
+
+        // Cells only group towers, so one longitude scale for the whole dataset is close enough
+        double cellLatDeg = CELL_KM / GeoMath.KM_PER_DEGREE;
+        double cellLonDeg = cellLatDeg / Math.max(0.1, Math.cos(Math.toRadians((minLat + maxLat) / 2)));
+        long[] cell = new long[n];
+        for (int i = 0; i < n; i++) {
+            long row = (long) ((store.lat(i) - minLat) / cellLatDeg);
+            long col = (long) ((store.lon(i) - minLon) / cellLonDeg);
+            cell[i] = (row << 32) | col;
+        }
+
+        // Clusters: towers of one cell connected by links that stay inside it
+        int[] clusterOf = new int[n];
+        Arrays.fill(clusterOf, -1);
+        int[] clusterTowers = new int[n];
+        int[] towerStart = new int[n + 1];
+        int clusters = 0;
+        int tail = 0;
+        for (int root = 0; root < n; root++) {
+            if (clusterOf[root] >= 0) continue;
+            int head = tail;
+            clusterOf[root] = clusters;
+            clusterTowers[tail++] = root;
+            while (head < tail) {
+                int current = clusterTowers[head++];
+                for (int e = graph.start(current); e < graph.end(current); e++) {
+                    int neighbor = graph.target(e);
+                    if (clusterOf[neighbor] < 0 && cell[neighbor] == cell[root]) {
+                        clusterOf[neighbor] = clusters;
+                        clusterTowers[tail++] = neighbor;
+                    }
+                }
+            }
+            towerStart[++clusters] = tail;
+        }
+        towerStart = Arrays.copyOf(towerStart, clusters + 1);
+
+        // Mean position of each cluster's towers
+        double[] centerLat = new double[clusters];
+        double[] centerLon = new double[clusters];
+        for (int c = 0; c < clusters; c++) {
+            for (int i = towerStart[c]; i < towerStart[c + 1]; i++) {
+                centerLat[c] += store.lat(clusterTowers[i]);
+                centerLon[c] += store.lon(clusterTowers[i]);
+            }
+            int size = towerStart[c + 1] - towerStart[c];
+            centerLat[c] /= size;
+            centerLon[c] /= size;
+        }
+
+        // Portals: each pair of clusters joined by at least one link, once per direction
+        int[] portalStart = new int[clusters + 1];
+        int[] portalTarget = new int[16];
+        int size = 0;
+        int[] seen = new int[clusters];
+        Arrays.fill(seen, -1);
+        for (int c = 0; c < clusters; c++) {
+            for (int i = towerStart[c]; i < towerStart[c + 1]; i++) {
+                int tower = clusterTowers[i];
+                for (int e = graph.start(tower); e < graph.end(tower); e++) {
+                    int other = clusterOf[graph.target(e)];
+                    if (other == c || seen[other] == c) continue;
+                    seen[other] = c;
+                    if (size == portalTarget.length) portalTarget = Arrays.copyOf(portalTarget, size * 2);
+                    portalTarget[size++] = other;
+                }
+            }
+            portalStart[c + 1] = size;
+        }
+        portalTarget = Arrays.copyOf(portalTarget, size);
+        float[] portalLength = new float[size];
+        for (int c = 0; c < clusters; c++) {
+            for (int p = portalStart[c]; p < portalStart[c + 1]; p++) {
+                int other = portalTarget[p];
+                portalLength[p] = (float) GeoMath.distanceKm(centerLat[c], centerLon[c], centerLat[other], centerLon[other]);
+            }
+        }
+
+        return new TowerCells(clusterOf, towerStart, clusterTowers, portalStart, portalTarget, portalLength);
+    }
+
+    public int clusterCount() {
+        return towerStart.length - 1;
+    }
+
+    public int clusterOf(int tower) {
+        return clusterOf[tower];
+    }
+
+    /**
+     * Nodes a search from start to end may use: the towers of the clusters on the shortest
+     * cluster route between them, widened by every cluster within margin portal edges of the
+     * route, plus start and end themselves.
+     *
+     * @return the allowed query nodes, or null when no cluster route joins the two
+     */
+    public BitSet corridor(QueryGraph query, int start, int end, int margin) {
+        int clusters = clusterCount();
+        double[] dist = new double[clusters];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        int[] parent = new int[clusters];
+        boolean[] target = new boolean[clusters];
+        DoubleKeyHeap heap = new DoubleKeyHeap();
+
+        for (int tower : towersOf(query, start)) {
+            int c = clusterOf[tower];
+            dist[c] = 0;
+            parent[c] = -1;
+            heap.push(c, 0);
+        }
+        for (int tower : towersOf(query, end)) {
+            target[clusterOf[tower]] = true;
+        }
+
+        int reached = -1;
+        while (!heap.isEmpty()) {
+            double key = heap.peekKey();
+            int c = heap.poll();
+            if (key > dist[c]) continue;
+            if (target[c]) {
+                reached = c;
+                break;
+            }
+            for (int p = portalStart[c]; p < portalStart[c + 1]; p++) {
+                int other = portalTarget[p];
+                double next = key + portalLength[p];
+                if (next < dist[other]) {
+                    dist[other] = next;
+                    parent[other] = c;
+                    heap.push(other, next);
+                }
+            }
+        }
+        if (reached < 0) {
+            return null;
+        }
+
+        // The route, then margin rings of neighbouring clusters around it
+        boolean[] inCorridor = new boolean[clusters];
+        int[] ring = new int[clusters];
+        int ringSize = 0;
+        for (int c = reached; c >= 0; c = parent[c]) {
+            inCorridor[c] = true;
+            ring[ringSize++] = c;
+        }
+        int ringStart = 0;
+        for (int step = 0; step < margin; step++) {
+            int ringEnd = ringSize;
+            for (int i = ringStart; i < ringEnd; i++) {
+                int c = ring[i];
+                for (int p = portalStart[c]; p < portalStart[c + 1]; p++) {
+                    int other = portalTarget[p];
+                    if (inCorridor[other]) continue;
+                    inCorridor[other] = true;
+                    ring[ringSize++] = other;
+                }
+            }
+            ringStart = ringEnd;
+        }
+
+        BitSet allowed = new BitSet(query.nodeCount());
+        for (int i = 0; i < ringSize; i++) {
+            int c = ring[i];
+            for (int t = towerStart[c]; t < towerStart[c + 1]; t++) {
+                allowed.set(clusterTowers[t]);
+            }
+        }
+        allowed.set(start);
+        allowed.set(end);
+        return allowed;
+    }
+
+    // The towers a node enters the tower graph through: itself, or a virtual node's linked towers
+    private static int[] towersOf(QueryGraph query, int node) {
+        return query.isVirtual(node) ? query.realAttachments(node) : new int[] {node};
+    }
+}
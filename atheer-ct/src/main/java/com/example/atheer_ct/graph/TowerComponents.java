@@ -0,0 +1,85 @@
+package com.example.atheer_ct.graph;
+
+import java.util.Arrays;
+
+/**
+ * Connected-component label of every tower in the link graph. Two points can be joined by a
+ * chain of towers exactly when some tower in range of one shares a component with some tower
+ * in range of the other, which answers reachability without running a search.
+ */
+public final class TowerComponents {
+
+    private final int[] label;
+    private final int count;
+
+    private TowerComponents(int[] label, int count) {
+        this.label = label;
+        this.count = count;
+    }
+
+    public static TowerComponents build(TowerGraph graph) {
+        int n = graph.nodeCount();
+        int[] label = new int[n];
+        Arrays.fill(label, -1);
+        int[] queue = new int[n];
+        int count = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (label[root] >= 0) continue;
+            int head = 0;
+            int tail = 0;
+            label[root] = count;
+            queue[tail++] = root;
+            while (head < tail) {
+                int current = queue[head++];
+                for (int e = graph.start(current); e < graph.end(current); e++) {
+                    int neighbor = graph.target(e);
+                    if (label[neighbor] < 0) {
+                        label[neighbor] = count;
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+            count++;
+        }
+        return new TowerComponents(label, count);
+    }
+
+    public int componentOf(int tower) {
+        return label[tower];
+    }
+
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Whether some tower of the first list is in the same component as some tower of the second.
+     */
+    public boolean anyConnected(int[] towersA, int[] towersB) {
+        if (towersA.length == 0 || towersB.length == 0) return false;
+        int[] labelsA = new int[towersA.length];
+        for (int i = 0; i < towersA.length; i++) labelsA[i] = label[towersA[i]];
+        Arrays.sort(labelsA);
+        for (int tower : towersB) {
+            if (Arrays.binarySearch(labelsA, label[tower]) >= 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Whether a path exists between two nodes of the query graph. Virtual nodes count through
+     * the real towers they link to, or through a direct link to each other.
+     */
+    public boolean connected(QueryGraph query, int a, int b) {
+        if (a == b) return true;
+        QueryGraph.Cursor cursor = query.cursor();
+        if (query.isVirtual(a)) {
+            cursor.reset(a);
+            while (cursor.next()) {
+                if (cursor.target() == b) return true;
+            }
+        }
+        return anyConnected(query.realAttachments(a), query.realAttachments(b));
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.atheer_ct.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Compressed-sparse-row adjacency of every tower pair that can link directly
+ * (distance <= MAX_TOWER_DISTANCE). Node ids are the indices of the snapshot's tower list.
+ * The edges of node u are [start(u), end(u)); each undirected link is stored in both directions
+ * and every neighbor list is sorted by node id. Each edge also keeps its initial bearing from
+ * u, so searches and smoothing price zigzags with a lookup instead of trigonometry.
+ */
+public final class TowerGraph {
+
+    public static final double MAX_TOWER_DISTANCE = 10.1; // Strict 10km constraint
+
+    private final int[] offsets;   // size nodeCount + 1
+    private final int[] neighbors; // size edgeCount
+    private final float[] lengths; // km, parallel to neighbors
+    private final float[] bearings; // degrees clockwise from north [0, 360), parallel to neighbors
+
+    private TowerGraph(int[] offsets, int[] neighbors, float[] lengths, float[] bearings) {
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+        this.lengths = lengths;
+        this.bearings = bearings;
+    }
+
+    /**
+     * Builds the graph from the spatial index. Cells are at least MAX_TOWER_DISTANCE wide, so a
+     * tower can only link to towers in its own cell or one of the 8 surrounding cells; each cell is
+     * paired with itself and its 4 "forward" neighbors so every pair is measured exactly once.
+     * Rows of cells are measured in parallel on the pool.
+     */
+    public static TowerGraph build(int n, TowerSpatialIndex index, ForkJoinPool pool) {
+        EdgeList edges = pool.invoke(new RowTask(index, 0, index.rows()));
+        return fromEdges(n, edges);
+    }
+
+    /**
+     * Collects the links of the cell rows [from, to), splitting the range across the pool.
+     * Each task keeps its own edge list; they are joined in row order.
+     */
+    private static final class RowTask extends RecursiveTask<EdgeList> {
+        private final TowerSpatialIndex index;
+        private final int from;
+        private final int to;
+
+        RowTask(TowerSpatialIndex index, int from, int to) {
+            this.index = index;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected EdgeList compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                RowTask first = new RowTask(index, from, mid);
+                first.fork();
+                EdgeList second = new RowTask(index, mid, to).compute();
+                EdgeList edges = first.join();
+                edges.addAll(second);
+                return edges;
+            }
+
+            EdgeList edges = new EdgeList();
+            int rows = index.rows();
+            int cols = index.cols();
+            for (int r = from; r < to; r++) {
+                for (int c = 0; c < cols; c++) {
+                    int cell = r * cols + c;
+                    linkCells(index, cell, cell, edges);
+                    if (c + 1 < cols) linkCells(index, cell, cell + 1, edges);
+                    if (r + 1 < rows) {
+                        if (c > 0) linkCells(index, cell, cell + cols - 1, edges);
+                        linkCells(index, cell, cell + cols, edges);
+                        if (c + 1 < cols) linkCells(index, cell, cell + cols + 1, edges);
+                    }
+                }
+            }
+            return edges;
+        }
+    }
+
+    private static void linkCells(TowerSpatialIndex index, int cellA, int cellB, EdgeList edges) {
+        int endA = index.cellStart(cellA + 1);
+        int endB = index.cellStart(cellB + 1);
+        for (int i = index.cellStart(cellA); i < endA; i++) {
+            double latA = index.itemLat(i);
+            double lonA = index.itemLon(i);
+            // Within one cell only pair each tower with the ones after it; the dot product
+            // decides the link and Haversine is only paid for the length and bearings of real links
+            for (int j = cellA == cellB ? i + 1 : index.cellStart(cellB); j < endB; j++) {
+                if (index.itemDot(i, j) >= GeoKernel.LINK_COS) {
+                    double latB = index.itemLat(j);
+                    double lonB = index.itemLon(j);
+                    edges.add(index.item(i), index.item(j), (float) GeoMath.distanceKm(latA, lonA, latB, lonB),
+                            (float) GeoMath.bearingDeg(latA, lonA, latB, lonB),
+                            (float) GeoMath.bearingDeg(latB, lonB, latA, lonA));
+                }
+            }
+        }
+    }
+
+    /**
+     * Lays out undirected edges as CSR, storing each edge in both directions.
+     */
+    static TowerGraph fromEdges(int n, EdgeList edges) {
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < edges.size; i++) {
+            offsets[edges.from[i] + 1]++;
+            offsets[edges.to[i] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        int[] neighbors = new int[offsets[n]];
+        float[] lengths = new float[offsets[n]];
+        float[] bearings = new float[offsets[n]];
+        int[] fill = Arrays.copyOf(offsets, n);
+        for (int i = 0; i < edges.size; i++) {
+            int a = edges.from[i];
+            int b = edges.to[i];
+            neighbors[fill[a]] = b;
+            lengths[fill[a]] = edges.length[i];
+            bearings[fill[a]++] = edges.bearing[i];
+            neighbors[fill[b]] = a;
+            lengths[fill[b]] = edges.length[i];
+            bearings[fill[b]++] = edges.reverseBearing[i];
+        }
+
+        for (int u = 0; u < n; u++) {
+            sortRange(neighbors, lengths, bearings, offsets[u], offsets[u + 1]);
+        }
+        return new TowerGraph(offsets, neighbors, lengths, bearings);
+    }
+
+    // Insertion sort by neighbor id; neighbor lists are short
+    private static void sortRange(int[] neighbors, float[] lengths, float[] bearings, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            int v = neighbors[i];
+            float len = lengths[i];
+            float bearing = bearings[i];
+            int j = i - 1;
+            while (j >= from && neighbors[j] > v) {
+                neighbors[j + 1] = neighbors[j];
+                lengths[j + 1] = lengths[j];
+                bearings[j + 1] = bearings[j];
+                j--;
+            }
+            neighbors[j + 1] = v;
+            lengths[j + 1] = len;
+            bearings[j + 1] = bearing;
+        }
+    }
+
+    public int nodeCount() {
+        return offsets.length - 1;
+    }
+
+    public int edgeCount() {
+        return neighbors.length;
+    }
+
+    public int start(int node) {
+        return offsets[node];
+    }
+
+    public int end(int node) {
+        return offsets[node + 1];
+    }
+
+    public int degree(int node) {
+        return offsets[node + 1] - offsets[node];
+    }
+
+    public int target(int edge) {
+        return neighbors[edge];
+    }
+
+    public float length(int edge) {
+        return lengths[edge];
+    }
+
+    public float bearing(int edge) {
+        return bearings[edge];
+    }
+
+    /**
+     * The edge from u to v, or -1 when the two are not linked.
+     */
+    public int edge(int u, int v) {
+        int edge = Arrays.binarySearch(neighbors, offsets[u], offsets[u + 1], v);
+        return edge >= 0 ? edge : -1;
+    }
+
+    /**
+     * Growable list of undirected edges used while building the CSR arrays. Bearing is from
+     * {@code from} to {@code to}, reverseBearing the other way.
+     */
+    static final class EdgeList {
+        int[] from = new int[1024];
+        int[] to = new int[1024];
+        float[] length = new float[1024];
+        float[] bearing = new float[1024];
+        float[] reverseBearing = new float[1024];
+        int size;
+
+        void add(int a, int b, float len, float bearingAB, float bearingBA) {
+            if (size == from.length) {
+                grow(size * 2);
+            }
+            from[size] = a;
+            to[size] = b;
+            length[size] = len;
+            bearing[size] = bearingAB;
+            reverseBearing[size++] = bearingBA;
+        }
+
+        void addAll(EdgeList other) {
+            if (size + other.size > from.length) {
+                grow(Math.max(from.length * 2, size + other.size));
+            }
+            System.arraycopy(other.from, 0, from, size, other.size);
+            System.arraycopy(other.to, 0, to, size, other.size);
+            System.arraycopy(other.length, 0, length, size, other.size);
+            System.arraycopy(other.bearing, 0, bearing, size, other.size);
+            System.arraycopy(other.reverseBearing, 0, reverseBearing, size, other.size);
+            size += other.size;
+        }
+
+        private void grow(int capacity) {
+            from = Arrays.copyOf(from, capacity);
+            to = Arrays.copyOf(to, capacity);
+            length = Arrays.copyOf(length, capacity);
+            bearing = Arrays.copyOf(bearing, capacity);
+            reverseBearing = Arrays.copyOf(reverseBearing, capacity);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.atheer_ct.graph;
+
+import java.util.Arrays;
+
+/**
+ * Static, balanced 3-d tree over the towers' unit vectors on the sphere.
+ * Straight-line (chord) distance between unit vectors grows monotonically with
+ * great-circle distance, so nearest-neighbour and radius answers are exact.
+ * The tree is implicit: the range [lo, hi) splits at its middle element.
+ */
+public final class TowerKdTree {
+
+    private final int[] ids;      // tower index per slot
+    private final double[] x;     // unit-vector coordinates per slot
+    private final double[] y;
+    private final double[] z;
+    private final byte[] axis;    // split axis of the subtree whose middle is this slot
+
+    private TowerKdTree(int[] ids, double[] x, double[] y, double[] z, byte[] axis) {
+        this.ids = ids;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.axis = axis;
+    }
+
+    public static TowerKdTree build(GeoKernel kernel) {
+        int n = kernel.size();
+        int[] ids = new int[n];
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] z = new double[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i;
+            x[i] = kernel.x(i);
+            y[i] = kernel.y(i);
+            z[i] = kernel.z(i);
+        }
+        TowerKdTree tree = new TowerKdTree(ids, x, y, z, new byte[n]);
+        tree.buildRange(0, n);
+        return tree;
+    }
+
+    private void buildRange(int lo, int hi) {
+        if (hi - lo <= 1) return;
+
+        // Split along the axis with the widest spread
+        double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (int i = lo; i < hi; i++) {
+            for (int a = 0; a < 3; a++) {
+                double v = coord(a, i);
+                if (v < min[a]) min[a] = v;
+                if (v > max[a]) max[a] = v;
+            }
+        }
+        int splitAxis = 0;
+        for (int a = 1; a < 3; a++) {
+            if (max[a] - min[a] > max[splitAxis] - min[splitAxis]) splitAxis = a;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, splitAxis);
+        axis[mid] = (byte) splitAxis;
+        buildRange(lo, mid);
+        buildRange(mid + 1, hi);
+    }
+
+    // Quickselect: afterwards slot k holds the k-th smallest coordinate along the axis
+    private void select(int lo, int hi, int k, int a) {
+        while (hi > lo) {
+            double pivot = coord(a, (lo + hi) >>> 1);
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (coord(a, i) < pivot) i++;
+                while (coord(a, j) > pivot) j--;
+                if (i <= j) swap(i++, j--);
+            }
+            if (k <= j) hi = j;
+            else if (k >= i) lo = i;
+            else return;
+        }
+    }
+
+    private double coord(int a, int slot) {
+        return a == 0 ? x[slot] : a == 1 ? y[slot] : z[slot];
+    }
+
+    private void swap(int i, int j) {
+        int id = ids[i]; ids[i] = ids[j]; ids[j] = id;
+        double t = x[i]; x[i] = x[j]; x[j] = t;
+        t = y[i]; y[i] = y[j]; y[j] = t;
+        t = z[i]; z[i] = z[j]; z[j] = t;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * The k towers closest to the point, nearest first.
+     */
+    public int[] nearest(double lat, double lon, int k) {
+        k = Math.min(k, ids.length);
+        if (k <= 0) return new int[0];
+
+        double[] q = GeoKernel.unitVector(lat, lon);
+        Nearest best = new Nearest(k);
+        nearest(0, ids.length, q[0], q[1], q[2], best);
+        return best.sortedIds();
+    }
+
+    /**
+     * Indices of all towers within radiusKm of the point (great-circle), in ascending order.
+     */
+    public int[] withinRadius(double lat, double lon, double radiusKm) {
+        double[] q = GeoKernel.unitVector(lat, lon);
+        double chord = 2 * Math.sin(Math.min(Math.PI, radiusKm / GeoMath.EARTH_RADIUS_KM) / 2);
+        TowerSpatialIndex.IntBuffer out = new TowerSpatialIndex.IntBuffer();
+        within(0, ids.length, q[0], q[1], q[2], chord * chord, out);
+        int[] found = out.toArray();
+        Arrays.sort(found);
+        return found;
+    }
+
+    private void nearest(int lo, int hi, double qx, double qy, double qz, Nearest best) {
+        if (lo >= hi) return;
+        int mid = (lo + hi) >>> 1;
+        best.offer(ids[mid], squaredChord(mid, qx, qy, qz));
+        if (hi - lo == 1) return;
+
+        double diff = axisDiff(mid, qx, qy, qz);
+        // Search the side containing the query first, then the other side only if it can still help;
+        // a tie with the worst kept tower can still help through a lower id
+        if (diff < 0) {
+            nearest(lo, mid, qx, qy, qz, best);
+            if (diff * diff <= best.worst()) nearest(mid + 1, hi, qx, qy, qz, best);
+        } else {
+            nearest(mid + 1, hi, qx, qy, qz, best);
+            if (diff * diff <= best.worst()) nearest(lo, mid, qx, qy, qz, best);
+        }
+    }
+
+    private void within(int lo, int hi, double qx, double qy, double qz, double maxSquared,
+                        TowerSpatialIndex.IntBuffer out) {
+        if (lo >= hi) return;
+        int mid = (lo + hi) >>> 1;
+        if (squaredChord(mid, qx, qy, qz) <= maxSquared) out.add(ids[mid]);
+        if (hi - lo == 1) return;
+
+        double diff = axisDiff(mid, qx, qy, qz);
+        if (diff < 0 || diff * diff <= maxSquared) within(lo, mid, qx, qy, qz, maxSquared, out);
+        if (diff >= 0 || diff * diff <= maxSquared) within(mid + 1, hi, qx, qy, qz, maxSquared, out);
+    }
+
+    // Signed distance from the query to the split plane of this slot
+    private double axisDiff(int slot, double qx, double qy, double qz) {
+        switch (axis[slot]) {
+            case 0: return qx - x[slot];
+            case 1: return qy - y[slot];
+            default: return qz - z[slot];
+        }
+    }
+
+    private double squaredChord(int slot, double qx, double qy, double qz) {
+        double dx = x[slot] - qx;
+        double dy = y[slot] - qy;
+        double dz = z[slot] - qz;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Bounded max-heap of the k best candidates seen so far, ordered by distance and then id so
+     * that ties at the k-th place keep the lowest ids whatever order the tree is visited in.
+     */
+    private static final class Nearest {
+        private final int[] ids;
+        private final double[] dist;
+        private int size;
+
+        Nearest(int k) {
+            ids = new int[k];
+            dist = new double[k];
+        }
+
+        double worst() {
+            return size < ids.length ? Double.MAX_VALUE : dist[0];
+        }
+
+        void offer(int id, double d) {
+            if (size < ids.length) {
+                int i = size++;
+                while (i > 0 && before((i - 1) / 2, id, d)) {
+                    ids[i] = ids[(i - 1) / 2];
+                    dist[i] = dist[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                ids[i] = id;
+                dist[i] = d;
+            } else if (!before(0, id, d)) {
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) break;
+                    if (child + 1 < size && before(child, ids[child + 1], dist[child + 1])) child++;
+                    if (before(child, id, d)) break;
+                    ids[i] = ids[child];
+                    dist[i] = dist[child];
+                    i = child;
+                }
+                ids[i] = id;
+                dist[i] = d;
+            }
+        }
+
+        // Whether the entry in this slot comes before (id, d)
+        private boolean before(int slot, int id, double d) {
+            return dist[slot] != d ? dist[slot] < d : ids[slot] < id;
+        }
+
+        int[] sortedIds() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> dist[a] != dist[b] ? Double.compare(dist[a], dist[b]) : Integer.compare(ids[a], ids[b]));
+            int[] result = new int[size];
+            for (int i = 0; i < size; i++) result[i] = ids[order[i]];
+            return result;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.atheer_ct.graph;
+
+import com.example.atheer_ct.dto.TowerDto;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Immutable, versioned view of every tower in the database together with the
+ * structures derived from it (spatial index, KD-tree, link graph, components, hop matrix,
+ * routing landmarks, coarse routing cells and contraction hierarchies).
+ * A snapshot is loaded once and shared by all path services; when the towers
+ * change a new snapshot is built and swapped in as a whole.
+ */
+public final class TowerSnapshot {
+
+    private final long version;
+    private final Instant loadedAt;
+    private final List<TowerDto> towers;
+    private final TowerStore store;
+    private final GeoKernel geoKernel;
+    private final TowerSpatialIndex spatialIndex;
+    private final TowerKdTree kdTree;
+    private final TowerGraph graph;
+    private final TowerComponents components;
+    private final HopMatrix hopMatrix;
+    private final Landmarks landmarks;
+    private final TowerCells cells;
+    // Contracted in the background; queries fall back to plain searches until they are done
+    private final CompletableFuture<ContractionHierarchy> distanceHierarchy;
+    private final CompletableFuture<ContractionHierarchy> hopHierarchy;
+    private volatile boolean retired;
+
+    /**
+     * @param pool              workers for the parallel parts of the build
+     * @param hopMatrixMaxBytes memory the all-pairs hop matrix may use; it is skipped above this
+     * @param vectorized        run range scans on the Vector API when the JVM has the incubator module
+     */
+    public TowerSnapshot(long version, List<TowerDto> towers, ForkJoinPool pool, long hopMatrixMaxBytes,
+                         boolean vectorized) {
+        this.version = version;
+        this.loadedAt = Instant.now();
+        this.towers = Collections.unmodifiableList(towers);
+        this.store = new TowerStore(this.towers);
+        this.geoKernel = new GeoKernel(store, vectorized);
+        this.spatialIndex = TowerSpatialIndex.build(this.towers, geoKernel, TowerGraph.MAX_TOWER_DISTANCE);
+        this.kdTree = TowerKdTree.build(geoKernel);
+        this.graph = TowerGraph.build(this.towers.size(), spatialIndex, pool);
+        this.components = TowerComponents.build(graph);
+        this.hopMatrix = HopMatrix.build(graph, pool, hopMatrixMaxBytes);
+        this.landmarks = Landmarks.build(graph, components, Landmarks.DEFAULT_COUNT);
+        this.cells = TowerCells.build(store, graph);
+        TowerGraph linkGraph = graph;
+        this.distanceHierarchy = CompletableFuture.supplyAsync(
+                () -> ContractionHierarchy.build(linkGraph, ContractionHierarchy.Metric.DISTANCE, () -> retired),
+                pool);
+        this.hopHierarchy = CompletableFuture.supplyAsync(
+                () -> ContractionHierarchy.build(linkGraph, ContractionHierarchy.Metric.HOPS, () -> retired), pool);
+    }
+
+    /**
+     * Called once a newer snapshot has replaced this one. Hierarchy builds still pending are
+     * cancelled and stop at their next contraction step instead of holding pool workers; queries
+     * already running on this snapshot finish on the plain searches.
+     */
+    public void retire() {
+        retired = true;
+        distanceHierarchy.cancel(false);
+        hopHierarchy.cancel(false);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Instant getLoadedAt() {
+        return loadedAt;
+    }
+
+    public List<TowerDto> getTowers() {
+        return towers;
+    }
+
+    /**
+     * Coordinates of all towers as primitive arrays, indexed like {@link #getTowers()}.
+     */
+    public TowerStore getStore() {
+        return store;
+    }
+
+    /**
+     * Unit vectors of all towers for trig-free range checks, indexed like {@link #getTowers()}.
+     */
+    public GeoKernel getGeoKernel() {
+        return geoKernel;
+    }
+
+    /**
+     * Grid of all towers with cells MAX_TOWER_DISTANCE wide, for radius queries around any point.
+     */
+    public TowerSpatialIndex getSpatialIndex() {
+        return spatialIndex;
+    }
+
+    /**
+     * KD-tree of all towers for k-nearest and arbitrary-radius queries.
+     */
+    public TowerKdTree getKdTree() {
+        return kdTree;
+    }
+
+    /**
+     * Links between every pair of towers within MAX_TOWER_DISTANCE, indexed like {@link #getTowers()}.
+     */
+    public TowerGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Connected-component label of every tower, for instant reachability checks.
+     */
+    public TowerComponents getComponents() {
+        return components;
+    }
+
+    /**
+     * Fewest-hop table between all towers, or null when the dataset exceeds the memory budget;
+     * callers then fall back to searching the graph.
+     */
+    public HopMatrix getHopMatrix() {
+        return hopMatrix;
+    }
+
+    /**
+     * Landmark distances for the ALT lower bound used by distance-weighted A*.
+     */
+    public Landmarks getLandmarks() {
+        return landmarks;
+    }
+
+    /**
+     * Clusters of towers per geographic cell and the portal links between them, for routing
+     * long queries across cells before searching towers.
+     */
+    public TowerCells getCells() {
+        return cells;
+    }
+
+    /**
+     * Contraction hierarchy for the given metric, or null while it is still being built (or its
+     * build failed); callers then search the graph directly.
+     */
+    public ContractionHierarchy getHierarchy(ContractionHierarchy.Metric metric) {
+        CompletableFuture<ContractionHierarchy> future =
+                metric == ContractionHierarchy.Metric.HOPS ? hopHierarchy : distanceHierarchy;
+        return future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+    }
+
+    /**
+     * Completes when both contraction hierarchies are built.
+     */
+    public CompletableFuture<Void> hierarchiesReady() {
+        return CompletableFuture.allOf(distanceHierarchy, hopHierarchy);
+    }
+
+    public int size() {
+        return towers.size();
+    }
+
+    public boolean isEmpty() {
+        return towers.isEmpty();
+    }
+}
@@ -0,0 +1,310 @@
+package com.example.atheer_ct.graph;
+
+import com.example.atheer_ct.dto.TowerDto;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Uniform lat/lon grid over the snapshot's towers. Cells are at least MAX_TOWER_DISTANCE wide
+ * everywhere in the dataset, so a radius query for a link-range disc only touches the 3x3 cells
+ * around the query point. Query points do not have to be towers, which is how the virtual
+ * POP/START/END/DEST towers are matched without rebuilding the index per request.
+ */
+public final class TowerSpatialIndex {
+
+    // Upper bound on the cell array so a few far-away outliers cannot blow up memory
+    private static final int MAX_CELLS = 4_000_000;
+
+    private final double minLat;
+    private final double minLon;
+    private final double cellLatDeg;
+    private final double cellLonDeg;
+    private final int rows;
+    private final int cols;
+
+    private final int[] cellStart;  // size rows * cols + 1
+    private final int[] items;      // tower indices grouped by cell, ascending inside each cell
+    private final double[] itemLat; // parallel to items
+    private final double[] itemLon;
+    private final double[] itemX;   // unit vectors, parallel to items
+    private final double[] itemY;
+    private final double[] itemZ;
+    private final RangeFilter rangeFilter;
+
+    private TowerSpatialIndex(double minLat, double minLon, double cellLatDeg, double cellLonDeg,
+                              int rows, int cols, int[] cellStart, int[] items, double[] itemLat, double[] itemLon,
+                              double[] itemX, double[] itemY, double[] itemZ, RangeFilter rangeFilter) {
+        this.minLat = minLat;
+        this.minLon = minLon;
+        this.cellLatDeg = cellLatDeg;
+        this.cellLonDeg = cellLonDeg;
+        this.rows = rows;
+        this.cols = cols;
+        this.cellStart = cellStart;
+        this.items = items;
+        this.itemLat = itemLat;
+        this.itemLon = itemLon;
+        this.itemX = itemX;
+        this.itemY = itemY;
+        this.itemZ = itemZ;
+        this.rangeFilter = rangeFilter;
+    }
+
+    public static TowerSpatialIndex build(List<TowerDto> towers, GeoKernel kernel, double cellSizeKm) {
+        int n = towers.size();
+        double minLat = 0, maxLat = 0, minLon = 0, maxLon = 0;
+        for (int i = 0; i < n; i++) {
+            TowerDto t = towers.get(i);
+            if (i == 0 || t.getLatitude() < minLat) minLat = t.getLatitude();
+            if (i == 0 || t.getLatitude() > maxLat) maxLat = t.getLatitude();
+            if (i == 0 || t.getLongitude() < minLon) minLon = t.getLongitude();
+            if (i == 0 || t.getLongitude() > maxLon) maxLon = t.getLongitude();
+        }
+
+        // Longitude degrees shrink towards the poles; size cells for the worst latitude a
+        // query disc around any tower can reach, so such a disc never spans more than 3 columns
+        double maxAbsLat = Math.max(Math.abs(minLat), Math.abs(maxLat));
+        double cellLatDeg = cellSizeKm / GeoMath.KM_PER_DEGREE;
+        double cellLonDeg = longitudeReachDeg(cellSizeKm, maxAbsLat + cellLatDeg);
+
+        int rows = (int) ((maxLat - minLat) / cellLatDeg) + 1;
+        int cols = (int) ((maxLon - minLon) / cellLonDeg) + 1;
+        while ((long) rows * cols > MAX_CELLS) {
+            cellLatDeg *= 2;
+            cellLonDeg *= 2;
+            rows = (int) ((maxLat - minLat) / cellLatDeg) + 1;
+            cols = (int) ((maxLon - minLon) / cellLonDeg) + 1;
+        }
+
+        int[] cellOf = new int[n];
+        int[] cellStart = new int[rows * cols + 1];
+        for (int i = 0; i < n; i++) {
+            TowerDto t = towers.get(i);
+            int row = clamp((int) ((t.getLatitude() - minLat) / cellLatDeg), rows);
+            int col = clamp((int) ((t.getLongitude() - minLon) / cellLonDeg), cols);
+            cellOf[i] = row * cols + col;
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < rows * cols; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+
+        int[] items = new int[n];
+        double[] itemLat = new double[n];
+        double[] itemLon = new double[n];
+        double[] itemX = new double[n];
+        double[] itemY = new double[n];
+        double[] itemZ = new double[n];
+        int[] fill = Arrays.copyOf(cellStart, rows * cols);
+        for (int i = 0; i < n; i++) {
+            int slot = fill[cellOf[i]]++;
+            items[slot] = i;
+            itemLat[slot] = towers.get(i).getLatitude();
+            itemLon[slot] = towers.get(i).getLongitude();
+            itemX[slot] = kernel.x(i);
+            itemY[slot] = kernel.y(i);
+            itemZ[slot] = kernel.z(i);
+        }
+
+        return new TowerSpatialIndex(minLat, minLon, cellLatDeg, cellLonDeg, rows, cols,
+                cellStart, items, itemLat, itemLon, itemX, itemY, itemZ, kernel.rangeFilter());
+    }
+
+    // Half-width in longitude degrees of a disc of the given radius centred at the given latitude
+    private static double longitudeReachDeg(double radiusKm, double absLat) {
+        // Past a quarter of the circumference, or over a pole, the disc spans every longitude
+        double angle = radiusKm / GeoMath.EARTH_RADIUS_KM;
+        if (angle >= Math.PI / 2 || absLat >= 90.0) return 180.0;
+        double phi = Math.toRadians(Math.min(89.0, absLat));
+        double ratio = Math.sin(angle) / Math.cos(phi);
+        return ratio >= 1 ? 180.0 : Math.toDegrees(Math.asin(ratio));
+    }
+
+    // ceil that ignores floating-point noise just above a whole number
+    private static int cellsToCover(double span, double cellSize) {
+        return (int) Math.ceil(span / cellSize - 1e-9);
+    }
+
+    private static int clamp(int value, int size) {
+        return Math.max(0, Math.min(size - 1, value));
+    }
+
+    /**
+     * Indices of all towers within radiusKm of the point, in ascending (snapshot list) order.
+     */
+    public int[] withinRadius(double lat, double lon, double radiusKm) {
+        IntBuffer result = new IntBuffer();
+        collect(lat, lon, radiusKm, result, false);
+        int[] found = result.toArray();
+        Arrays.sort(found);
+        return found;
+    }
+
+    /**
+     * Whether at least one tower lies within radiusKm of the point.
+     */
+    public boolean anyWithin(double lat, double lon, double radiusKm) {
+        IntBuffer result = new IntBuffer();
+        collect(lat, lon, radiusKm, result, true);
+        return result.size > 0;
+    }
+
+    /**
+     * Indices of all towers within radiusKm of both points, in ascending (snapshot list) order.
+     */
+    public int[] withinLens(double lat1, double lon1, double lat2, double lon2, double radiusKm) {
+        IntBuffer slots = new IntBuffer();
+        collectSlots(lat1, lon1, radiusKm, slots, false);
+
+        // The disc around the first point covers the lens; keep the slots also near the second
+        double[] q = GeoKernel.unitVector(lat2, lon2);
+        double minDot = GeoKernel.cosThreshold(radiusKm);
+        IntBuffer result = new IntBuffer();
+        for (int i = 0; i < slots.size; i++) {
+            int slot = slots.data[i];
+            if (itemX[slot] * q[0] + itemY[slot] * q[1] + itemZ[slot] * q[2] >= minDot) result.add(items[slot]);
+        }
+        int[] found = result.toArray();
+        Arrays.sort(found);
+        return found;
+    }
+
+    /**
+     * Indices of all towers whose distances to the two foci add up to at most focalSumKm, in
+     * ascending (snapshot list) order.
+     */
+    public int[] withinEllipse(double lat1, double lon1, double lat2, double lon2, double focalSumKm) {
+        // Every such tower p lies within (d(m, f1) + d(m, f2) + focalSum) / 2 of any point m,
+        // by the triangle inequality through each focus, so one disc around the midpoint covers it
+        double midLat = (lat1 + lat2) / 2;
+        double midLon = (lon1 + lon2) / 2;
+        double radiusKm = (GeoMath.distanceKm(midLat, midLon, lat1, lon1)
+                + GeoMath.distanceKm(midLat, midLon, lat2, lon2) + focalSumKm) / 2;
+
+        IntBuffer slots = new IntBuffer();
+        collectSlots(midLat, midLon, radiusKm, slots, false);
+
+        // With a1, a2 the angles to the foci and s the focal sum as an angle, a1 + a2 <= s is
+        // decided by the cosine and sine of a1 + a2, which expand to dot products without any
+        // trigonometry. The sine tells whether a1 + a2 is past PI, where the cosine turns back up
+        double maxAngle = focalSumKm / GeoMath.EARTH_RADIUS_KM;
+        double minCos = Math.cos(Math.min(2 * Math.PI, maxAngle));
+        boolean pastHalf = maxAngle >= Math.PI;
+        double[] f1 = GeoKernel.unitVector(lat1, lon1);
+        double[] f2 = GeoKernel.unitVector(lat2, lon2);
+        IntBuffer result = new IntBuffer();
+        for (int i = 0; i < slots.size; i++) {
+            int slot = slots.data[i];
+            double cos1 = itemX[slot] * f1[0] + itemY[slot] * f1[1] + itemZ[slot] * f1[2];
+            double cos2 = itemX[slot] * f2[0] + itemY[slot] * f2[1] + itemZ[slot] * f2[2];
+            double sin1 = Math.sqrt(Math.max(0, 1 - cos1 * cos1));
+            double sin2 = Math.sqrt(Math.max(0, 1 - cos2 * cos2));
+            double cosSum = cos1 * cos2 - sin1 * sin2;
+            boolean withinHalf = sin1 * cos2 + cos1 * sin2 >= 0; // a1 + a2 <= PI
+            boolean within = pastHalf ? withinHalf || cosSum <= minCos : withinHalf && cosSum >= minCos;
+            if (within) result.add(items[slot]);
+        }
+        int[] found = result.toArray();
+        Arrays.sort(found);
+        return found;
+    }
+
+    private void collect(double lat, double lon, double radiusKm, IntBuffer out, boolean firstOnly) {
+        int first = out.size;
+        collectSlots(lat, lon, radiusKm, out, firstOnly);
+        // Slots to tower indices
+        for (int i = first; i < out.size; i++) {
+            out.data[i] = items[out.data[i]];
+        }
+    }
+
+    // Like collect, but leaves the matching slots in out rather than their tower indices
+    private void collectSlots(double lat, double lon, double radiusKm, IntBuffer out, boolean firstOnly) {
+        if (items.length == 0) return;
+
+        double latReach = radiusKm / GeoMath.KM_PER_DEGREE;
+        int reachRows = cellsToCover(latReach, cellLatDeg);
+        double lonReach = longitudeReachDeg(radiusKm, Math.abs(lat) + latReach);
+        int reachCols = cellsToCover(lonReach, cellLonDeg);
+
+        int row = (int) Math.floor((lat - minLat) / cellLatDeg);
+        int col = (int) Math.floor((lon - minLon) / cellLonDeg);
+        int fromRow = Math.max(0, row - reachRows);
+        int toRow = Math.min(rows - 1, row + reachRows);
+        int fromCol = Math.max(0, col - reachCols);
+        int toCol = Math.min(cols - 1, col + reachCols);
+        if (lonReach >= 180.0) {
+            // Every longitude, including the ones across the antimeridian from lon
+            fromCol = 0;
+            toCol = cols - 1;
+        }
+
+        double[] q = GeoKernel.unitVector(lat, lon);
+        double minDot = GeoKernel.cosThreshold(radiusKm);
+
+        if (fromCol > toCol) return;
+
+        // The cells fromCol..toCol of one row are stored back to back, so each row is one slot range
+        for (int r = fromRow; r <= toRow; r++) {
+            int from = cellStart[r * cols + fromCol];
+            int to = cellStart[r * cols + toCol + 1];
+            if (firstOnly) {
+                for (int k = from; k < to; k++) {
+                    if (itemX[k] * q[0] + itemY[k] * q[1] + itemZ[k] * q[2] >= minDot) {
+                        out.add(k);
+                        return;
+                    }
+                }
+            } else {
+                rangeFilter.filter(itemX, itemY, itemZ, from, to, q, minDot, out);
+            }
+        }
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    int cols() {
+        return cols;
+    }
+
+    int cellStart(int cell) {
+        return cellStart[cell];
+    }
+
+    int item(int slot) {
+        return items[slot];
+    }
+
+    double itemLat(int slot) {
+        return itemLat[slot];
+    }
+
+    double itemLon(int slot) {
+        return itemLon[slot];
+    }
+
+    // Dot product of the unit vectors of two slots
+    double itemDot(int slotA, int slotB) {
+        return itemX[slotA] * itemX[slotB] + itemY[slotA] * itemY[slotB] + itemZ[slotA] * itemZ[slotB];
+    }
+
+    /**
+     * Minimal growable int list for query results.
+     */
+    static final class IntBuffer {
+        int[] data = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.atheer_ct.graph;
+
+import com.example.atheer_ct.dto.TowerDto;
+
+import java.util.List;
+
+/**
+ * Struct-of-arrays view of the snapshot's towers. Tower i keeps its snapshot list index,
+ * so searches can keep their per-node state in plain arrays and read coordinates
+ * without going through the DTOs.
+ */
+public final class TowerStore {
+
+    private final TowerDto[] towers;
+    private final double[] latitudes;
+    private final double[] longitudes;
+
+    public TowerStore(List<TowerDto> towers) {
+        int n = towers.size();
+        this.towers = towers.toArray(new TowerDto[0]);
+        this.latitudes = new double[n];
+        this.longitudes = new double[n];
+        for (int i = 0; i < n; i++) {
+            latitudes[i] = this.towers[i].getLatitude();
+            longitudes[i] = this.towers[i].getLongitude();
+        }
+    }
+
+    public int size() {
+        return towers.length;
+    }
+
+    public TowerDto tower(int index) {
+        return towers[index];
+    }
+
+    public double lat(int index) {
+        return latitudes[index];
+    }
+
+    public double lon(int index) {
+        return longitudes[index];
+    }
+}
@@ -1,26 +1,55 @@
 package com.example.atheer_ct.services;
 
 import com.example.atheer_ct.dto.TowerDto;
-import com.example.atheer_ct.entities.Tower;
-import com.example.atheer_ct.repo.TowerRepository;
+import com.example.atheer_ct.graph.AStarSearch;
+import com.example.atheer_ct.graph.HopCostSearch;
+import com.example.atheer_ct.graph.BidirectionalBfs;
+import com.example.atheer_ct.graph.ContractionHierarchy;
+import com.example.atheer_ct.graph.HopMatrix;
+import com.example.atheer_ct.graph.PathSmoother;
+import com.example.atheer_ct.graph.GeoMath;
+import com.example.atheer_ct.graph.QueryGraph;
+import com.example.atheer_ct.graph.TowerSnapshot;
+import com.example.atheer_ct.graph.TowerSpatialIndex;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 public class CombinedPathService {
 
-    private final TowerRepository towerRepository;
+    private final TowerService towerService;
     private final double MAX_TOWER_DISTANCE = 10.1; // Strict 10km constraint
-    private final double BEARING_DEVIATION_PENALTY = 1.5; // Penalty for zigzag paths
-    private final double DIRECT_PATH_WEIGHT = 0.8; // Lower than in PathService to prioritize tower count
-
-    public CombinedPathService(TowerRepository towerRepository) {
-        this.towerRepository = towerRepository;
+    private final double BEARING_DEVIATION_PENALTY = 0.1; // Cost per degree off the start-to-end bearing
+    private final double DIRECT_HEURISTIC_WEIGHT = 1.5; // Legacy A*: weight on the distance to the end
+    private final double DIRECT_MAX_DETOUR_KM = 3.0; // Legacy A*: skip towers this much farther from the end
+    private final int CELL_CORRIDOR_MARGIN = 1; // Neighbouring cell clusters searched around the cell route
+    private final int CORRIDOR_WIDENINGS = 2; // Times a failed ellipse corridor is widened before the full search
+
+    // Start/end pairs at least this far apart route across cells first; 0 disables
+    private final double cellRoutingMinKm;
+    // Ellipse corridor size as a multiple of the start-to-end distance; 0 disables
+    private final double corridorSlack;
+
+    public CombinedPathService(TowerService towerService,
+                               @Value("${atheer.routing.cell-routing-min-km:200}") double cellRoutingMinKm,
+                               @Value("${atheer.routing.corridor-slack:1.25}") double corridorSlack) {
+        this.towerService = towerService;
+        this.cellRoutingMinKm = cellRoutingMinKm;
+        this.corridorSlack = corridorSlack;
     }
 
     public Map<String, Object> findShortestPath(double startLat, double startLon, double endLat, double endLon) {
+        return findShortestPath(startLat, startLon, endLat, endLon, false);
+    }
+
+    /**
+     * @param legacy run the separate fewest-towers and most-direct searches and compare them,
+     *               instead of the single (tower count, distance) search
+     */
+    public Map<String, Object> findShortestPath(double startLat, double startLon, double endLat, double endLon,
+                                                boolean legacy) {
         Map<String, Object> result = new HashMap<>();
 
         // Create virtual towers for start and end points
@@ -39,7 +68,7 @@ public class CombinedPathService {
                 .build();
 
         // Calculate direct distance between start and end points
-        double directDistance = calculateDistance(startLat, startLon, endLat, endLon);
+        double directDistance = GeoMath.distanceKm(startLat, startLon, endLat, endLon);
         System.out.println("Direct distance: " + directDistance);
 
         // If direct distance is less than MAX_TOWER_DISTANCE, return only virtual towers
@@ -48,11 +77,11 @@ public class CombinedPathService {
             return result;
         }
 
-        // Get all towers from the database
-        List<Tower> dbTowers = towerRepository.findAll();
+        // Use the shared tower snapshot instead of reloading the database
+        TowerSnapshot snapshot = towerService.getSnapshot();
 
         // If no towers in database, return only virtual towers or error
-        if (dbTowers.isEmpty()) {
+        if (snapshot.isEmpty()) {
             // Check if we can make a direct connection
             if (directDistance <= MAX_TOWER_DISTANCE) {
                 result.put("path", Arrays.asList(startTower, endTower));
@@ -65,29 +94,39 @@ public class CombinedPathService {
             }
         }
 
-        // Convert database towers to DTOs
-        List<TowerDto> allTowers = dbTowers.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        List<TowerDto> allTowers = snapshot.getTowers();
 
-        // COMBINED APPROACH:
+        // Splice the virtual start/end towers into the precomputed tower graph
+        QueryGraph query = new QueryGraph(snapshot, Arrays.asList(startTower, endTower));
 
-        // 1. First find path with minimum tower count (using approach from OldPathService)
-        List<TowerDto> minTowerPath = findMinimumTowerCountPath(startTower, endTower, allTowers);
+        List<TowerDto> selectedPath;
 
-        // 2. Then find path with most direct route (using approach from PathService)
-        List<TowerDto> directPath = findDirectPath(startTower, endTower, allTowers);
+        if (!query.hasChain(query.virtualNode(0), query.virtualNode(1))) {
+            // No chain of towers joins the two ends, so every search would come back empty and
+            // fall back to interpolation; interpolate without searching
+            selectedPath = findPathByInterpolation(startTower, endTower, allTowers, snapshot.getSpatialIndex());
+        } else if (legacy) {
+            // COMBINED APPROACH:
 
-        // 3. Compare tower counts - if equal, use the direct path; otherwise use min tower path
-        List<TowerDto> selectedPath;
+            // 1. First find path with minimum tower count (using approach from OldPathService)
+            List<TowerDto> minTowerPath = findMinimumTowerCountPath(query, allTowers);
 
-        if (directPath.size() <= minTowerPath.size()) {
-            System.out.println("Selected direct path with " + directPath.size() + " towers");
-            selectedPath = directPath;
+            // 2. Then find path with most direct route (using approach from PathService)
+            List<TowerDto> directPath = findDirectPath(query, allTowers);
+
+            // 3. Compare tower counts - if equal, use the direct path; otherwise use min tower path
+            if (directPath.size() <= minTowerPath.size()) {
+                System.out.println("Selected direct path with " + directPath.size() + " towers");
+                selectedPath = directPath;
+            } else {
+                System.out.println("Selected minimum tower path with " + minTowerPath.size() +
+                        " towers instead of direct path with " + directPath.size() + " towers");
+                selectedPath = minTowerPath;
+            }
         } else {
-            System.out.println("Selected minimum tower path with " + minTowerPath.size() +
-                    " towers instead of direct path with " + directPath.size() + " towers");
-            selectedPath = minTowerPath;
+            // One pass that minimizes tower count first and then distance plus zigzag penalty,
+            // which is what comparing the two legacy searches selects
+            selectedPath = findFewestTowersDirectPath(query, allTowers);
         }
 
         // Validate the selected path
@@ -101,447 +140,174 @@ public class CombinedPathService {
     }
 
     /**
-     * Find path with minimum number of towers (from OldPathService approach)
+     * Find the most direct path among those with the fewest towers in a single search
      */
-    private List<TowerDto> findMinimumTowerCountPath(TowerDto start, TowerDto end, List<TowerDto> allTowers) {
-        // Create a map of all nodes for quick lookup
-        Map<String, TowerDto> towerMap = new HashMap<>();
-        towerMap.put(getTowerId(start), start);
-        towerMap.put(getTowerId(end), end);
-        allTowers.forEach(t -> towerMap.put(getTowerId(t), t));
-
-        // BFS for shortest path (fewest hops)
-        Queue<String> queue = new LinkedList<>();
-        Map<String, String> previous = new HashMap<>();
-        Set<String> visited = new HashSet<>();
-
-        String startId = getTowerId(start);
-        String endId = getTowerId(end);
-
-        queue.add(startId);
-        visited.add(startId);
-
-        boolean pathFound = false;
-
-        while (!queue.isEmpty() && !pathFound) {
-            String currentId = queue.poll();
-            TowerDto currentTower = towerMap.get(currentId);
-
-            if (currentId.equals(endId)) {
-                pathFound = true;
-                break;
-            }
-
-            // Find all possible next hops that are within range
-            List<String> neighbors = new ArrayList<>();
-
-            for (String towerId : towerMap.keySet()) {
-                if (towerId.equals(currentId)) continue;
-
-                TowerDto potentialNeighbor = towerMap.get(towerId);
-                double distance = calculateDistance(
-                        currentTower.getLatitude(), currentTower.getLongitude(),
-                        potentialNeighbor.getLatitude(), potentialNeighbor.getLongitude()
-                );
-
-                if (distance <= MAX_TOWER_DISTANCE) {
-                    neighbors.add(towerId);
+    private List<TowerDto> findFewestTowersDirectPath(QueryGraph query, List<TowerDto> allTowers) {
+        int startId = query.virtualNode(0);
+        int endId = query.virtualNode(1);
+        TowerDto start = query.tower(startId);
+        TowerDto end = query.tower(endId);
+
+        // Same zigzag penalty as the direct A* search, BEARING_DEVIATION_PENALTY per degree.
+        // Very long queries first route across the coarse cells and search only the towers of the
+        // cells along that route; other queries search an ellipse around the start and end that
+        // is widened each time it has no path. The whole graph is searched last.
+        int[] nodes = new int[0];
+        double directDistance = GeoMath.distanceKm(start.getLatitude(), start.getLongitude(),
+                end.getLatitude(), end.getLongitude());
+        if (cellRoutingMinKm > 0 && directDistance >= cellRoutingMinKm) {
+            // The cell route can miss the fewest-hop path, so its result is only kept when it
+            // matches the exact hop count, and the cells are not tried before that count is known
+            int fewestHops = fewestHops(query, startId, endId);
+            BitSet corridor = fewestHops < 0 ? null
+                    : query.getSnapshot().getCells().corridor(query, startId, endId, CELL_CORRIDOR_MARGIN);
+            if (corridor != null) {
+                nodes = HopCostSearch.findPath(query, startId, endId, BEARING_DEVIATION_PENALTY, corridor);
+                if (nodes.length - 1 > fewestHops) {
+                    nodes = new int[0];
                 }
             }
-
-            // Sort neighbors by their proximity to the end point (greedy approach)
-            neighbors.sort((a, b) -> {
-                TowerDto towerA = towerMap.get(a);
-                TowerDto towerB = towerMap.get(b);
-
-                double distA = calculateDistance(
-                        towerA.getLatitude(), towerA.getLongitude(),
-                        end.getLatitude(), end.getLongitude()
-                );
-
-                double distB = calculateDistance(
-                        towerB.getLatitude(), towerB.getLongitude(),
-                        end.getLatitude(), end.getLongitude()
-                );
-
-                return Double.compare(distA, distB);
-            });
-
-            // Process all neighbors
-            for (String neighborId : neighbors) {
-                if (!visited.contains(neighborId)) {
-                    visited.add(neighborId);
-                    previous.put(neighborId, currentId);
-                    queue.add(neighborId);
+        } else if (corridorSlack > 0) {
+            // Likewise a path inside the ellipse can need more towers than one that leaves it, so
+            // a path that misses the exact hop count widens the ellipse like no path at all
+            int fewestHops = fewestHops(query, startId, endId);
+            double slack = Math.max(1, corridorSlack);
+            for (int attempt = 0; fewestHops >= 0 && attempt <= CORRIDOR_WIDENINGS && nodes.length == 0; attempt++) {
+                nodes = HopCostSearch.findPath(query, startId, endId, BEARING_DEVIATION_PENALTY,
+                        ellipseCorridor(query, directDistance * slack));
+                if (nodes.length - 1 > fewestHops) {
+                    nodes = new int[0];
                 }
+                slack += Math.max(slack - 1, 0.25); // Double the excess over the direct distance
             }
         }
-
-        // Reconstruct path
-        List<TowerDto> path = new ArrayList<>();
-        String currentId = endId;
+        if (nodes.length == 0) {
+            nodes = HopCostSearch.findPath(query, startId, endId, BEARING_DEVIATION_PENALTY);
+        }
 
         // If no path to end found
-        if (!visited.contains(endId)) {
+        if (nodes.length == 0) {
             // Fall back to interpolation
-            return findPathByInterpolation(start, end, allTowers);
+            return findPathByInterpolation(start, end, allTowers, query.getSnapshot().getSpatialIndex());
         }
 
-        // Build path from end to start
-        while (currentId != null) {
-            path.add(0, towerMap.get(currentId));
-            currentId = previous.get(currentId);
-        }
-
-        return path;
+        // Apply smoothing to eliminate zigzags
+        return toTowers(query, PathSmoother.smooth(query, nodes));
     }
 
     /**
-     * Find direct path with A* algorithm (from newer PathService approach)
+     * Fewest links between two nodes, read from the hop matrix or the hop contraction hierarchy,
+     * or -1 while neither is available or when the end is unreachable
      */
-    private List<TowerDto> findDirectPath(TowerDto start, TowerDto end, List<TowerDto> allTowers) {
-        // Create a map of all nodes for quick lookup
-        Map<String, TowerDto> towerMap = new HashMap<>();
-        towerMap.put(getTowerId(start), start);
-        towerMap.put(getTowerId(end), end);
-        allTowers.forEach(t -> towerMap.put(getTowerId(t), t));
-
-        String startId = getTowerId(start);
-        String endId = getTowerId(end);
-
-        // Track visited nodes and path construction
-        Map<String, String> previous = new HashMap<>();
-        Set<String> visited = new HashSet<>();
-        Map<String, Double> distanceSoFar = new HashMap<>(); // Track distance traveled to each node
-
-        // A* algorithm implementation
-        PriorityQueue<String> queue = new PriorityQueue<>((a, b) -> {
-            TowerDto towerA = towerMap.get(a);
-            TowerDto towerB = towerMap.get(b);
-
-            // Distance to end (heuristic component)
-            double distA = calculateDistance(
-                    towerA.getLatitude(), towerA.getLongitude(),
-                    end.getLatitude(), end.getLongitude()
-            );
-
-            double distB = calculateDistance(
-                    towerB.getLatitude(), towerB.getLongitude(),
-                    end.getLatitude(), end.getLongitude()
-            );
-
-            // Get path distances so far
-            double pathDistA = distanceSoFar.getOrDefault(a, Double.MAX_VALUE);
-            double pathDistB = distanceSoFar.getOrDefault(b, Double.MAX_VALUE);
-
-            // Calculate bearing deviations to prefer straighter paths
-            double bearingDeviationA = 0;
-            double bearingDeviationB = 0;
-
-            // Calculate ideal bearing from start to end
-            double idealBearing = calculateBearing(
-                    start.getLatitude(), start.getLongitude(),
-                    end.getLatitude(), end.getLongitude()
-            );
-
-            if (previous.containsKey(a)) {
-                String prevId = previous.get(a);
-                TowerDto prevTower = towerMap.get(prevId);
-
-                double segmentBearing = calculateBearing(
-                        prevTower.getLatitude(), prevTower.getLongitude(),
-                        towerA.getLatitude(), towerA.getLongitude()
-                );
-
-                bearingDeviationA = Math.abs(segmentBearing - idealBearing);
-                if (bearingDeviationA > 180) bearingDeviationA = 360 - bearingDeviationA;
-            }
-
-            if (previous.containsKey(b)) {
-                String prevId = previous.get(b);
-                TowerDto prevTower = towerMap.get(prevId);
-
-                double segmentBearing = calculateBearing(
-                        prevTower.getLatitude(), prevTower.getLongitude(),
-                        towerB.getLatitude(), towerB.getLongitude()
-                );
-
-                bearingDeviationB = Math.abs(segmentBearing - idealBearing);
-                if (bearingDeviationB > 180) bearingDeviationB = 360 - bearingDeviationB;
-            }
-
-            // Combine the metrics with appropriate weights
-            // Higher weight on distance to end (heuristic) to prefer more direct paths
-            double scoreA = pathDistA + (distA * 1.5) + (bearingDeviationA * 0.1);
-            double scoreB = pathDistB + (distB * 1.5) + (bearingDeviationB * 0.1);
-
-            return Double.compare(scoreA, scoreB);
-        });
-
-        // Initialize search
-        queue.add(startId);
-        visited.add(startId);
-        distanceSoFar.put(startId, 0.0);
-
-        boolean pathFound = false;
-
-        while (!queue.isEmpty() && !pathFound) {
-            String currentId = queue.poll();
-            TowerDto currentTower = towerMap.get(currentId);
-
-            if (currentId.equals(endId)) {
-                pathFound = true;
-                break;
-            }
-
-            // Find all possible next hops that are within range
-            List<String> neighbors = new ArrayList<>();
-
-            for (String towerId : towerMap.keySet()) {
-                if (towerId.equals(currentId)) continue;
-
-                TowerDto potentialNeighbor = towerMap.get(towerId);
-                double distance = calculateDistance(
-                        currentTower.getLatitude(), currentTower.getLongitude(),
-                        potentialNeighbor.getLatitude(), potentialNeighbor.getLongitude()
-                );
-
-                if (distance <= MAX_TOWER_DISTANCE) {
-                    // Check if this tower makes progress toward the destination
-                    double currentToEndDist = calculateDistance(
-                            currentTower.getLatitude(), currentTower.getLongitude(),
-                            end.getLatitude(), end.getLongitude()
-                    );
-
-                    double neighborToEndDist = calculateDistance(
-                            potentialNeighbor.getLatitude(), potentialNeighbor.getLongitude(),
-                            end.getLatitude(), end.getLongitude()
-                    );
-
-                    // Only consider towers that don't take us too far off course
-                    if (neighborToEndDist <= currentToEndDist + 3.0) {
-                        neighbors.add(towerId);
-                    }
-                }
-            }
-
-            // Process all neighbors
-            for (String neighborId : neighbors) {
-                // Calculate new distance
-                TowerDto neighbor = towerMap.get(neighborId);
-                double segmentDistance = calculateDistance(
-                        currentTower.getLatitude(), currentTower.getLongitude(),
-                        neighbor.getLatitude(), neighbor.getLongitude()
-                );
-
-                double newDistance = distanceSoFar.get(currentId) + segmentDistance;
-
-                // If we haven't visited this node or we found a shorter path
-                if (!visited.contains(neighborId) || newDistance < distanceSoFar.getOrDefault(neighborId, Double.MAX_VALUE)) {
-                    visited.add(neighborId);
-                    previous.put(neighborId, currentId);
-                    distanceSoFar.put(neighborId, newDistance);
-
-                    // Add to queue for processing
-                    queue.add(neighborId);
-                }
-            }
-        }
-
-        // Reconstruct path
-        List<TowerDto> path = new ArrayList<>();
-        String currentId = endId;
-
-        // If no path to end found
-        if (!visited.contains(endId)) {
-            // Fall back to interpolation approach
-            return findPathByInterpolation(start, end, allTowers);
-        }
-
-        // Build path from end to start
-        while (currentId != null) {
-            path.add(0, towerMap.get(currentId));
-            currentId = previous.get(currentId);
+    private int fewestHops(QueryGraph query, int startId, int endId) {
+        HopMatrix hopMatrix = query.getSnapshot().getHopMatrix();
+        ContractionHierarchy hierarchy = query.getSnapshot().getHierarchy(ContractionHierarchy.Metric.HOPS);
+        int[] nodes;
+        if (hopMatrix != null) {
+            nodes = hopMatrix.findPath(query, startId, endId);
+        } else if (hierarchy != null) {
+            nodes = hierarchy.findPath(query, startId, endId);
+        } else {
+            return -1;
         }
-
-        // Apply smoothing to eliminate zigzags
-        path = smoothPath(path, allTowers);
-
-        return path;
+        return nodes.length - 1;
     }
 
     /**
-     * Smooth the path to reduce zigzags while maintaining connectivity
+     * Towers whose distances to the start and to the end add up to at most focalSumKm, widened
+     * by two link ranges so every tower the virtual start and end link to is inside
      */
-    private List<TowerDto> smoothPath(List<TowerDto> path, List<TowerDto> allTowers) {
-        if (path.size() <= 3) {
-            return path; // Nothing to smooth for very short paths
+    private BitSet ellipseCorridor(QueryGraph query, double focalSumKm) {
+        int startId = query.virtualNode(0);
+        int endId = query.virtualNode(1);
+        int[] towers = query.getSnapshot().getSpatialIndex().withinEllipse(
+                query.lat(startId), query.lon(startId), query.lat(endId), query.lon(endId),
+                focalSumKm + 2 * MAX_TOWER_DISTANCE);
+
+        BitSet allowed = new BitSet(query.nodeCount());
+        for (int tower : towers) {
+            allowed.set(tower);
         }
+        allowed.set(startId);
+        allowed.set(endId);
+        return allowed;
+    }
 
-        List<TowerDto> smoothedPath = new ArrayList<>(path);
-        boolean changed;
-
-        // Multiple iterations to incrementally improve the path
-        for (int iteration = 0; iteration < 2; iteration++) {
-            changed = false;
-
-            // Look at each triplet of consecutive towers
-            for (int i = 0; i < smoothedPath.size() - 2; i++) {
-                TowerDto t1 = smoothedPath.get(i);
-                TowerDto t2 = smoothedPath.get(i + 1);
-                TowerDto t3 = smoothedPath.get(i + 2);
-
-                // Check if we can skip the middle tower
-                double distDirectly = calculateDistance(
-                        t1.getLatitude(), t1.getLongitude(),
-                        t3.getLatitude(), t3.getLongitude()
-                );
-
-                if (distDirectly <= MAX_TOWER_DISTANCE) {
-                    // We can skip t2 entirely
-                    smoothedPath.remove(i + 1);
-                    changed = true;
-                    i--; // Adjust index after removal
-                    continue;
-                }
-
-                // Check for zigzag patterns
-                double bearing1to2 = calculateBearing(
-                        t1.getLatitude(), t1.getLongitude(),
-                        t2.getLatitude(), t2.getLongitude()
-                );
-
-                double bearing2to3 = calculateBearing(
-                        t2.getLatitude(), t2.getLongitude(),
-                        t3.getLatitude(), t3.getLongitude()
-                );
-
-                double bearingChange = Math.abs(bearing1to2 - bearing2to3);
-                if (bearingChange > 180) bearingChange = 360 - bearingChange;
-
-                // If significant direction change, look for a better middle tower
-                if (bearingChange > 45) {
-                    // Calculate the ideal direct bearing
-                    double directBearing = calculateBearing(
-                            t1.getLatitude(), t1.getLongitude(),
-                            t3.getLatitude(), t3.getLongitude()
-                    );
-
-                    // Find a better tower that creates a straighter path
-                    TowerDto betterTower = findBetterMiddleTower(t1, t3, allTowers, smoothedPath);
-
-                    if (betterTower != null && !getTowerId(betterTower).equals(getTowerId(t2))) {
-                        smoothedPath.set(i + 1, betterTower);
-                        changed = true;
-                    }
-                }
-            }
-
-            // If no changes made in this iteration, we're done
-            if (!changed) break;
+    /**
+     * Find path with minimum number of towers (from OldPathService approach)
+     */
+    private List<TowerDto> findMinimumTowerCountPath(QueryGraph query, List<TowerDto> allTowers) {
+        int startId = query.virtualNode(0);
+        int endId = query.virtualNode(1);
+        TowerDto start = query.tower(startId);
+        TowerDto end = query.tower(endId);
+
+        // Read the fewest-hop path from the precomputed hop matrix when the snapshot has one,
+        // otherwise query the hop contraction hierarchy, or run a bidirectional BFS that meets
+        // in the middle while the hierarchy is still being built
+        HopMatrix hopMatrix = query.getSnapshot().getHopMatrix();
+        ContractionHierarchy hierarchy = query.getSnapshot().getHierarchy(ContractionHierarchy.Metric.HOPS);
+        int[] nodes;
+        if (hopMatrix != null) {
+            nodes = hopMatrix.findPath(query, startId, endId);
+        } else if (hierarchy != null) {
+            nodes = hierarchy.findPath(query, startId, endId);
+        } else {
+            nodes = BidirectionalBfs.findPath(query, startId, endId);
         }
 
-        // Ensure we maintain connectivity
-        boolean valid = true;
-        for (int i = 0; i < smoothedPath.size() - 1; i++) {
-            TowerDto current = smoothedPath.get(i);
-            TowerDto next = smoothedPath.get(i + 1);
-
-            double distance = calculateDistance(
-                    current.getLatitude(), current.getLongitude(),
-                    next.getLatitude(), next.getLongitude()
-            );
-
-            if (distance > MAX_TOWER_DISTANCE) {
-                valid = false;
-                break;
-            }
+        // If no path to end found
+        if (nodes.length == 0) {
+            // Fall back to interpolation
+            return findPathByInterpolation(start, end, allTowers, query.getSnapshot().getSpatialIndex());
         }
 
-        // Return the original path if smoothing broke connectivity
-        return valid ? smoothedPath : path;
+        // Smoothing only swaps towers here: a fewest-hop path has none to drop
+        return toTowers(query, PathSmoother.smooth(query, nodes));
     }
 
     /**
-     * Find a better middle tower to reduce zigzag
+     * Find direct path with A* algorithm (from newer PathService approach)
      */
-    private TowerDto findBetterMiddleTower(TowerDto t1, TowerDto t3, List<TowerDto> allTowers, List<TowerDto> currentPath) {
-        double directBearing = calculateBearing(
-                t1.getLatitude(), t1.getLongitude(),
-                t3.getLatitude(), t3.getLongitude()
-        );
-
-        // Calculate midpoint along direct line as ideal position
-        double midLat = (t1.getLatitude() + t3.getLatitude()) / 2;
-        double midLon = (t1.getLongitude() + t3.getLongitude()) / 2;
-
-        TowerDto bestTower = null;
-        double bestScore = Double.MAX_VALUE;
+    private List<TowerDto> findDirectPath(QueryGraph query, List<TowerDto> allTowers) {
+        int startId = query.virtualNode(0);
+        int endId = query.virtualNode(1);
+        TowerDto start = query.tower(startId);
+        TowerDto end = query.tower(endId);
+
+        // A* with the heuristic weighted towards the end point to prefer more direct paths.
+        // Each edge also pays BEARING_DEVIATION_PENALTY per degree it deviates from the start-to-end
+        // bearing, and towers that take us more than 3 km further from the end are not considered.
+        int[] nodes = AStarSearch.findPath(query, startId, endId,
+                DIRECT_HEURISTIC_WEIGHT, BEARING_DEVIATION_PENALTY, DIRECT_MAX_DETOUR_KM);
 
-        for (TowerDto tower : allTowers) {
-            // Skip towers already in the path (except possibly at the middle position)
-            if (currentPath.contains(tower) &&
-                    !(currentPath.indexOf(tower) == currentPath.indexOf(t1) + 1)) {
-                continue;
-            }
-
-            // Check if this tower is within range of both t1 and t3
-            double distFromT1 = calculateDistance(
-                    t1.getLatitude(), t1.getLongitude(),
-                    tower.getLatitude(), tower.getLongitude()
-            );
-
-            double distToT3 = calculateDistance(
-                    tower.getLatitude(), tower.getLongitude(),
-                    t3.getLatitude(), t3.getLongitude()
-            );
-
-            if (distFromT1 <= MAX_TOWER_DISTANCE && distToT3 <= MAX_TOWER_DISTANCE) {
-                // Calculate distance from ideal midpoint
-                double distFromMidpoint = calculateDistance(
-                        tower.getLatitude(), tower.getLongitude(),
-                        midLat, midLon
-                );
-
-                // Calculate bearing deviations
-                double bearingT1ToTower = calculateBearing(
-                        t1.getLatitude(), t1.getLongitude(),
-                        tower.getLatitude(), tower.getLongitude()
-                );
-
-                double bearingTowerToT3 = calculateBearing(
-                        tower.getLatitude(), tower.getLongitude(),
-                        t3.getLatitude(), t3.getLongitude()
-                );
-
-                double bearingDeviation1 = Math.abs(directBearing - bearingT1ToTower);
-                if (bearingDeviation1 > 180) bearingDeviation1 = 360 - bearingDeviation1;
-
-                double bearingDeviation2 = Math.abs(directBearing - bearingTowerToT3);
-                if (bearingDeviation2 > 180) bearingDeviation2 = 360 - bearingDeviation2;
+        // If no path to end found
+        if (nodes.length == 0) {
+            // Fall back to interpolation approach
+            return findPathByInterpolation(start, end, allTowers, query.getSnapshot().getSpatialIndex());
+        }
 
-                // Score based on distance from midpoint and bearing smoothness
-                double score = distFromMidpoint + (bearingDeviation1 * 0.2) + (bearingDeviation2 * 0.2);
+        // Apply smoothing to eliminate zigzags
+        return toTowers(query, PathSmoother.smooth(query, nodes));
+    }
 
-                if (score < bestScore) {
-                    bestScore = score;
-                    bestTower = tower;
-                }
-            }
+    private List<TowerDto> toTowers(QueryGraph query, int[] nodes) {
+        List<TowerDto> path = new ArrayList<>();
+        for (int node : nodes) {
+            path.add(query.tower(node));
         }
-
-        return bestTower;
+        return path;
     }
 
     /**
      * Fall back method for interpolation when BFS can't find a path
      */
-    private List<TowerDto> findPathByInterpolation(TowerDto start, TowerDto end, List<TowerDto> allTowers) {
+    private List<TowerDto> findPathByInterpolation(TowerDto start, TowerDto end, List<TowerDto> allTowers, TowerSpatialIndex index) {
         List<TowerDto> path = new ArrayList<>();
         path.add(start);
 
         // Calculate direct distance and bearing
-        double directDistance = calculateDistance(
+        double directDistance = GeoMath.distanceKm(
                 start.getLatitude(), start.getLongitude(),
                 end.getLatitude(), end.getLongitude()
         );
@@ -563,12 +329,12 @@ public class CombinedPathService {
         for (int i = 0; i < numSegments; i++) {
             // Find the next ideal point along the path
             double segmentDistance = Math.min(MAX_TOWER_DISTANCE * 0.6,
-                    calculateDistance(currentLat, currentLon, end.getLatitude(), end.getLongitude()));
+                    GeoMath.distanceKm(currentLat, currentLon, end.getLatitude(), end.getLongitude()));
 
             double[] nextPoint = calculateDestinationPoint(currentLat, currentLon, bearing, segmentDistance);
 
             // If we're close to the end, just add the end tower and break
-            double distToEnd = calculateDistance(nextPoint[0], nextPoint[1],
+            double distToEnd = GeoMath.distanceKm(nextPoint[0], nextPoint[1],
                     end.getLatitude(), end.getLongitude());
 
             if (distToEnd <= MAX_TOWER_DISTANCE) {
@@ -579,7 +345,7 @@ public class CombinedPathService {
             // Find the closest tower to this ideal point that satisfies our constraints
             TowerDto bestTower = findClosestTowerToIdealPoint(
                     currentLat, currentLon, nextPoint[0], nextPoint[1],
-                    end, bearing, allTowers, path);
+                    end, bearing, allTowers, index, path);
 
             // If we found a suitable tower, add it and update our current position
             if (bestTower != null) {
@@ -601,7 +367,7 @@ public class CombinedPathService {
             }
 
             // Check if we can reach the end from our new position
-            double newDistToEnd = calculateDistance(
+            double newDistToEnd = GeoMath.distanceKm(
                     currentLat, currentLon,
                     end.getLatitude(), end.getLongitude()
             );
@@ -622,52 +388,47 @@ public class CombinedPathService {
 
     private TowerDto findClosestTowerToIdealPoint(
             double fromLat, double fromLon, double idealLat, double idealLon,
-            TowerDto end, double directBearing, List<TowerDto> allTowers, List<TowerDto> existingPath) {
+            TowerDto end, double directBearing, List<TowerDto> allTowers, TowerSpatialIndex index, List<TowerDto> existingPath) {
 
         TowerDto bestTower = null;
         double bestScore = Double.MAX_VALUE;
 
-        for (TowerDto tower : allTowers) {
+        // Only the towers within range of our current position are candidates
+        for (int towerIndex : index.withinRadius(fromLat, fromLon, MAX_TOWER_DISTANCE)) {
+            TowerDto tower = allTowers.get(towerIndex);
+
             // Skip towers we've already used
             if (existingPath.stream().anyMatch(t -> getTowerId(t).equals(getTowerId(tower)))) {
                 continue;
             }
 
-            // Check if this tower is within range of our current position
-            double distFromCurrent = calculateDistance(
+            // Calculate distance from ideal point
+            double distFromIdeal = GeoMath.distanceKm(
+                    idealLat, idealLon,
+                    tower.getLatitude(), tower.getLongitude()
+            );
+
+            // Calculate bearing deviation
+            double towerBearing = calculateBearing(
                     fromLat, fromLon,
                     tower.getLatitude(), tower.getLongitude()
             );
 
-            if (distFromCurrent <= MAX_TOWER_DISTANCE) {
-                // Calculate distance from ideal point
-                double distFromIdeal = calculateDistance(
-                        idealLat, idealLon,
-                        tower.getLatitude(), tower.getLongitude()
-                );
-
-                // Calculate bearing deviation
-                double towerBearing = calculateBearing(
-                        fromLat, fromLon,
-                        tower.getLatitude(), tower.getLongitude()
-                );
-
-                double bearingDiff = Math.abs(directBearing - towerBearing);
-                if (bearingDiff > 180) bearingDiff = 360 - bearingDiff;
-
-                // Calculate progress toward end
-                double progressTowardEnd = calculateDistance(
-                        tower.getLatitude(), tower.getLongitude(),
-                        end.getLatitude(), end.getLongitude()
-                );
-
-                // Combined score (lower is better)
-                double score = distFromIdeal * 0.7 + bearingDiff * 0.2 + progressTowardEnd * 0.1;
-
-                if (score < bestScore) {
-                    bestScore = score;
-                    bestTower = tower;
-                }
+            double bearingDiff = Math.abs(directBearing - towerBearing);
+            if (bearingDiff > 180) bearingDiff = 360 - bearingDiff;
+
+            // Calculate progress toward end
+            double progressTowardEnd = GeoMath.distanceKm(
+                    tower.getLatitude(), tower.getLongitude(),
+                    end.getLatitude(), end.getLongitude()
+            );
+
+            // Combined score (lower is better)
+            double score = distFromIdeal * 0.7 + bearingDiff * 0.2 + progressTowardEnd * 0.1;
+
+            if (score < bestScore) {
+                bestScore = score;
+                bestTower = tower;
             }
         }
 
@@ -690,7 +451,7 @@ public class CombinedPathService {
             TowerDto currentTower = path.get(i);
             TowerDto nextTower = path.get(i + 1);
 
-            double segmentDistance = calculateDistance(
+            double segmentDistance = GeoMath.distanceKm(
                     currentTower.getLatitude(), currentTower.getLongitude(),
                     nextTower.getLatitude(), nextTower.getLongitude()
             );
@@ -730,35 +491,6 @@ public class CombinedPathService {
                 tower.getLatitude() + ":" + tower.getLongitude();
     }
 
-    // Convert Tower entity to TowerDto
-    private TowerDto convertToDto(Tower tower) {
-        return TowerDto.builder()
-                .id(tower.getId())
-                .tawalId(tower.getTawalId())
-                .siteName(tower.getSiteName())
-                .latitude(tower.getLatitude())
-                .longitude(tower.getLongitude())
-                .totalHeight(tower.getTotalHeight())
-                .power(tower.getPower())
-                .clutter(tower.getClutter())
-                .build();
-    }
-
-    // Calculate distance between two coordinates using Haversine formula
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371; // Earth radius in kilometers
-
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c; // Distance in km
-    }
-
     // Calculate bearing (direction) from point 1 to point 2 in degrees
     private double calculateBearing(double lat1, double lon1, double lat2, double lon2) {
         lat1 = Math.toRadians(lat1);
@@ -3,13 +3,16 @@ package com.example.atheer_ct.services;
 import com.example.atheer_ct.entities.User;
 import com.example.atheer_ct.repo.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Custom implementation of UserDetailsService for Spring Security.
@@ -17,17 +20,29 @@ import java.util.Collections;
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
+    // Granted on top of the usual authority to the users listed in atheer.security.admin-usernames
+    public static final String ADMIN_AUTHORITY = "Admin";
+
     @Autowired
     private UserRepository userRepository;
 
+    @Value("${atheer.security.admin-usernames:}")
+    private String[] adminUsernames;
+
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
 
+        List<SimpleGrantedAuthority> authorities = new ArrayList<>();
+        authorities.add(new SimpleGrantedAuthority("User"));
+        if (Arrays.asList(adminUsernames).contains(user.getUsername())) {
+            authorities.add(new SimpleGrantedAuthority(ADMIN_AUTHORITY));
+        }
+
         return new org.springframework.security.core.userdetails.User(
                 user.getUsername(),
                 user.getPassword(),
-                Collections.singleton(new SimpleGrantedAuthority("User")));
+                authorities);
     }
 }
\ No newline at end of file
@@ -1,22 +1,32 @@
 package com.example.atheer_ct.services;
 
 import com.example.atheer_ct.dto.TowerDto;
-import com.example.atheer_ct.entities.Tower;
-import com.example.atheer_ct.repo.TowerRepository;
+import com.example.atheer_ct.graph.BackboneImprover;
+import com.example.atheer_ct.graph.BackboneSelection;
+import com.example.atheer_ct.graph.ContractionHierarchy;
+import com.example.atheer_ct.graph.DijkstraSearch;
+import com.example.atheer_ct.graph.DreyfusWagner;
+import com.example.atheer_ct.graph.GeoKernel;
+import com.example.atheer_ct.graph.GeoMath;
+import com.example.atheer_ct.graph.QueryGraph;
+import com.example.atheer_ct.graph.ShortestPathTree;
+import com.example.atheer_ct.graph.TowerSnapshot;
+import com.example.atheer_ct.graph.TowerSpatialIndex;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class POPService {
 
-    private final OldPathService oldPathService;
-    private final TowerRepository towerRepository;
+    private final TowerService towerService;
+    private final ForkJoinPool routingPool;
 
-    public POPService(OldPathService oldPathService, TowerRepository towerRepository) {
-        this.oldPathService = oldPathService;
-        this.towerRepository = towerRepository;
+    public POPService(TowerService towerService, ForkJoinPool routingPool) {
+        this.towerService = towerService;
+        this.routingPool = routingPool;
     }
 
     /**
@@ -36,13 +46,28 @@ public class POPService {
      */
     public Map<String, Object> findMinimumTowerPOPPaths(double popLat, double popLon,
                                                         List<Map<String, Double>> destinationPoints) {
+        return findMinimumTowerPOPPaths(popLat, popLon, destinationPoints, false, 0);
+    }
+
+    /**
+     * @param exact     replace the greedy backbone with the true minimum-tower tree
+     *                  (Dreyfus-Wagner, at most {@link DreyfusWagner#MAX_TERMINALS} destinations)
+     * @param maxMillis time the greedy backbone may be improved by local search for; 0 skips it
+     */
+    public Map<String, Object> findMinimumTowerPOPPaths(double popLat, double popLon,
+                                                        List<Map<String, Double>> destinationPoints,
+                                                        boolean exact, long maxMillis) {
+        if (exact && destinationPoints.size() > DreyfusWagner.MAX_TERMINALS) {
+            throw new IllegalArgumentException("Exact mode supports at most " + DreyfusWagner.MAX_TERMINALS + " destinations");
+        }
+
         Map<String, Object> result = new HashMap<>();
 
-        // Get all towers from database
-        List<Tower> dbTowers = towerRepository.findAll();
-        List<TowerDto> allTowers = dbTowers.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        // Use the shared tower snapshot; the per-destination reachability checks below reuse it too
+        TowerSnapshot snapshot = towerService.getSnapshot();
+        List<TowerDto> allTowers = snapshot.getTowers();
+        TowerSpatialIndex spatialIndex = snapshot.getSpatialIndex();
+        GeoKernel geoKernel = snapshot.getGeoKernel();
 
         // Create virtual tower for POP point
         TowerDto popTower = TowerDto.builder()
@@ -59,24 +84,14 @@ public class POPService {
         final double MAX_TOWER_DISTANCE = 10.1;
 
         // First, identify towers within range of the POP (do this once)
-        Set<TowerDto> towersWithinRangeOfPOP = new HashSet<>();
-        for (TowerDto tower : allTowers) {
-            double distFromPop = calculateDistance(
-                    popLat, popLon,
-                    tower.getLatitude(), tower.getLongitude()
-            );
-
-            if (distFromPop <= MAX_TOWER_DISTANCE) {
-                towersWithinRangeOfPOP.add(tower);
-            }
-        }
+        int[] towersWithinRangeOfPOP = spatialIndex.withinRadius(popLat, popLon, MAX_TOWER_DISTANCE);
 
         for (Map<String, Double> dest : destinationPoints) {
             double destLat = dest.get("latitude");
             double destLon = dest.get("longitude");
 
             // STEP 1: Check if direct connection is possible
-            double directDistance = calculateDistance(popLat, popLon, destLat, destLon);
+            double directDistance = GeoMath.distanceKm(popLat, popLon, destLat, destLon);
             if (directDistance <= MAX_TOWER_DISTANCE) {
                 // Directly reachable
                 reachableDestinations.add(dest);
@@ -85,13 +100,9 @@ public class POPService {
 
             // STEP 2: Check if any single tower can connect POP to destination
             boolean canReachWithOneTower = false;
-            for (TowerDto tower : towersWithinRangeOfPOP) {
-                double distToDest = calculateDistance(
-                        tower.getLatitude(), tower.getLongitude(),
-                        destLat, destLon
-                );
-
-                if (distToDest <= MAX_TOWER_DISTANCE) {
+            double[] destVector = GeoKernel.unitVector(destLat, destLon);
+            for (int towerIndex : towersWithinRangeOfPOP) {
+                if (geoKernel.inLinkRange(towerIndex, destVector)) {
                     canReachWithOneTower = true;
                     break;
                 }
@@ -102,40 +113,19 @@ public class POPService {
                 continue;
             }
 
-            // STEP 3: Check if destination is within range of ANY tower
-            // This is different from Step 2 because we're checking all towers,
-            // not just those within range of the POP
-            boolean destWithinRangeOfAnyTower = false;
-            for (TowerDto tower : allTowers) {
-                // Skip towers we already checked in Step 2
-                if (towersWithinRangeOfPOP.contains(tower)) {
-                    continue;
-                }
-
-                double distToDest = calculateDistance(
-                        tower.getLatitude(), tower.getLongitude(),
-                        destLat, destLon
-                );
-
-                if (distToDest <= MAX_TOWER_DISTANCE) {
-                    destWithinRangeOfAnyTower = true;
-                    break;
-                }
-            }
-
-            // STEP 4: Do full path calculation only when needed
-            if (destWithinRangeOfAnyTower) {
-                // A tower can reach the destination, but we need to check if there's a full path
-                Map<String, Object> pathResult = oldPathService.findShortestPath(
-                        popLat, popLon, destLat, destLon
-                );
+            // STEP 3: Find the towers within range of the destination
+            // None of these is within range of the POP's towers (Step 2 already checked that)
+            int[] towersWithinRangeOfDest = spatialIndex.withinRadius(destLat, destLon, MAX_TOWER_DISTANCE);
 
-                if (!pathResult.containsKey("error")) {
+            // STEP 4: A chain of towers exists exactly when the two ends share a component
+            if (towersWithinRangeOfDest.length > 0) {
+                if (snapshot.getComponents().anyConnected(towersWithinRangeOfPOP, towersWithinRangeOfDest)) {
                     reachableDestinations.add(dest);
                 } else {
                     Map<String, Object> unreachableInfo = new HashMap<>();
                     unreachableInfo.put("destination", dest);
-                    unreachableInfo.put("reason", pathResult.get("error"));
+                    unreachableInfo.put("reason", "No chain of towers within " + MAX_TOWER_DISTANCE
+                            + " km of each other connects the POP to this destination.");
                     unreachableDestinations.add(unreachableInfo);
                 }
             } else {
@@ -167,70 +157,85 @@ public class POPService {
             destTowers.add(destTower);
         }
 
-        // Create combined list of all usable intermediate towers (POP + DB towers, NOT destinations)
-        List<TowerDto> intermediateNodes = new ArrayList<>();
-        intermediateNodes.add(popTower);
-        intermediateNodes.addAll(allTowers);
-
-        // Collect the IDs of all destination towers for quick lookups
-        Set<String> destTowerIds = destTowers.stream()
-                .map(this::getTowerId)
-                .collect(Collectors.toSet());
-
-        // Create a list of all nodes (intermediate + destinations)
-        List<TowerDto> allNodes = new ArrayList<>(intermediateNodes);
-        allNodes.addAll(destTowers);
-
-        // Create a network graph where edges represent possible connections
+        // Splice the POP and the destinations into the tower graph as virtual nodes.
         // This graph treats destinations as normal nodes for connectivity calculation purposes
-        Map<String, Set<String>> fullNetworkGraph = buildNetworkGraph(allNodes);
-
-        // Map to keep track of all towers by ID
-        Map<String, TowerDto> towerMap = new HashMap<>();
-        for (TowerDto tower : allNodes) {
-            towerMap.put(getTowerId(tower), tower);
+        List<TowerDto> virtualTowers = new ArrayList<>();
+        virtualTowers.add(popTower);
+        virtualTowers.addAll(destTowers);
+        QueryGraph query = new QueryGraph(snapshot, virtualTowers);
+
+        int popNode = query.virtualNode(0);
+        int[] destNodes = new int[destTowers.size()];
+        for (int i = 0; i < destNodes.length; i++) {
+            destNodes[i] = query.virtualNode(1 + i);
         }
 
-        // Calculate the minimum set of intermediate towers needed to connect all destinations
-        // using a modified Steiner tree approach
-        Set<String> selectedTowers = findMinimumBackboneNetwork(
-                popTower,
-                destTowers,
-                intermediateNodes,
-                fullNetworkGraph,
-                towerMap
-        );
+        // Calculate the minimum set of intermediate towers (POP + DB towers, NOT destinations)
+        // needed to connect all destinations using a modified Steiner tree approach
+        BitSet selectedTowers = BackboneSelection.greedy(query, popNode, destNodes);
 
-        // Ensure POP is always included
-        selectedTowers.add(getTowerId(popTower));
-
-        // Create a subgraph containing only the selected intermediate towers (backbone network)
-        Map<String, Set<String>> backboneGraph = new HashMap<>();
-        for (String towerId : selectedTowers) {
-            backboneGraph.put(towerId, new HashSet<>());
-
-            for (String neighbor : fullNetworkGraph.get(towerId)) {
-                if (selectedTowers.contains(neighbor)) {
-                    backboneGraph.get(towerId).add(neighbor);
-                }
+        if (exact) {
+            // The greedy tower count bounds the search; keep the greedy backbone if no tree is found
+            BitSet exactTowers = DreyfusWagner.solve(query, popNode, destNodes,
+                    selectedTowers.cardinality() - 1, routingPool);
+            if (exactTowers != null) {
+                selectedTowers = exactTowers;
             }
         }
 
-        // For each destination, find the best path from POP through the backbone network
-        Map<String, List<TowerDto>> optimizedPaths = new HashMap<>();
+        int improvementIterations = 0;
+        long improvementMillis = 0;
+        if (!exact && maxMillis > 0) {
+            // Improve the greedy backbone on the request thread until the deadline; whatever is best
+            // then is used. Not on the routing pool, where snapshot builds could keep it queued
+            long started = System.nanoTime();
+            BackboneImprover improver = new BackboneImprover(query, popNode, destNodes, selectedTowers,
+                    started + TimeUnit.MILLISECONDS.toNanos(maxMillis));
+            improver.run();
+            selectedTowers = improver.best();
+            improvementIterations = improver.iterations();
+            improvementMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        }
 
-        for (TowerDto destTower : destTowers) {
-            String destId = getTowerId(destTower);
+        // Ensure POP is always included
+        selectedTowers.set(popNode);
 
-            // Find the best connecting point from backbone to this destination
-            String bestConnectingTower = null;
+        // For each destination, find the best path from POP through the backbone network
+        // (the subgraph of the selected intermediate towers). One shortest-path tree from the POP
+        // answers every destination; the tree over the whole graph is only built if a
+        // destination needs the fallback.
+        ShortestPathTree backboneTree = DijkstraSearch.shortestPathTree(query, popNode, selectedTowers);
+        ShortestPathTree fullTree = null;
+        ContractionHierarchy hierarchy = query.getSnapshot().getHierarchy(ContractionHierarchy.Metric.DISTANCE);
+        List<List<TowerDto>> optimizedPaths = new ArrayList<>();
+        QueryGraph.Cursor cursor = query.cursor();
+
+        for (int destNode : destNodes) {
+            TowerDto destTower = query.tower(destNode);
+
+            // Find the best connecting point from backbone to this destination:
+            // the POP first, then the towers linked to the destination
+            int bestConnectingTower = -1;
             double shortestDistance = Double.MAX_VALUE;
 
-            for (String towerId : selectedTowers) {
-                TowerDto intermediateTower = towerMap.get(towerId);
+            double popDistance = GeoMath.distanceKm(
+                    popLat, popLon,
+                    destTower.getLatitude(), destTower.getLongitude()
+            );
+            if (popDistance <= 10.1) {
+                shortestDistance = popDistance;
+                bestConnectingTower = popNode;
+            }
+
+            cursor.reset(destNode);
+            while (cursor.next()) {
+                int towerId = cursor.target();
+                if (query.isVirtual(towerId) || !selectedTowers.get(towerId)) {
+                    continue;
+                }
 
-                double distance = calculateDistance(
-                        intermediateTower.getLatitude(), intermediateTower.getLongitude(),
+                double distance = GeoMath.distanceKm(
+                        query.lat(towerId), query.lon(towerId),
                         destTower.getLatitude(), destTower.getLongitude()
                 );
 
@@ -240,44 +245,45 @@ public class POPService {
                 }
             }
 
-            if (bestConnectingTower != null) {
+            if (bestConnectingTower != -1) {
                 // Find path from POP to connecting tower through backbone
-                List<TowerDto> backbonePath = findShortestPath(
-                        popTower,
-                        towerMap.get(bestConnectingTower),
-                        backboneGraph,
-                        towerMap
-                );
+                List<TowerDto> backbonePath = pathFromTree(query, backboneTree, bestConnectingTower);
 
                 // Add destination to the end
                 List<TowerDto> fullPath = new ArrayList<>(backbonePath);
                 fullPath.add(destTower);
 
-                optimizedPaths.put(destId, fullPath);
+                optimizedPaths.add(fullPath);
             } else {
                 // No connecting tower found within range, try direct connection from POP
-                double directDistance = calculateDistance(
+                double directDistance = GeoMath.distanceKm(
                         popTower.getLatitude(), popTower.getLongitude(),
                         destTower.getLatitude(), destTower.getLongitude()
                 );
 
                 if (directDistance <= 10.1) {
-                    optimizedPaths.put(destId, List.of(popTower, destTower));
+                    optimizedPaths.add(List.of(popTower, destTower));
                 } else {
-                    // Find a regular path as fallback
-                    List<TowerDto> fallbackPath = findShortestPath(
-                            popTower, destTower, fullNetworkGraph, towerMap
-                    );
-                    optimizedPaths.put(destId, fallbackPath);
+                    // Find a regular path as fallback, from the distance hierarchy once it is built
+                    List<TowerDto> fallbackPath;
+                    if (hierarchy != null) {
+                        fallbackPath = toTowers(query, hierarchy.findPath(query, popNode, destNode), popNode, destNode);
+                    } else {
+                        if (fullTree == null) {
+                            fullTree = DijkstraSearch.shortestPathTree(query, popNode, null);
+                        }
+                        fallbackPath = pathFromTree(query, fullTree, destNode);
+                    }
+                    optimizedPaths.add(fallbackPath);
                 }
             }
         }
 
         // Format the results
         List<Map<String, Object>> pathsInfo = new ArrayList<>();
-        for (TowerDto destTower : destTowers) {
-            String destId = getTowerId(destTower);
-            List<TowerDto> path = optimizedPaths.get(destId);
+        for (int i = 0; i < destTowers.size(); i++) {
+            TowerDto destTower = destTowers.get(i);
+            List<TowerDto> path = optimizedPaths.get(i);
 
             Map<String, Object> pathInfo = new HashMap<>();
             pathInfo.put("destination", Map.of(
@@ -292,10 +298,7 @@ public class POPService {
         }
 
         // Count unique intermediate towers used (excluding POP tower and destinations)
-        Set<String> uniqueIntermediateTowers = new HashSet<>(selectedTowers);
-        uniqueIntermediateTowers.remove(getTowerId(popTower)); // Remove POP
-
-        int uniqueTowersUsed = uniqueIntermediateTowers.size();
+        int uniqueTowersUsed = selectedTowers.cardinality() - 1; // Remove POP
         double totalDistance = pathsInfo.stream()
                 .mapToDouble(info -> (Double) info.get("distance"))
                 .sum();
@@ -306,7 +309,10 @@ public class POPService {
                 "totalDestinations", reachableDestinations.size(),
                 "unreachableDestinations", unreachableDestinations.size(),
                 "totalDistance", totalDistance,
-                "networkTopology", "tree"
+                "networkTopology", "tree",
+                "mode", exact ? "exact" : "greedy",
+                "improvementIterations", improvementIterations,
+                "improvementMillis", improvementMillis
         ));
 
         // Add information about unreachable destinations to the result
@@ -318,560 +324,28 @@ public class POPService {
     }
 
     /**
-     * Find the minimum set of intermediate towers needed to form a backbone network
-     * that can reach all destinations. Uses a greedy approach inspired by the
-     * Steiner Tree problem solution.
-     */
-    private Set<String> findMinimumBackboneNetwork(
-            TowerDto popTower,
-            List<TowerDto> destTowers,
-            List<TowerDto> intermediateNodes,
-            Map<String, Set<String>> networkGraph,
-            Map<String, TowerDto> towerMap) {
-
-        // Start with just the POP tower
-        Set<String> selectedTowers = new HashSet<>();
-        selectedTowers.add(getTowerId(popTower));
-
-        // Create a set of all destination IDs
-        Set<String> destIds = destTowers.stream()
-                .map(this::getTowerId)
-                .collect(Collectors.toSet());
-
-        // Set of destinations that have been connected
-        Set<String> connectedDests = new HashSet<>();
-
-        // Map of shortest paths from any selected tower to each destination
-        Map<String, List<TowerDto>> shortestPathsToDestinations = new HashMap<>();
-
-        // Keep adding towers until all destinations are connected
-        while (connectedDests.size() < destTowers.size()) {
-            // Find all possible paths from current selected towers to unconnected destinations
-            for (String towerId : selectedTowers) {
-                TowerDto sourceTower = towerMap.get(towerId);
-
-                for (TowerDto destTower : destTowers) {
-                    String destId = getTowerId(destTower);
-                    if (connectedDests.contains(destId)) {
-                        continue; // Skip already connected destinations
-                    }
-
-                    // Check direct connection first
-                    double directDistance = calculateDistance(
-                            sourceTower.getLatitude(), sourceTower.getLongitude(),
-                            destTower.getLatitude(), destTower.getLongitude()
-                    );
-
-                    if (directDistance <= 10.1) {
-                        // Direct connection possible
-                        shortestPathsToDestinations.put(destId, List.of(sourceTower, destTower));
-                        connectedDests.add(destId);
-                    }
-                }
-            }
-
-            // If we connected all destinations directly, we're done
-            if (connectedDests.size() == destTowers.size()) {
-                break;
-            }
-
-            // Find the best intermediate tower to add to our network
-            TowerDto bestTower = null;
-            int mostNewConnections = 0;
-
-            for (TowerDto candidate : intermediateNodes) {
-                String candidateId = getTowerId(candidate);
-                if (selectedTowers.contains(candidateId)) {
-                    continue; // Skip already selected towers
-                }
-
-                // Add this candidate temporarily
-                selectedTowers.add(candidateId);
-
-                // Count how many new destinations could be connected
-                int newConnections = 0;
-                for (TowerDto destTower : destTowers) {
-                    String destId = getTowerId(destTower);
-                    if (connectedDests.contains(destId)) {
-                        continue; // Skip already connected destinations
-                    }
-
-                    boolean canConnect = false;
-                    // Check if this tower can connect to any selected tower
-                    for (String existingTower : selectedTowers) {
-                        if (networkGraph.get(existingTower).contains(candidateId)) {
-                            canConnect = true;
-                            break;
-                        }
-                    }
-
-                    if (canConnect) {
-                        // Check if this candidate can connect to the destination
-                        double distance = calculateDistance(
-                                candidate.getLatitude(), candidate.getLongitude(),
-                                destTower.getLatitude(), destTower.getLongitude()
-                        );
-
-                        if (distance <= 10.1) {
-                            newConnections++;
-                        }
-                    }
-                }
-
-                // Remove the candidate and see if it's the best so far
-                selectedTowers.remove(candidateId);
-                if (newConnections > mostNewConnections) {
-                    mostNewConnections = newConnections;
-                    bestTower = candidate;
-                }
-            }
-
-            // If we found a good tower, add it
-            if (bestTower != null) {
-                selectedTowers.add(getTowerId(bestTower));
-
-                // Update connected destinations
-                for (TowerDto destTower : destTowers) {
-                    String destId = getTowerId(destTower);
-                    if (connectedDests.contains(destId)) {
-                        continue;
-                    }
-
-                    double distance = calculateDistance(
-                            bestTower.getLatitude(), bestTower.getLongitude(),
-                            destTower.getLatitude(), destTower.getLongitude()
-                    );
-
-                    if (distance <= 10.1) {
-                        connectedDests.add(destId);
-                    }
-                }
-            } else {
-                // If we didn't find any good tower, add the closest tower to any unconnected destination
-                double minDistance = Double.MAX_VALUE;
-                TowerDto closestTower = null;
-                String closestDestId = null;
-
-                for (TowerDto candidate : intermediateNodes) {
-                    String candidateId = getTowerId(candidate);
-                    if (selectedTowers.contains(candidateId)) {
-                        continue;
-                    }
-
-                    // Check if this tower can connect to any selected tower
-                    boolean canConnectToSelected = false;
-                    for (String existingTower : selectedTowers) {
-                        if (networkGraph.get(existingTower).contains(candidateId)) {
-                            canConnectToSelected = true;
-                            break;
-                        }
-                    }
-
-                    if (canConnectToSelected) {
-                        for (TowerDto destTower : destTowers) {
-                            String destId = getTowerId(destTower);
-                            if (connectedDests.contains(destId)) {
-                                continue;
-                            }
-
-                            double distance = calculateDistance(
-                                    candidate.getLatitude(), candidate.getLongitude(),
-                                    destTower.getLatitude(), destTower.getLongitude()
-                            );
-
-                            if (distance < minDistance) {
-                                minDistance = distance;
-                                closestTower = candidate;
-                                closestDestId = destId;
-                            }
-                        }
-                    }
-                }
-
-                if (closestTower != null) {
-                    selectedTowers.add(getTowerId(closestTower));
-                } else {
-                    // If we couldn't find any tower that connects, let's just pick the closest tower
-                    // to the POP that can reach any unconnected destination
-                    minDistance = Double.MAX_VALUE;
-
-                    for (TowerDto candidate : intermediateNodes) {
-                        String candidateId = getTowerId(candidate);
-                        if (selectedTowers.contains(candidateId)) {
-                            continue;
-                        }
-
-                        double distanceToPop = calculateDistance(
-                                popTower.getLatitude(), popTower.getLongitude(),
-                                candidate.getLatitude(), candidate.getLongitude()
-                        );
-
-                        if (distanceToPop <= 10.1 && distanceToPop < minDistance) {
-                            boolean canReachDest = false;
-
-                            for (TowerDto destTower : destTowers) {
-                                String destId = getTowerId(destTower);
-                                if (connectedDests.contains(destId)) {
-                                    continue;
-                                }
-
-                                double destDistance = calculateDistance(
-                                        candidate.getLatitude(), candidate.getLongitude(),
-                                        destTower.getLatitude(), destTower.getLongitude()
-                                );
-
-                                if (destDistance <= 10.1) {
-                                    canReachDest = true;
-                                    break;
-                                }
-                            }
-
-                            if (canReachDest) {
-                                minDistance = distanceToPop;
-                                closestTower = candidate;
-                            }
-                        }
-                    }
-
-                    if (closestTower != null) {
-                        selectedTowers.add(getTowerId(closestTower));
-                    } else {
-                        // If we still can't find any tower, just add all remaining destinations
-                        // to the connected set to break out of the loop
-                        for (TowerDto destTower : destTowers) {
-                            connectedDests.add(getTowerId(destTower));
-                        }
-                    }
-                }
-            }
-        }
-
-        // Connect the backbone network
-        ensureConnectedBackbone(selectedTowers, networkGraph, intermediateNodes, towerMap);
-
-        return selectedTowers;
-    }
-
-    /**
-     * Ensure that all selected towers form a connected backbone network
+     * Shortest path from the tree's root (the POP) to the given node
      */
-    private void ensureConnectedBackbone(
-            Set<String> selectedTowers,
-            Map<String, Set<String>> networkGraph,
-            List<TowerDto> intermediateNodes,
-            Map<String, TowerDto> towerMap) {
-
-        // Use a simple BFS to check connectivity
-        String startTower = selectedTowers.iterator().next();
-        Set<String> visited = new HashSet<>();
-        Queue<String> queue = new LinkedList<>();
-
-        queue.add(startTower);
-        visited.add(startTower);
-
-        while (!queue.isEmpty()) {
-            String current = queue.poll();
-
-            for (String neighbor : networkGraph.get(current)) {
-                if (selectedTowers.contains(neighbor) && !visited.contains(neighbor)) {
-                    visited.add(neighbor);
-                    queue.add(neighbor);
-                }
-            }
-        }
-
-        // If not all towers are visited, we need to add more towers to connect them
-        if (visited.size() < selectedTowers.size()) {
-            // Identify disconnected components
-            List<Set<String>> components = new ArrayList<>();
-            Set<String> unvisited = new HashSet<>(selectedTowers);
-            unvisited.removeAll(visited);
-
-            components.add(visited);
-
-            while (!unvisited.isEmpty()) {
-                String startNode = unvisited.iterator().next();
-                Set<String> component = new HashSet<>();
-                Queue<String> componentQueue = new LinkedList<>();
-
-                componentQueue.add(startNode);
-                component.add(startNode);
-                unvisited.remove(startNode);
-
-                while (!componentQueue.isEmpty()) {
-                    String current = componentQueue.poll();
-
-                    for (String neighbor : networkGraph.get(current)) {
-                        if (selectedTowers.contains(neighbor) &&
-                                !component.contains(neighbor) &&
-                                unvisited.contains(neighbor)) {
-                            component.add(neighbor);
-                            unvisited.remove(neighbor);
-                            componentQueue.add(neighbor);
-                        }
-                    }
-                }
-
-                components.add(component);
-            }
-
-            // Connect components by adding intermediate towers
-            for (int i = 0; i < components.size() - 1; i++) {
-                Set<String> comp1 = components.get(i);
-                Set<String> comp2 = components.get(i + 1);
-
-                // Find the best tower to connect these components
-                TowerDto bestConnector = null;
-                double minTotalDistance = Double.MAX_VALUE;
-
-                for (TowerDto candidate : intermediateNodes) {
-                    String candidateId = getTowerId(candidate);
-                    if (selectedTowers.contains(candidateId)) {
-                        continue; // Skip already selected towers
-                    }
-
-                    // Check if this candidate can connect the components
-                    boolean canConnectComp1 = false;
-                    boolean canConnectComp2 = false;
-                    double minDistComp1 = Double.MAX_VALUE;
-                    double minDistComp2 = Double.MAX_VALUE;
-
-                    for (String towerId : comp1) {
-                        if (networkGraph.get(towerId).contains(candidateId)) {
-                            canConnectComp1 = true;
-                            double dist = calculateDistance(
-                                    candidate.getLatitude(), candidate.getLongitude(),
-                                    towerMap.get(towerId).getLatitude(), towerMap.get(towerId).getLongitude()
-                            );
-                            minDistComp1 = Math.min(minDistComp1, dist);
-                        }
-                    }
-
-                    for (String towerId : comp2) {
-                        if (networkGraph.get(towerId).contains(candidateId)) {
-                            canConnectComp2 = true;
-                            double dist = calculateDistance(
-                                    candidate.getLatitude(), candidate.getLongitude(),
-                                    towerMap.get(towerId).getLatitude(), towerMap.get(towerId).getLongitude()
-                            );
-                            minDistComp2 = Math.min(minDistComp2, dist);
-                        }
-                    }
-
-                    if (canConnectComp1 && canConnectComp2) {
-                        double totalDist = minDistComp1 + minDistComp2;
-                        if (totalDist < minTotalDistance) {
-                            minTotalDistance = totalDist;
-                            bestConnector = candidate;
-                        }
-                    }
-                }
-
-                if (bestConnector != null) {
-                    selectedTowers.add(getTowerId(bestConnector));
-                } else {
-                    // If no single tower can connect them, use two towers in sequence
-                    TowerDto bestFirst = null;
-                    TowerDto bestSecond = null;
-                    minTotalDistance = Double.MAX_VALUE;
-
-                    for (TowerDto first : intermediateNodes) {
-                        String firstId = getTowerId(first);
-                        if (selectedTowers.contains(firstId)) {
-                            continue;
-                        }
-
-                        boolean canConnectComp1 = false;
-                        for (String towerId : comp1) {
-                            if (networkGraph.get(towerId).contains(firstId)) {
-                                canConnectComp1 = true;
-                                break;
-                            }
-                        }
-
-                        if (canConnectComp1) {
-                            for (TowerDto second : intermediateNodes) {
-                                String secondId = getTowerId(second);
-                                if (selectedTowers.contains(secondId) || secondId.equals(firstId)) {
-                                    continue;
-                                }
-
-                                if (networkGraph.get(firstId).contains(secondId)) {
-                                    boolean canConnectComp2 = false;
-                                    for (String towerId : comp2) {
-                                        if (networkGraph.get(towerId).contains(secondId)) {
-                                            canConnectComp2 = true;
-                                            break;
-                                        }
-                                    }
-
-                                    if (canConnectComp2) {
-                                        // We found a valid pair
-                                        double firstDist = Double.MAX_VALUE;
-                                        double secondDist = Double.MAX_VALUE;
-
-                                        for (String towerId : comp1) {
-                                            double dist = calculateDistance(
-                                                    first.getLatitude(), first.getLongitude(),
-                                                    towerMap.get(towerId).getLatitude(), towerMap.get(towerId).getLongitude()
-                                            );
-                                            firstDist = Math.min(firstDist, dist);
-                                        }
-
-                                        for (String towerId : comp2) {
-                                            double dist = calculateDistance(
-                                                    second.getLatitude(), second.getLongitude(),
-                                                    towerMap.get(towerId).getLatitude(), towerMap.get(towerId).getLongitude()
-                                            );
-                                            secondDist = Math.min(secondDist, dist);
-                                        }
-
-                                        double middleDist = calculateDistance(
-                                                first.getLatitude(), first.getLongitude(),
-                                                second.getLatitude(), second.getLongitude()
-                                        );
-
-                                        double totalDist = firstDist + middleDist + secondDist;
-                                        if (totalDist < minTotalDistance) {
-                                            minTotalDistance = totalDist;
-                                            bestFirst = first;
-                                            bestSecond = second;
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-
-                    if (bestFirst != null && bestSecond != null) {
-                        selectedTowers.add(getTowerId(bestFirst));
-                        selectedTowers.add(getTowerId(bestSecond));
-                    }
-                }
-            }
-        }
+    private List<TowerDto> pathFromTree(QueryGraph query, ShortestPathTree tree, int endId) {
+        return toTowers(query, tree.pathTo(endId), tree.root(), endId);
     }
 
     /**
-     * Find the shortest path between two towers in the network graph
+     * Towers of a path between two nodes, or the two nodes themselves when no path was found
      */
-    private List<TowerDto> findShortestPath(TowerDto start, TowerDto end,
-                                            Map<String, Set<String>> graph,
-                                            Map<String, TowerDto> towerMap) {
-        // Maps for Dijkstra's algorithm
-        Map<String, String> previous = new HashMap<>();
-        Map<String, Double> distance = new HashMap<>();
-        Set<String> visited = new HashSet<>();
-
-        // Initialize
-        for (String towerId : graph.keySet()) {
-            distance.put(towerId, Double.MAX_VALUE);
-        }
-
-        String startId = getTowerId(start);
-        String endId = getTowerId(end);
-        distance.put(startId, 0.0);
-
-        PriorityQueue<String> queue = new PriorityQueue<>(
-                Comparator.comparingDouble(distance::get)
-        );
-        queue.add(startId);
-
-        // Dijkstra's algorithm
-        while (!queue.isEmpty()) {
-            String current = queue.poll();
-
-            if (current.equals(endId)) {
-                break; // Found the destination
-            }
-
-            if (visited.contains(current)) {
-                continue;
-            }
-
-            visited.add(current);
-
-            // Process all neighbors
-            for (String neighbor : graph.getOrDefault(current, Collections.emptySet())) {
-                if (visited.contains(neighbor)) {
-                    continue;
-                }
-
-                TowerDto currentTower = towerMap.get(current);
-                TowerDto neighborTower = towerMap.get(neighbor);
-
-                double segmentDist = calculateDistance(
-                        currentTower.getLatitude(), currentTower.getLongitude(),
-                        neighborTower.getLatitude(), neighborTower.getLongitude()
-                );
-
-                double newDist = distance.get(current) + segmentDist;
-
-                if (newDist < distance.getOrDefault(neighbor, Double.MAX_VALUE)) {
-                    distance.put(neighbor, newDist);
-                    previous.put(neighbor, current);
-                    queue.add(neighbor);
-                }
-            }
-        }
-
-        // Reconstruct the path
-        List<TowerDto> path = new ArrayList<>();
-        String current = endId;
-
+    private List<TowerDto> toTowers(QueryGraph query, int[] nodes, int startId, int endId) {
         // If no path found
-        if (!previous.containsKey(endId) && !startId.equals(endId)) {
-            return List.of(start, end); // Return direct connection as fallback
+        if (nodes.length == 0) {
+            return List.of(query.tower(startId), query.tower(endId)); // Return direct connection as fallback
         }
 
-        // Build path from end to start
-        while (current != null) {
-            path.add(0, towerMap.get(current)); // Add to beginning of list
-            current = previous.get(current);     // Move to previous tower
+        List<TowerDto> path = new ArrayList<>(nodes.length);
+        for (int node : nodes) {
+            path.add(query.tower(node));
         }
-
         return path;
     }
 
-    /**
-     * Builds a network graph representing possible connections between all towers
-     */
-    private Map<String, Set<String>> buildNetworkGraph(List<TowerDto> allPossibleTowers) {
-        // Create the graph as an adjacency list
-        Map<String, Set<String>> graph = new HashMap<>();
-
-        // Initialize empty sets for each tower
-        for (TowerDto tower : allPossibleTowers) {
-            graph.put(getTowerId(tower), new HashSet<>());
-        }
-
-        // Fill the graph with valid connections (within MAX_TOWER_DISTANCE)
-        final double MAX_TOWER_DISTANCE = 10.1; // Same as in PathService
-
-        for (int i = 0; i < allPossibleTowers.size(); i++) {
-            TowerDto tower1 = allPossibleTowers.get(i);
-            String id1 = getTowerId(tower1);
-
-            for (int j = i + 1; j < allPossibleTowers.size(); j++) {
-                TowerDto tower2 = allPossibleTowers.get(j);
-                String id2 = getTowerId(tower2);
-
-                double distance = calculateDistance(
-                        tower1.getLatitude(), tower1.getLongitude(),
-                        tower2.getLatitude(), tower2.getLongitude()
-                );
-
-                if (distance <= MAX_TOWER_DISTANCE) {
-                    // Add bidirectional connection
-                    graph.get(id1).add(id2);
-                    graph.get(id2).add(id1);
-                }
-            }
-        }
-
-        return graph;
-    }
-
     /**
      * Calculates the total distance of a path
      */
@@ -882,7 +356,7 @@ public class POPService {
             TowerDto current = path.get(i);
             TowerDto next = path.get(i + 1);
 
-            totalDistance += calculateDistance(
+            totalDistance += GeoMath.distanceKm(
                     current.getLatitude(), current.getLongitude(),
                     next.getLatitude(), next.getLongitude()
             );
@@ -890,49 +364,4 @@ public class POPService {
 
         return totalDistance;
     }
-
-    /**
-     * Helper method to get a unique ID for a tower
-     */
-    private String getTowerId(TowerDto tower) {
-        if (tower.getId() != null) {
-            return tower.getId().toString();
-        }
-        return tower.getTawalId() != null ? tower.getTawalId() :
-                tower.getLatitude() + ":" + tower.getLongitude();
-    }
-
-    /**
-     * Convert Tower entity to TowerDto
-     */
-    private TowerDto convertToDto(Tower tower) {
-        return TowerDto.builder()
-                .id(tower.getId())
-                .tawalId(tower.getTawalId())
-                .siteName(tower.getSiteName())
-                .latitude(tower.getLatitude())
-                .longitude(tower.getLongitude())
-                .totalHeight(tower.getTotalHeight())
-                .power(tower.getPower())
-                .clutter(tower.getClutter())
-                .build();
-    }
-
-    /**
-     * Calculate distance between two coordinates using Haversine formula
-     * Same as in PathService
-     */
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371; // Earth radius in kilometers
-
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c; // Distance in km
-    }
 }
\ No newline at end of file
@@ -1,8 +1,11 @@
 package com.example.atheer_ct.services;
 
 import com.example.atheer_ct.dto.TowerDto;
-import com.example.atheer_ct.entities.Tower;
-import com.example.atheer_ct.repo.TowerRepository;
+import com.example.atheer_ct.graph.AStarSearch;
+import com.example.atheer_ct.graph.GeoMath;
+import com.example.atheer_ct.graph.QueryGraph;
+import com.example.atheer_ct.graph.TowerSnapshot;
+import com.example.atheer_ct.graph.TowerSpatialIndex;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -11,11 +14,11 @@ import java.util.stream.Collectors;
 @Service
 public class PathService {
 
-    private final TowerRepository towerRepository;
+    private final TowerService towerService;
     private final double MAX_TOWER_DISTANCE = 10.1; // Strict 10km constraint
 
-    public PathService(TowerRepository towerRepository) {
-        this.towerRepository = towerRepository;
+    public PathService(TowerService towerService) {
+        this.towerService = towerService;
     }
 
     public Map<String, Object> findShortestPath(double startLat, double startLon, double endLat, double endLon) {
@@ -37,7 +40,7 @@ public class PathService {
                 .build();
 
         // Calculate direct distance between start and end points
-        double directDistance = calculateDistance(startLat, startLon, endLat, endLon);
+        double directDistance = GeoMath.distanceKm(startLat, startLon, endLat, endLon);
         System.out.println("Direct distance: " + directDistance);
 
         // If direct distance is less than MAX_TOWER_DISTANCE, return only virtual towers
@@ -46,11 +49,11 @@ public class PathService {
             return result;
         }
 
-        // Get all towers from the database
-        List<Tower> dbTowers = towerRepository.findAll();
+        // Use the shared tower snapshot instead of reloading the database
+        TowerSnapshot snapshot = towerService.getSnapshot();
 
         // If no towers in database, return only virtual towers
-        if (dbTowers.isEmpty()) {
+        if (snapshot.isEmpty()) {
             // Check if we can make a direct connection
             if (directDistance <= MAX_TOWER_DISTANCE) {
                 result.put("path", Arrays.asList(startTower, endTower));
@@ -63,17 +66,20 @@ public class PathService {
             }
         }
 
-        // Convert database towers to DTOs
-        List<TowerDto> allTowers = dbTowers.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        List<TowerDto> allTowers = snapshot.getTowers();
 
-        // Try BFS for fewest towers solution
-        List<TowerDto> path = findMinimumTowerPath(startTower, endTower, allTowers);
+        // Splice the virtual start/end towers into the precomputed tower graph
+        QueryGraph query = new QueryGraph(snapshot, Arrays.asList(startTower, endTower));
+
+        // Try BFS for fewest towers solution; when no chain of towers joins the two ends
+        // the search cannot succeed, so leave it to interpolation
+        List<TowerDto> path = query.hasChain(query.virtualNode(0), query.virtualNode(1))
+                ? findMinimumTowerPath(query)
+                : Arrays.asList(startTower, endTower);
 
         // If no valid path found, try the interpolation approach
         if (path.size() <= 2) {
-            path = findPathByInterpolation(startTower, endTower, allTowers);
+            path = findPathByInterpolation(startTower, endTower, allTowers, snapshot.getSpatialIndex());
         }
 
         // Validate all segments in the path
@@ -102,7 +108,7 @@ public class PathService {
             TowerDto currentTower = path.get(i);
             TowerDto nextTower = path.get(i + 1);
 
-            double segmentDistance = calculateDistance(
+            double segmentDistance = GeoMath.distanceKm(
                     currentTower.getLatitude(), currentTower.getLongitude(),
                     nextTower.getLatitude(), nextTower.getLongitude()
             );
@@ -132,151 +138,35 @@ public class PathService {
         }
     }
 
-    private List<TowerDto> findMinimumTowerPath(TowerDto start, TowerDto end, List<TowerDto> allTowers) {
-        // Create a map of all nodes for quick lookup
-        Map<String, TowerDto> towerMap = new HashMap<>();
-        towerMap.put(getTowerId(start), start);
-        towerMap.put(getTowerId(end), end);
-        allTowers.forEach(t -> towerMap.put(getTowerId(t), t));
-
-        String startId = getTowerId(start);
-        String endId = getTowerId(end);
-
-        // Track visited nodes and path construction
-        Map<String, String> previous = new HashMap<>();
-        Set<String> visited = new HashSet<>();
-        Map<String, Double> distanceSoFar = new HashMap<>(); // Track distance traveled to each node
-
-        // A* algorithm implementation
-        PriorityQueue<String> queue = new PriorityQueue<>((a, b) -> {
-            TowerDto towerA = towerMap.get(a);
-            TowerDto towerB = towerMap.get(b);
-
-            // Distance to end (heuristic component)
-            double distA = calculateDistance(
-                    towerA.getLatitude(), towerA.getLongitude(),
-                    end.getLatitude(), end.getLongitude()
-            );
-
-            double distB = calculateDistance(
-                    towerB.getLatitude(), towerB.getLongitude(),
-                    end.getLatitude(), end.getLongitude()
-            );
-
-            // Get path lengths so far (distance traveled component)
-            double pathDistA = getPathDistance(previous, towerMap, startId, a);
-            double pathDistB = getPathDistance(previous, towerMap, startId, b);
-
-            // Combine the metrics with appropriate weights
-            // Adjust this weight (1.5) to balance between fewer hops vs. shorter distance
-            double scoreA = pathDistA + (distA * 1.5);
-            double scoreB = pathDistB + (distB * 1.5);
-
-            return Double.compare(scoreA, scoreB);
-        });
-
-        // Initialize
-        queue.add(startId);
-        visited.add(startId);
-        distanceSoFar.put(startId, 0.0);
-
-        boolean pathFound = false;
-
-        while (!queue.isEmpty() && !pathFound) {
-            String currentId = queue.poll();
-            TowerDto currentTower = towerMap.get(currentId);
-
-            if (currentId.equals(endId)) {
-                pathFound = true;
-                break;
-            }
-
-            // Find all possible next hops that are within range
-            List<String> neighbors = new ArrayList<>();
-
-            for (String towerId : towerMap.keySet()) {
-                if (towerId.equals(currentId)) continue;
-
-                TowerDto potentialNeighbor = towerMap.get(towerId);
-                double distance = calculateDistance(
-                        currentTower.getLatitude(), currentTower.getLongitude(),
-                        potentialNeighbor.getLatitude(), potentialNeighbor.getLongitude()
-                );
-
-                if (distance <= MAX_TOWER_DISTANCE) {
-                    neighbors.add(towerId);
-                }
-            }
-
-            // Process all neighbors
-            for (String neighborId : neighbors) {
-                // Calculate new distance
-                TowerDto neighbor = towerMap.get(neighborId);
-                double segmentDistance = calculateDistance(
-                        currentTower.getLatitude(), currentTower.getLongitude(),
-                        neighbor.getLatitude(), neighbor.getLongitude()
-                );
-
-                double newDistance = distanceSoFar.get(currentId) + segmentDistance;
-
-                // If we haven't visited this node or we found a shorter path
-                if (!visited.contains(neighborId) || newDistance < distanceSoFar.getOrDefault(neighborId, Double.MAX_VALUE)) {
-                    visited.add(neighborId);
-                    previous.put(neighborId, currentId);
-                    distanceSoFar.put(neighborId, newDistance);
+    private List<TowerDto> findMinimumTowerPath(QueryGraph query) {
+        int startId = query.virtualNode(0);
+        int endId = query.virtualNode(1);
+        TowerDto start = query.tower(startId);
+        TowerDto end = query.tower(endId);
 
-                    // Add to queue for processing
-                    queue.add(neighborId);
-                }
-            }
-        }
-
-        // Reconstruct path
-        List<TowerDto> path = new ArrayList<>();
-        String currentId = endId;
+        // A* on path length so far plus the distance to the end;
+        // adjust the weight (1.5) to balance between fewer hops vs. shorter distance
+        int[] nodes = AStarSearch.findPath(query, startId, endId, 1.5, 0, Double.POSITIVE_INFINITY);
 
         // If no path to end found
-        if (!visited.contains(endId)) {
+        if (nodes.length == 0) {
             return Arrays.asList(start, end);
         }
 
-        // Build path from end to start
-        while (currentId != null) {
-            path.add(0, towerMap.get(currentId));
-            currentId = previous.get(currentId);
+        List<TowerDto> path = new ArrayList<>();
+        for (int node : nodes) {
+            path.add(query.tower(node));
         }
 
         return path;
     }
 
-    private double getPathDistance(Map<String, String> previous, Map<String, TowerDto> towerMap,
-                                   String startId, String currentId) {
-        double totalDistance = 0;
-        String nodeId = currentId;
-
-        while (previous.containsKey(nodeId) && !nodeId.equals(startId)) {
-            String prevId = previous.get(nodeId);
-
-            TowerDto currentTower = towerMap.get(nodeId);
-            TowerDto prevTower = towerMap.get(prevId);
-
-            totalDistance += calculateDistance(
-                    prevTower.getLatitude(), prevTower.getLongitude(),
-                    currentTower.getLatitude(), currentTower.getLongitude()
-            );
-
-            nodeId = prevId;
-        }
-
-        return totalDistance;
-    }
-
-    private List<TowerDto> findPathByInterpolation(TowerDto start, TowerDto end, List<TowerDto> allTowers) {
+    private List<TowerDto> findPathByInterpolation(TowerDto start, TowerDto end, List<TowerDto> allTowers, TowerSpatialIndex index) {
         List<TowerDto> path = new ArrayList<>();
         path.add(start);
 
         // Calculate direct distance and bearing
-        double directDistance = calculateDistance(
+        double directDistance = GeoMath.distanceKm(
                 start.getLatitude(), start.getLongitude(),
                 end.getLatitude(), end.getLongitude()
         );
@@ -297,12 +187,12 @@ public class PathService {
         for (int i = 0; i < numSegments; i++) {
             // Find the next ideal point along the path
             double segmentDistance = Math.min(MAX_TOWER_DISTANCE * 0.7,
-                    calculateDistance(currentLat, currentLon, end.getLatitude(), end.getLongitude()));
+                    GeoMath.distanceKm(currentLat, currentLon, end.getLatitude(), end.getLongitude()));
 
             double[] nextPoint = calculateDestinationPoint(currentLat, currentLon, bearing, segmentDistance);
 
             // If we're close to the end, just add the end tower and break
-            double distToEnd = calculateDistance(nextPoint[0], nextPoint[1],
+            double distToEnd = GeoMath.distanceKm(nextPoint[0], nextPoint[1],
                     end.getLatitude(), end.getLongitude());
 
             if (distToEnd <= MAX_TOWER_DISTANCE) {
@@ -314,57 +204,52 @@ public class PathService {
             TowerDto bestTower = null;
             double bestScore = Double.MAX_VALUE;
 
-            for (TowerDto tower : allTowers) {
+            // Only the towers within range of our current position are candidates
+            for (int towerIndex : index.withinRadius(currentLat, currentLon, MAX_TOWER_DISTANCE)) {
+                TowerDto tower = allTowers.get(towerIndex);
+
                 // Skip towers we've already used
                 if (path.stream().anyMatch(t -> getTowerId(t).equals(getTowerId(tower)))) {
                     continue;
                 }
 
-                // Check if this tower is within range of our current position
-                double distFromCurrent = calculateDistance(
-                        currentLat, currentLon,
+                // Calculate how far this tower is from our ideal path
+                double distFromIdealPoint = GeoMath.distanceKm(
+                        nextPoint[0], nextPoint[1],
                         tower.getLatitude(), tower.getLongitude()
                 );
 
-                if (distFromCurrent <= MAX_TOWER_DISTANCE) {
-                    // Calculate how far this tower is from our ideal path
-                    double distFromIdealPoint = calculateDistance(
-                            nextPoint[0], nextPoint[1],
-                            tower.getLatitude(), tower.getLongitude()
-                    );
-
-                    // Calculate progress toward end
-                    double progressTowardEnd = calculateDistance(
-                            start.getLatitude(), start.getLongitude(),
-                            tower.getLatitude(), tower.getLongitude()
-                    );
-
-                    // Calculate deviation from ideal path
-                    double idealBearing = calculateBearing(
-                            start.getLatitude(), start.getLongitude(),
-                            end.getLatitude(), end.getLongitude()
-                    );
-
-                    double towerBearing = calculateBearing(
-                            start.getLatitude(), start.getLongitude(),
-                            tower.getLatitude(), tower.getLongitude()
-                    );
-
-                    double bearingDiff = Math.abs(idealBearing - towerBearing);
-                    if (bearingDiff > 180) bearingDiff = 360 - bearingDiff;
-
-                    // Create a composite score - prefer towers that are:
-                    // 1. Close to the ideal point
-                    // 2. Make good progress toward the end
-                    // 3. Don't deviate too much from the ideal bearing
-                    double score = (distFromIdealPoint * 0.5) +
-                            (bearingDiff * 0.3) -
-                            (progressTowardEnd * 0.2);
-
-                    if (score < bestScore) {
-                        bestScore = score;
-                        bestTower = tower;
-                    }
+                // Calculate progress toward end
+                double progressTowardEnd = GeoMath.distanceKm(
+                        start.getLatitude(), start.getLongitude(),
+                        tower.getLatitude(), tower.getLongitude()
+                );
+
+                // Calculate deviation from ideal path
+                double idealBearing = calculateBearing(
+                        start.getLatitude(), start.getLongitude(),
+                        end.getLatitude(), end.getLongitude()
+                );
+
+                double towerBearing = calculateBearing(
+                        start.getLatitude(), start.getLongitude(),
+                        tower.getLatitude(), tower.getLongitude()
+                );
+
+                double bearingDiff = Math.abs(idealBearing - towerBearing);
+                if (bearingDiff > 180) bearingDiff = 360 - bearingDiff;
+
+                // Create a composite score - prefer towers that are:
+                // 1. Close to the ideal point
+                // 2. Make good progress toward the end
+                // 3. Don't deviate too much from the ideal bearing
+                double score = (distFromIdealPoint * 0.5) +
+                        (bearingDiff * 0.3) -
+                        (progressTowardEnd * 0.2);
+
+                if (score < bestScore) {
+                    bestScore = score;
+                    bestTower = tower;
                 }
             }
 
@@ -376,7 +261,7 @@ public class PathService {
             } else {
                 // No suitable tower found, try a different approach
                 // Create a virtual tower at the ideal point
-                double distToNext = calculateDistance(
+                double distToNext = GeoMath.distanceKm(
                         currentLat, currentLon, nextPoint[0], nextPoint[1]
                 );
 
@@ -386,7 +271,7 @@ public class PathService {
                 } else {
                     // We're stuck, try to find any available tower that gets us closer to the end
                     TowerDto closestToEnd = findTowerClosestToEnd(
-                            currentLat, currentLon, end, allTowers, path);
+                            currentLat, currentLon, end, allTowers, index, path);
 
                     if (closestToEnd != null) {
                         path.add(closestToEnd);
@@ -401,7 +286,7 @@ public class PathService {
             }
 
             // Check if we can reach the end from our new position
-            double newDistToEnd = calculateDistance(
+            double newDistToEnd = GeoMath.distanceKm(
                     currentLat, currentLon,
                     end.getLatitude(), end.getLongitude()
             );
@@ -418,46 +303,42 @@ public class PathService {
         }
 
         // Verify the path has valid segments
-        path = validateAndFixPath(path, allTowers);
+        path = validateAndFixPath(path, allTowers, index);
 
         return path;
     }
 
     private TowerDto findTowerClosestToEnd(double currentLat, double currentLon,
-                                           TowerDto end, List<TowerDto> allTowers, List<TowerDto> existingPath) {
+                                           TowerDto end, List<TowerDto> allTowers, TowerSpatialIndex index,
+                                           List<TowerDto> existingPath) {
         TowerDto bestTower = null;
         double bestDistance = Double.MAX_VALUE;
 
-        for (TowerDto tower : allTowers) {
+        // Only the towers within range of current position are candidates
+        for (int towerIndex : index.withinRadius(currentLat, currentLon, MAX_TOWER_DISTANCE)) {
+            TowerDto tower = allTowers.get(towerIndex);
+
             // Skip if already in the path
             if (existingPath.stream().anyMatch(t -> getTowerId(t).equals(getTowerId(tower)))) {
                 continue;
             }
 
-            // Check if within range of current position
-            double distFromCurrent = calculateDistance(
-                    currentLat, currentLon,
-                    tower.getLatitude(), tower.getLongitude()
+            // Calculate distance to end
+            double distToEnd = GeoMath.distanceKm(
+                    tower.getLatitude(), tower.getLongitude(),
+                    end.getLatitude(), end.getLongitude()
             );
 
-            if (distFromCurrent <= MAX_TOWER_DISTANCE) {
-                // Calculate distance to end
-                double distToEnd = calculateDistance(
-                        tower.getLatitude(), tower.getLongitude(),
-                        end.getLatitude(), end.getLongitude()
-                );
-
-                if (distToEnd < bestDistance) {
-                    bestDistance = distToEnd;
-                    bestTower = tower;
-                }
+            if (distToEnd < bestDistance) {
+                bestDistance = distToEnd;
+                bestTower = tower;
             }
         }
 
         return bestTower;
     }
 
-    private List<TowerDto> validateAndFixPath(List<TowerDto> path, List<TowerDto> allTowers) {
+    private List<TowerDto> validateAndFixPath(List<TowerDto> path, List<TowerDto> allTowers, TowerSpatialIndex index) {
         if (path.size() <= 2) return path;
 
         List<TowerDto> validatedPath = new ArrayList<>();
@@ -468,7 +349,7 @@ public class PathService {
             TowerDto prevTower = validatedPath.get(validatedPath.size() - 1);
             TowerDto currentTower = path.get(i);
 
-            double distance = calculateDistance(
+            double distance = GeoMath.distanceKm(
                     prevTower.getLatitude(), prevTower.getLongitude(),
                     currentTower.getLatitude(), currentTower.getLongitude()
             );
@@ -478,7 +359,7 @@ public class PathService {
                 validatedPath.add(currentTower);
             } else {
                 // Segment is too long, need to insert towers
-                List<TowerDto> fixedSegment = fixSegment(prevTower, currentTower, allTowers, path);
+                List<TowerDto> fixedSegment = fixSegment(prevTower, currentTower, allTowers, index, path);
 
                 // Add all towers except the first one (which is already in validatedPath)
                 validatedPath.addAll(fixedSegment.subList(1, fixedSegment.size()));
@@ -488,13 +369,14 @@ public class PathService {
         return validatedPath;
     }
 
-    private List<TowerDto> fixSegment(TowerDto start, TowerDto end, List<TowerDto> allTowers, List<TowerDto> existingPath) {
+    private List<TowerDto> fixSegment(TowerDto start, TowerDto end, List<TowerDto> allTowers, TowerSpatialIndex index,
+                                      List<TowerDto> existingPath) {
         // Find intermediate towers for this segment
         List<TowerDto> segment = new ArrayList<>();
         segment.add(start);
 
         // Calculate direct distance
-        double directDistance = calculateDistance(
+        double directDistance = GeoMath.distanceKm(
                 start.getLatitude(), start.getLongitude(),
                 end.getLatitude(), end.getLongitude()
         );
@@ -502,24 +384,20 @@ public class PathService {
         // If we need multiple hops
         if (directDistance > MAX_TOWER_DISTANCE) {
             // Try to find a set of towers that create a valid path
-            List<TowerDto> candidates = allTowers.stream()
+            // Only the towers within range of the segment start are candidates
+            List<TowerDto> candidates = Arrays.stream(index.withinRadius(start.getLatitude(), start.getLongitude(), MAX_TOWER_DISTANCE))
+                    .mapToObj(allTowers::get)
                     .filter(t -> !existingPath.contains(t) || t.equals(start) || t.equals(end))
                     .filter(t -> {
-                        double distFromStart = calculateDistance(
-                                start.getLatitude(), start.getLongitude(),
-                                t.getLatitude(), t.getLongitude()
-                        );
-
-                        double distToEnd = calculateDistance(
+                        double distToEnd = GeoMath.distanceKm(
                                 t.getLatitude(), t.getLongitude(),
                                 end.getLatitude(), end.getLongitude()
                         );
 
-                        return distFromStart <= MAX_TOWER_DISTANCE &&
-                                distToEnd < directDistance; // Ensures we make progress
+                        return distToEnd < directDistance; // Ensures we make progress
                     })
                     .sorted(Comparator.comparingDouble(t ->
-                            calculateDistance(t.getLatitude(), t.getLongitude(),
+                            GeoMath.distanceKm(t.getLatitude(), t.getLongitude(),
                                     end.getLatitude(), end.getLongitude())))
                     .collect(Collectors.toList());
 
@@ -528,8 +406,8 @@ public class PathService {
                 TowerDto midTower = candidates.get(0);
 
                 // Recursively fix each sub-segment if needed
-                List<TowerDto> firstHalf = fixSegment(start, midTower, allTowers, existingPath);
-                List<TowerDto> secondHalf = fixSegment(midTower, end, allTowers, existingPath);
+                List<TowerDto> firstHalf = fixSegment(start, midTower, allTowers, index, existingPath);
+                List<TowerDto> secondHalf = fixSegment(midTower, end, allTowers, index, existingPath);
 
                 // Combine the segments (avoiding duplicate midTower)
                 segment = new ArrayList<>(firstHalf);
@@ -574,35 +452,6 @@ public class PathService {
                 tower.getLatitude() + ":" + tower.getLongitude();
     }
 
-    // Convert Tower entity to TowerDto
-    private TowerDto convertToDto(Tower tower) {
-        return TowerDto.builder()
-                .id(tower.getId())
-                .tawalId(tower.getTawalId())
-                .siteName(tower.getSiteName())
-                .latitude(tower.getLatitude())
-                .longitude(tower.getLongitude())
-                .totalHeight(tower.getTotalHeight())
-                .power(tower.getPower())
-                .clutter(tower.getClutter())
-                .build();
-    }
-
-    // Calculate distance between two coordinates using Haversine formula
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371; // Earth radius in kilometers
-
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c; // Distance in km
-    }
-
     // Calculate bearing (direction) from point 1 to point 2 in degrees
     private double calculateBearing(double lat1, double lon1, double lat2, double lon2) {
         lat1 = Math.toRadians(lat1);
@@ -1,14 +1,121 @@
 package com.example.atheer_ct.services;
 
+import com.example.atheer_ct.dto.TowerDto;
+import com.example.atheer_ct.entities.Tower;
+import com.example.atheer_ct.graph.GeoMath;
+import com.example.atheer_ct.graph.TowerKdTree;
+import com.example.atheer_ct.graph.TowerSnapshot;
 import com.example.atheer_ct.repo.TowerRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
 @Service
 public class TowerService {
+    private static final Logger log = LoggerFactory.getLogger(TowerService.class);
+
     private final TowerRepository towerRepository;
+    private final ForkJoinPool routingPool;
+    private final long hopMatrixMaxBytes;
+    private final boolean vectorized;
 
-    public TowerService(TowerRepository towerRepository) {
+    // Current snapshot, swapped as a whole whenever the towers are reloaded
+    private final AtomicReference<TowerSnapshot> snapshot = new AtomicReference<>();
+    private long lastVersion = 0;
+
+    public TowerService(TowerRepository towerRepository, ForkJoinPool routingPool,
+                        @Value("${atheer.routing.hop-matrix-max-bytes:67108864}") long hopMatrixMaxBytes,
+                        @Value("${atheer.routing.vectorized:false}") boolean vectorized) {
         this.towerRepository = towerRepository;
+        this.routingPool = routingPool;
+        this.hopMatrixMaxBytes = hopMatrixMaxBytes;
+        this.vectorized = vectorized;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        refreshSnapshot();
+    }
+
+    /**
+     * Returns the current tower snapshot, loading it on first use.
+     * Callers should read it once per request and use that instance throughout.
+     */
+    public TowerSnapshot getSnapshot() {
+        TowerSnapshot current = snapshot.get();
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot.get();
+                if (current == null) {
+                    current = refreshSnapshot();
+                }
+            }
+        }
+        return current;
     }
 
+    /**
+     * Reloads all towers from the database and atomically replaces the current snapshot.
+     * Requests already running keep using the snapshot they started with; the replaced
+     * snapshot's hierarchy builds that have not finished yet are cancelled.
+     */
+    public synchronized TowerSnapshot refreshSnapshot() {
+        List<Tower> dbTowers = towerRepository.findAll();
+        List<TowerDto> towers = new ArrayList<>(dbTowers.size());
+        for (Tower tower : dbTowers) {
+            towers.add(convertToDto(tower));
+        }
+
+        TowerSnapshot next = new TowerSnapshot(++lastVersion, towers, routingPool, hopMatrixMaxBytes, vectorized);
+        TowerSnapshot previous = snapshot.getAndSet(next);
+        if (previous != null) {
+            previous.retire();
+        }
+        log.info("Loaded tower snapshot v{} with {} towers{}{}", next.getVersion(), next.size(),
+                next.getHopMatrix() != null ? " (hop matrix enabled)" : "",
+                next.getGeoKernel().isVectorized() ? " (vectorized range scans)" : "");
+        return next;
+    }
+
+    /**
+     * Returns the k towers closest to the given point, nearest first, each with its distance in km.
+     */
+    public List<Map<String, Object>> findNearestTowers(double lat, double lon, int k) {
+        TowerSnapshot current = getSnapshot();
+        TowerKdTree kdTree = current.getKdTree();
+
+        List<Map<String, Object>> nearest = new ArrayList<>();
+        for (int i : kdTree.nearest(lat, lon, k)) {
+            TowerDto tower = current.getTowers().get(i);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("tower", tower);
+            entry.put("distanceKm", GeoMath.distanceKm(lat, lon, tower.getLatitude(), tower.getLongitude()));
+            nearest.add(entry);
+        }
+        return nearest;
+    }
+
+    // Convert Tower entity to TowerDto
+    private TowerDto convertToDto(Tower tower) {
+        return TowerDto.builder()
+                .id(tower.getId())
+                .tawalId(tower.getTawalId())
+                .siteName(tower.getSiteName())
+                .latitude(tower.getLatitude())
+                .longitude(tower.getLongitude())
+                .totalHeight(tower.getTotalHeight())
+                .power(tower.getPower())
+                .clutter(tower.getClutter())
+                .build();
+    }
 }
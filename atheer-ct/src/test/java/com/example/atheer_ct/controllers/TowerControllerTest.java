@@ -0,0 +1,67 @@
+package com.example.atheer_ct.controllers;
+
+import com.example.atheer_ct.dto.TowerDto;
+import com.example.atheer_ct.graph.TowerSnapshot;
+import com.example.atheer_ct.services.TowerService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TowerControllerTest {
+
+	@Test
+	void nearestTowersAcceptsKFromOneToAThousand() {
+		TowerController controller = controller(snapshot(new Random(41), 1200));
+
+		assertEquals(1, nearest(controller, 1).size());
+		assertEquals(5, nearest(controller, 5).size());
+		assertEquals(1000, nearest(controller, 1000).size());
+	}
+
+	@Test
+	void nearestTowersRejectsKOutsideTheBounds() {
+		TowerController controller = controller(snapshot(new Random(42), 50));
+
+		for (int k : new int[] {0, -1, 1001, Integer.MAX_VALUE}) {
+			ResponseEntity<?> response = controller.getNearestTowers(25.5, 49.5, k);
+			assertEquals(400, response.getStatusCode().value(), "k = " + k);
+			assertTrue(((Map<?, ?>) response.getBody()).containsKey("error"), "k = " + k);
+		}
+	}
+
+	private static List<?> nearest(TowerController controller, int k) {
+		ResponseEntity<?> response = controller.getNearestTowers(25.5, 49.5, k);
+		assertEquals(200, response.getStatusCode().value(), "k = " + k);
+		return (List<?>) response.getBody();
+	}
+
+	private static TowerController controller(TowerSnapshot snapshot) {
+		TowerService towerService = new TowerService(null, ForkJoinPool.commonPool(), 0, false) {
+			@Override
+			public TowerSnapshot getSnapshot() {
+				return snapshot;
+			}
+		};
+		return new TowerController(null, null, null, null, towerService);
+	}
+
+	private static TowerSnapshot snapshot(Random random, int count) {
+		List<TowerDto> towers = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			towers.add(TowerDto.builder()
+					.id((long) i)
+					.latitude(25 + random.nextDouble())
+					.longitude(49 + random.nextDouble())
+					.build());
+		}
+		return new TowerSnapshot(1, towers, ForkJoinPool.commonPool(), 0, false);
+	}
+}
@@ -0,0 +1,215 @@
+package com.example.atheer_ct.graph;
+
+import com.example.atheer_ct.dto.TowerDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static com.example.atheer_ct.graph.BackboneSelectionTest.at;
+import static com.example.atheer_ct.graph.BackboneSelectionTest.connected;
+import static com.example.atheer_ct.graph.BackboneSelectionTest.dests;
+import static com.example.atheer_ct.graph.BackboneSelectionTest.nodes;
+import static com.example.atheer_ct.graph.BackboneSelectionTest.snapshot;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BackboneImproverTest {
+
+	private static final long NO_DEADLINE = Long.MAX_VALUE / 2;
+
+	@Test
+	void pruneDropsATowerThatLinksNothing() {
+		// Tower 1 hangs off tower 0 and neither relays nor links the destination
+		List<TowerDto> towers = List.of(at(9, 0), at(9, 9));
+		QueryGraph query = new QueryGraph(snapshot(towers), List.of(at(0, 0), at(15, 0)));
+		int root = query.virtualNode(0);
+		BackboneImprover improver = improver(query, nodes(root, 0, 1));
+
+		assertTrue(improver.prune());
+		assertEquals(nodes(root, 0), improver.best());
+		assertEquals(1, improver.iterations());
+		assertFalse(improver.prune());
+	}
+
+	@Test
+	void exchangeReplacesADetourWithAShorterBridge() {
+		// Relays 0, 1 and 2 loop north to tower 3, which tower 4 reaches straight from the root
+		List<TowerDto> towers = List.of(at(5, 8), at(13, 12), at(21, 9), at(18, 0), at(9, 0));
+		QueryGraph query = new QueryGraph(snapshot(towers), List.of(at(0, 0), at(26, 0)));
+		int root = query.virtualNode(0);
+		BackboneImprover improver = improver(query, nodes(root, 0, 1, 2, 3));
+
+		assertFalse(improver.prune());
+		assertTrue(improver.exchangeKeyPath());
+		assertEquals(nodes(root, 3, 4), improver.best());
+		assertEquals(1, improver.iterations());
+	}
+
+	@Test
+	void reattachMovesALeafToACheaperTower() {
+		// Destination is reached through relay 0 and leaf 1, or through tower 2 alone
+		List<TowerDto> towers = List.of(at(-8, 5), at(-4, 13), at(3, 8));
+		QueryGraph query = new QueryGraph(snapshot(towers), List.of(at(0, 0), at(3, 16)));
+		int root = query.virtualNode(0);
+		BackboneImprover improver = improver(query, nodes(root, 0, 1));
+
+		assertFalse(improver.prune());
+		assertTrue(improver.reattachLeaf());
+		assertEquals(nodes(root, 2), improver.best());
+		assertEquals(1, improver.iterations());
+	}
+
+	@Test
+	void everyMoveKeepsTheBackboneValidAndShrinksIt() {
+		int[] moves = new int[3];
+		for (int seed = 0; seed < 30; seed++) {
+			Random random = new Random(seed);
+			QueryGraph query = randomQuery(random);
+			int root = query.virtualNode(0);
+			int[] dests = dests(query, query.nodeCount() - query.realCount() - 1);
+			BitSet start = padded(query, BackboneSelection.greedy(query, root, dests), random);
+			BitSet required = covered(query, start, dests);
+
+			List<Predicate<BackboneImprover>> steps = List.of(
+					BackboneImprover::prune, BackboneImprover::exchangeKeyPath, BackboneImprover::reattachLeaf);
+			for (int m = 0; m < steps.size(); m++) {
+				BackboneImprover improver = new BackboneImprover(query, root, dests, start, NO_DEADLINE);
+				BitSet before = improver.best();
+				// Each move on its own, repeated until it has nothing left to do
+				while (steps.get(m).test(improver)) {
+					BitSet after = improver.best();
+					String message = "seed " + seed + " move " + m;
+					assertTrue(after.cardinality() < before.cardinality(), message);
+					assertTrue(after.get(root), message);
+					assertTrue(connected(query, after), message + " disconnected the backbone");
+					assertTrue(covered(query, after, dests).equals(required), message + " lost a destination");
+					before = after;
+					moves[m]++;
+				}
+			}
+		}
+		for (int count : moves) {
+			assertTrue(count > 0, "prune, exchange, reattach: " + moves[0] + ", " + moves[1] + ", " + moves[2]);
+		}
+	}
+
+	@Test
+	void iterationsCountTheTowersDroppedByPruning() {
+		Random random = new Random(41);
+		QueryGraph query = randomQuery(random);
+		int root = query.virtualNode(0);
+		int[] dests = dests(query, query.nodeCount() - query.realCount() - 1);
+		BitSet start = padded(query, BackboneSelection.greedy(query, root, dests), random);
+
+		BackboneImprover improver = new BackboneImprover(query, root, dests, start, NO_DEADLINE);
+		assertTrue(improver.prune());
+		// Pruning accepts each tower it drops on its own
+		assertEquals(start.cardinality() - improver.best().cardinality(), improver.iterations());
+
+		BackboneImprover full = new BackboneImprover(query, root, dests, start, NO_DEADLINE);
+		full.run();
+		assertTrue(full.iterations() > 0);
+		assertTrue(full.iterations() <= start.cardinality() - full.best().cardinality());
+	}
+
+	@Test
+	void stoppedOrExpiredSearchKeepsTheStartingBackbone() {
+		Random random = new Random(42);
+		QueryGraph query = randomQuery(random);
+		int root = query.virtualNode(0);
+		int[] dests = dests(query, query.nodeCount() - query.realCount() - 1);
+		BitSet start = padded(query, BackboneSelection.greedy(query, root, dests), random);
+
+		BackboneImprover stopped = new BackboneImprover(query, root, dests, start, NO_DEADLINE);
+		stopped.stop();
+		stopped.run();
+		assertEquals(start, stopped.best());
+		assertEquals(0, stopped.iterations());
+
+		BackboneImprover expired = new BackboneImprover(query, root, dests, start, System.nanoTime() - 1);
+		expired.run();
+		assertEquals(start, expired.best());
+		assertEquals(0, expired.iterations());
+	}
+
+	@Test
+	void bestIsValidWheneverTheSearchIsStopped() throws InterruptedException {
+		Random random = new Random(43);
+		QueryGraph query = randomQuery(random);
+		int root = query.virtualNode(0);
+		int[] dests = dests(query, query.nodeCount() - query.realCount() - 1);
+		BitSet start = padded(query, BackboneSelection.greedy(query, root, dests), random);
+		BitSet required = covered(query, start, dests);
+
+		for (long delayMicros : new long[] {0, 50, 200, 1000}) {
+			BackboneImprover improver = new BackboneImprover(query, root, dests, start, NO_DEADLINE);
+			Thread search = new Thread(improver::run);
+			search.start();
+			Thread.sleep(delayMicros / 1000, (int) (delayMicros % 1000) * 1000);
+			improver.stop();
+			search.join();
+
+			BitSet best = improver.best();
+			assertTrue(best.cardinality() <= start.cardinality());
+			assertTrue(connected(query, best), "stopped after " + delayMicros + " us");
+			assertEquals(required, covered(query, best, dests), "stopped after " + delayMicros + " us");
+			// best() hands out a copy
+			best.clear();
+			assertFalse(improver.best().isEmpty());
+		}
+	}
+
+	private static BackboneImprover improver(QueryGraph query, BitSet backbone) {
+		return new BackboneImprover(query, query.virtualNode(0), dests(query, 1), backbone, NO_DEADLINE);
+	}
+
+	private static QueryGraph randomQuery(Random random) {
+		List<TowerDto> towers = new ArrayList<>();
+		for (int i = 0; i < 600; i++) {
+			towers.add(at(random.nextDouble() * 80 - 40, random.nextDouble() * 80 - 40));
+		}
+		List<TowerDto> virtual = new ArrayList<>();
+		virtual.add(at(0, 0));
+		int destCount = 3 + random.nextInt(12);
+		for (int d = 0; d < destCount; d++) {
+			virtual.add(at(random.nextDouble() * 70 - 35, random.nextDouble() * 70 - 35));
+		}
+		return new QueryGraph(snapshot(towers), virtual);
+	}
+
+	// The backbone plus a few towers linked to it, the kind of slack a greedy run leaves behind
+	private static BitSet padded(QueryGraph query, BitSet backbone, Random random) {
+		BitSet result = (BitSet) backbone.clone();
+		for (int added = 0, tries = 0; added < 8 && tries < 10_000; tries++) {
+			int tower = random.nextInt(query.realCount());
+			if (result.get(tower)) continue;
+			for (int node = result.nextSetBit(0); node >= 0; node = result.nextSetBit(node + 1)) {
+				if (query.inLinkRange(tower, node)) {
+					result.set(tower);
+					added++;
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	// Destinations (by position) linked to some node of the backbone
+	private static BitSet covered(QueryGraph query, BitSet backbone, int[] dests) {
+		BitSet result = new BitSet();
+		for (int d = 0; d < dests.length; d++) {
+			for (int node = backbone.nextSetBit(0); node >= 0; node = backbone.nextSetBit(node + 1)) {
+				if (query.inLinkRange(node, dests[d])) {
+					result.set(d);
+					break;
+				}
+			}
+		}
+		return result;
+	}
+}
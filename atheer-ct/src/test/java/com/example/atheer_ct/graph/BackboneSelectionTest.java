@@ -0,0 +1,211 @@
+package com.example.atheer_ct.graph;
+
+import com.example.atheer_ct.dto.TowerDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BackboneSelectionTest {
+
+	@Test
+	void equalGainsGoToTheLowestTower() {
+		// Towers 0..3 all link the POP. 1 and 3 reach two destinations each and share one of them;
+		// 0 and 2 reach one each
+		List<TowerDto> towers = List.of(at(8, -5), at(6, 7), at(-8, -5), at(-6, 7));
+		List<TowerDto> virtual = List.of(at(0, 0), at(0, 14), at(14, 12), at(-14, 12), at(16, -9), at(-16, -9));
+		QueryGraph query = new QueryGraph(snapshot(towers), virtual);
+		int[] dests = dests(query, virtual.size() - 1);
+
+		BackboneSelection selection = new BackboneSelection(query, dests);
+		selection.select(query.virtualNode(0));
+		assertEquals(1, selection.pollBestTower());
+		selection.select(1);
+		// Tower 3 lost the destination it shared with 1, and now ties with 0 and 2
+		assertEquals(0, selection.pollBestTower());
+
+		assertEquals(baseline(query, dests), BackboneSelection.greedy(query, query.virtualNode(0), dests));
+	}
+
+	@Test
+	void fallsBackToTheFrontierTowerClosestToADestination() {
+		// A chain east of the POP; the destination is out of range of every tower but the last
+		List<TowerDto> towers = List.of(at(9, 0), at(18, 0), at(27, 0), at(36, 0), at(8, 3));
+		List<TowerDto> virtual = List.of(at(0, 0), at(45, 0));
+		QueryGraph query = new QueryGraph(snapshot(towers), virtual);
+		int[] dests = dests(query, 1);
+
+		BitSet expected = nodes(query.virtualNode(0), 0, 1, 2, 3);
+		assertEquals(expected, baseline(query, dests));
+		assertEquals(expected, BackboneSelection.greedy(query, query.virtualNode(0), dests));
+	}
+
+	@Test
+	void stopsWhenADestinationCannotBeReached() {
+		List<TowerDto> towers = List.of(at(9, 0), at(18, 0), at(0, 9));
+		List<TowerDto> virtual = List.of(at(0, 0), at(25, 0), at(200, 200), at(0, 16));
+		QueryGraph query = new QueryGraph(snapshot(towers), virtual);
+		int[] dests = dests(query, 3);
+
+		// Every frontier tower is taken while no tower reaches the lost destination
+		BitSet expected = nodes(query.virtualNode(0), 0, 1, 2);
+		assertEquals(expected, baseline(query, dests));
+		assertEquals(expected, BackboneSelection.greedy(query, query.virtualNode(0), dests));
+	}
+
+	@Test
+	void matchesTheRescoringGreedyOnRandomLayouts() {
+		for (int seed = 0; seed < 40; seed++) {
+			Random random = new Random(seed);
+			// Sparse layouts leave rounds where no frontier tower reaches a destination
+			int count = 150 + random.nextInt(500);
+			List<TowerDto> towers = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				towers.add(at(random.nextDouble() * 120 - 60, random.nextDouble() * 120 - 60));
+			}
+			List<TowerDto> virtual = new ArrayList<>();
+			virtual.add(at(0, 0));
+			int destCount = 1 + random.nextInt(25);
+			for (int d = 0; d < destCount; d++) {
+				virtual.add(at(random.nextDouble() * 120 - 60, random.nextDouble() * 120 - 60));
+			}
+			QueryGraph query = new QueryGraph(snapshot(towers), virtual);
+			int[] dests = dests(query, destCount);
+
+			BitSet greedy = BackboneSelection.greedy(query, query.virtualNode(0), dests);
+			assertEquals(baseline(query, dests), greedy, "seed " + seed);
+			assertTrue(connected(query, greedy), "seed " + seed);
+		}
+	}
+
+	/**
+	 * The greedy as it was before the lazy queue: every round rescores every tower linked to the
+	 * backbone, with the same two fallbacks.
+	 */
+	private static BitSet baseline(QueryGraph query, int[] dests) {
+		int pop = query.virtualNode(0);
+		BitSet selected = new BitSet();
+		selected.set(pop);
+		BitSet connected = covered(query, pop, dests, new BitSet());
+
+		while (connected.cardinality() < dests.length) {
+			int best = -1;
+			int bestGain = 0;
+			int closest = -1;
+			double closestKm = Double.MAX_VALUE;
+			for (int tower = 0; tower < query.realCount(); tower++) {
+				if (selected.get(tower) || !linkedTo(query, tower, selected)) continue;
+				int gain = covered(query, tower, dests, connected).cardinality();
+				if (gain > bestGain) {
+					bestGain = gain;
+					best = tower;
+				}
+				for (int d = 0; d < dests.length; d++) {
+					if (connected.get(d)) continue;
+					double km = GeoMath.distanceKm(query.lat(tower), query.lon(tower),
+							query.lat(dests[d]), query.lon(dests[d]));
+					if (km < closestKm) {
+						closestKm = km;
+						closest = tower;
+					}
+				}
+			}
+			int pick = best >= 0 ? best : closest;
+			if (pick < 0) break;
+			selected.set(pick);
+			connected.or(covered(query, pick, dests, connected));
+		}
+		return selected;
+	}
+
+	// Destinations (by position) the node links to that are not in connected yet
+	private static BitSet covered(QueryGraph query, int node, int[] dests, BitSet connected) {
+		BitSet result = new BitSet();
+		for (int d = 0; d < dests.length; d++) {
+			if (!connected.get(d) && query.inLinkRange(node, dests[d])) result.set(d);
+		}
+		return result;
+	}
+
+	private static boolean linkedTo(QueryGraph query, int tower, BitSet selected) {
+		for (int node = selected.nextSetBit(0); node >= 0; node = selected.nextSetBit(node + 1)) {
+			if (query.inLinkRange(tower, node)) return true;
+		}
+		return false;
+	}
+
+	static boolean connected(QueryGraph query, BitSet nodes) {
+		int first = nodes.nextSetBit(0);
+		BitSet seen = new BitSet();
+		seen.set(first);
+		List<Integer> stack = new ArrayList<>(List.of(first));
+		while (!stack.isEmpty()) {
+			int node = stack.remove(stack.size() - 1);
+			for (int other = nodes.nextSetBit(0); other >= 0; other = nodes.nextSetBit(other + 1)) {
+				if (!seen.get(other) && query.inLinkRange(node, other)) {
+					seen.set(other);
+					stack.add(other);
+				}
+			}
+		}
+		return seen.equals(nodes);
+	}
+
+	static int[] dests(QueryGraph query, int count) {
+		int[] dests = new int[count];
+		for (int d = 0; d < count; d++) {
+			dests[d] = query.virtualNode(1 + d);
+		}
+		return dests;
+	}
+
+	static BitSet nodes(int... ids) {
+		BitSet set = new BitSet();
+		for (int id : ids) {
+			set.set(id);
+		}
+		return set;
+	}
+
+	static TowerSnapshot snapshot(List<TowerDto> towers) {
+		List<TowerDto> numbered = new ArrayList<>();
+		for (int i = 0; i < towers.size(); i++) {
+			numbered.add(TowerDto.builder()
+					.id((long) i)
+					.latitude(towers.get(i).getLatitude())
+					.longitude(towers.get(i).getLongitude())
+					.build());
+		}
+		return new TowerSnapshot(1, numbered, ForkJoinPool.commonPool(), 0, false);
+	}
+
+	// count towers spread evenly over the square spanDeg degrees north and east of 25N 49E
+	static TowerSnapshot randomSnapshot(Random random, int count, double spanDeg) {
+		List<TowerDto> towers = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			towers.add(randomPoint(random, spanDeg));
+		}
+		return snapshot(towers);
+	}
+
+	static TowerDto randomPoint(Random random, double spanDeg) {
+		return TowerDto.builder()
+				.latitude(25 + random.nextDouble() * spanDeg)
+				.longitude(49 + random.nextDouble() * spanDeg)
+				.build();
+	}
+
+	// Point the given km east and north of 25N 49E
+	static TowerDto at(double eastKm, double northKm) {
+		return TowerDto.builder()
+				.latitude(25 + northKm / GeoMath.KM_PER_DEGREE)
+				.longitude(49 + eastKm / (GeoMath.KM_PER_DEGREE * Math.cos(Math.toRadians(25))))
+				.build();
+	}
+}
@@ -0,0 +1,88 @@
+package com.example.atheer_ct.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static com.example.atheer_ct.graph.BackboneSelectionTest.randomPoint;
+import static com.example.atheer_ct.graph.BackboneSelectionTest.randomSnapshot;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContractionHierarchyTest {
+
+	@Test
+	void distanceQueriesMatchDijkstra() {
+		Random random = new Random(5);
+		TowerSnapshot snapshot = snapshot(random);
+		ContractionHierarchy hierarchy = snapshot.getHierarchy(ContractionHierarchy.Metric.DISTANCE);
+		assertNotNull(hierarchy);
+
+		for (int q = 0; q < 300; q++) {
+			QueryGraph query = new QueryGraph(snapshot, List.of(randomPoint(random, 1.6), randomPoint(random, 1.6)));
+			int start = q % 3 == 0 ? random.nextInt(snapshot.size()) : query.virtualNode(0);
+			int end = q % 2 == 0 ? random.nextInt(snapshot.size()) : query.virtualNode(1);
+
+			// The hierarchy never passes through a virtual node other than the two ends
+			BitSet allowed = new BitSet();
+			allowed.set(0, snapshot.size());
+			allowed.set(start);
+			allowed.set(end);
+
+			int[] expected = DijkstraSearch.findPath(query, start, end, allowed);
+			int[] actual = hierarchy.findPath(query, start, end);
+			assertEquals(expected.length == 0, actual.length == 0, "reachability of query " + q);
+			if (expected.length == 0) continue;
+			assertEquals(start, actual[0]);
+			assertEquals(end, actual[actual.length - 1]);
+			assertEquals(length(query, expected), length(query, actual), 1e-9, "length of query " + q);
+		}
+	}
+
+	@Test
+	void hopQueriesMatchBreadthFirstSearch() {
+		Random random = new Random(8);
+		TowerSnapshot snapshot = snapshot(random);
+		ContractionHierarchy hierarchy = snapshot.getHierarchy(ContractionHierarchy.Metric.HOPS);
+		assertNotNull(hierarchy);
+
+		for (int q = 0; q < 300; q++) {
+			QueryGraph query = new QueryGraph(snapshot, List.of(randomPoint(random, 1.6), randomPoint(random, 1.6)));
+			int start = query.virtualNode(0);
+			int end = query.virtualNode(1);
+
+			int[] expected = BidirectionalBfs.findPath(query, start, end);
+			int[] actual = hierarchy.findPath(query, start, end);
+			assertEquals(expected.length, actual.length, "hops of query " + q);
+			if (actual.length > 0) {
+				length(query, actual); // every step is a link
+			}
+		}
+	}
+
+	// Sparse enough around the edges that some queries have no path
+	private static TowerSnapshot snapshot(Random random) {
+		TowerSnapshot snapshot = randomSnapshot(random, 1500, 1.6);
+		snapshot.hierarchiesReady().join();
+		return snapshot;
+	}
+
+	// Sum of the link lengths along the path, failing when two consecutive nodes are not linked
+	static double length(QueryGraph query, int[] path) {
+		QueryGraph.Cursor cursor = query.cursor();
+		double total = 0;
+		for (int i = 1; i < path.length; i++) {
+			double link = Double.POSITIVE_INFINITY;
+			cursor.reset(path[i - 1]);
+			while (cursor.next()) {
+				if (cursor.target() == path[i]) link = Math.min(link, cursor.length());
+			}
+			assertTrue(link < Double.POSITIVE_INFINITY, "no link between " + path[i - 1] + " and " + path[i]);
+			total += link;
+		}
+		return total;
+	}
+}
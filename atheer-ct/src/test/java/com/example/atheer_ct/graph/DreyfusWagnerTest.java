@@ -0,0 +1,227 @@
+package com.example.atheer_ct.graph;
+
+import com.example.atheer_ct.dto.TowerDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.example.atheer_ct.graph.BackboneSelectionTest.at;
+import static com.example.atheer_ct.graph.BackboneSelectionTest.connected;
+import static com.example.atheer_ct.graph.BackboneSelectionTest.dests;
+import static com.example.atheer_ct.graph.BackboneSelectionTest.nodes;
+import static com.example.atheer_ct.graph.BackboneSelectionTest.snapshot;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DreyfusWagnerTest {
+
+	private static final ForkJoinPool POOL = ForkJoinPool.commonPool();
+
+	@Test
+	void branchesAtASteinerTower() {
+		// Chain east of the root that forks at tower 1 towards two terminals; tower 4 is a detour
+		List<TowerDto> towers = List.of(at(9, 0), at(18, 0), at(26, 5), at(26, -5), at(9, 9));
+		List<TowerDto> virtual = List.of(at(0, 0), at(33, 9), at(33, -9));
+		QueryGraph query = new QueryGraph(snapshot(towers), virtual);
+		int root = query.virtualNode(0);
+
+		assertEquals(nodes(root, 0, 1, 2, 3), DreyfusWagner.solve(query, root, dests(query, 2), Integer.MAX_VALUE, POOL));
+	}
+
+	@Test
+	void tightBoundKeepsAPathShapedTree() {
+		// One terminal: the optimal tree is a single path, so its towers sit exactly on the bound
+		List<TowerDto> towers = List.of(at(9, 0), at(18, 0), at(27, 0), at(18, 8));
+		List<TowerDto> virtual = List.of(at(0, 0), at(35, 0));
+		QueryGraph query = new QueryGraph(snapshot(towers), virtual);
+		int root = query.virtualNode(0);
+		int[] dests = dests(query, 1);
+
+		assertEquals(nodes(root, 0, 1, 2), DreyfusWagner.solvePruned(query, root, dests, 3, POOL));
+		assertNull(DreyfusWagner.solvePruned(query, root, dests, 2, POOL));
+		// solve falls back to the unbounded table when the bound was wrong
+		assertEquals(nodes(root, 0, 1, 2), DreyfusWagner.solve(query, root, dests, 2, POOL));
+	}
+
+	@Test
+	void terminalsInRangeOfTheRootNeedNoTowers() {
+		List<TowerDto> towers = List.of(at(9, 0), at(-9, 0));
+		List<TowerDto> virtual = List.of(at(0, 0), at(5, 5), at(-5, -5), at(0, 8));
+		QueryGraph query = new QueryGraph(snapshot(towers), virtual);
+		int root = query.virtualNode(0);
+
+		assertEquals(nodes(root), DreyfusWagner.solve(query, root, dests(query, 3), Integer.MAX_VALUE, POOL));
+	}
+
+	@Test
+	void unlinkableTerminalGivesNoTree() {
+		List<TowerDto> towers = List.of(at(9, 0), at(18, 0));
+		List<TowerDto> virtual = List.of(at(0, 0), at(25, 0), at(200, 200));
+		QueryGraph query = new QueryGraph(snapshot(towers), virtual);
+
+		assertNull(DreyfusWagner.solve(query, query.virtualNode(0), dests(query, 2), Integer.MAX_VALUE, POOL));
+	}
+
+	@Test
+	void matchesBruteForceOnSmallLayouts() {
+		for (int seed = 0; seed < 60; seed++) {
+			Random random = new Random(seed);
+			// Each tower links an earlier one and each terminal some tower, so a tree always exists
+			double[][] spots = new double[8 + random.nextInt(9)][];
+			spots[0] = new double[] {0, 0};
+			for (int i = 1; i < spots.length; i++) {
+				spots[i] = near(random, spots[random.nextInt(i)], 5, 9.5);
+			}
+			List<TowerDto> towers = new ArrayList<>();
+			for (double[] spot : spots) {
+				towers.add(at(spot[0], spot[1]));
+			}
+			List<TowerDto> virtual = new ArrayList<>();
+			double[] rootSpot = near(random, spots[0], 2, 9);
+			virtual.add(at(rootSpot[0], rootSpot[1]));
+			int terminals = 1 + random.nextInt(5);
+			for (int t = 0; t < terminals; t++) {
+				double[] spot = near(random, spots[random.nextInt(spots.length)], 4, 9.5);
+				virtual.add(at(spot[0], spot[1]));
+			}
+			QueryGraph query = new QueryGraph(snapshot(towers), virtual);
+			int root = query.virtualNode(0);
+			int[] dests = dests(query, terminals);
+
+			int expected = bruteForce(query, root, dests);
+			BitSet tree = DreyfusWagner.solve(query, root, dests, Integer.MAX_VALUE, POOL);
+			assertValidTree(query, root, dests, tree, "seed " + seed);
+			assertEquals(expected, tree.cardinality() - 1, "seed " + seed);
+
+			// The pruning rule keeps every tower of an optimal tree when the bound is exactly its size
+			BitSet bounded = DreyfusWagner.solvePruned(query, root, dests, expected, POOL);
+			assertValidTree(query, root, dests, bounded, "seed " + seed);
+			assertEquals(expected, bounded.cardinality() - 1, "seed " + seed);
+		}
+	}
+
+	@Test
+	void pruningToTheGreedyBoundFitsWhatTheFullTableCannot() {
+		Random random = new Random(12);
+		List<TowerDto> towers = new ArrayList<>();
+		for (int i = 0; i < 2500; i++) {
+			towers.add(at(random.nextDouble() * 140 - 70, random.nextDouble() * 140 - 70));
+		}
+		List<TowerDto> virtual = new ArrayList<>();
+		virtual.add(at(0, 0));
+		for (int t = 0; t < DreyfusWagner.MAX_TERMINALS; t++) {
+			virtual.add(at(random.nextDouble() * 60 - 30, random.nextDouble() * 60 - 30));
+		}
+		QueryGraph query = new QueryGraph(snapshot(towers), virtual);
+		int root = query.virtualNode(0);
+		int[] dests = dests(query, DreyfusWagner.MAX_TERMINALS);
+
+		// 4096 subsets times every tower is more than the table may hold
+		assertThrows(IllegalArgumentException.class,
+				() -> DreyfusWagner.solve(query, root, dests, Integer.MAX_VALUE, POOL));
+
+		BitSet greedy = BackboneSelection.greedy(query, root, dests);
+		BitSet exact = DreyfusWagner.solve(query, root, dests, greedy.cardinality() - 1, POOL);
+		assertValidTree(query, root, dests, exact, "exact");
+		assertTrue(exact.cardinality() <= greedy.cardinality(), exact.cardinality() + " > " + greedy.cardinality());
+
+		// The optimum as its own bound still fits and is found again
+		BitSet tight = DreyfusWagner.solve(query, root, dests, exact.cardinality() - 1, POOL);
+		assertEquals(exact.cardinality(), tight.cardinality());
+	}
+
+	@Test
+	void rejectsTooManyTerminals() {
+		List<TowerDto> virtual = new ArrayList<>();
+		for (int t = 0; t <= DreyfusWagner.MAX_TERMINALS + 1; t++) {
+			virtual.add(at(t, 0));
+		}
+		QueryGraph query = new QueryGraph(snapshot(List.of(at(0, 5))), virtual);
+
+		assertThrows(IllegalArgumentException.class, () -> DreyfusWagner.solve(query, query.virtualNode(0),
+				dests(query, DreyfusWagner.MAX_TERMINALS + 1), Integer.MAX_VALUE, POOL));
+	}
+
+	@Test
+	void neverUsesMoreTowersThanTheGreedy() {
+		for (int seed = 0; seed < 20; seed++) {
+			Random random = new Random(100 + seed);
+			List<TowerDto> towers = new ArrayList<>();
+			for (int i = 0; i < 400; i++) {
+				towers.add(at(random.nextDouble() * 80 - 40, random.nextDouble() * 80 - 40));
+			}
+			List<TowerDto> virtual = new ArrayList<>();
+			virtual.add(at(0, 0));
+			int terminals = 2 + random.nextInt(7);
+			for (int t = 0; t < terminals; t++) {
+				virtual.add(at(random.nextDouble() * 70 - 35, random.nextDouble() * 70 - 35));
+			}
+			QueryGraph query = new QueryGraph(snapshot(towers), virtual);
+			int root = query.virtualNode(0);
+			int[] dests = dests(query, terminals);
+
+			// As POPService calls it: bounded by the greedy tower count
+			BitSet greedy = BackboneSelection.greedy(query, root, dests);
+			BitSet exact = DreyfusWagner.solve(query, root, dests, greedy.cardinality() - 1, POOL);
+			if (exact == null) continue;
+			assertValidTree(query, root, dests, exact, "seed " + seed);
+			assertTrue(exact.cardinality() <= greedy.cardinality(), "seed " + seed);
+		}
+	}
+
+	// Root plus towers, connected through links among themselves, with every terminal linked to one of them
+	private static void assertValidTree(QueryGraph query, int root, int[] dests, BitSet tree, String message) {
+		assertTrue(tree != null && tree.get(root), message);
+		assertTrue(connected(query, tree), message + " is not connected");
+		for (int d : dests) {
+			boolean linked = false;
+			for (int node = tree.nextSetBit(0); node >= 0 && !linked; node = tree.nextSetBit(node + 1)) {
+				linked = query.inLinkRange(node, d);
+			}
+			assertTrue(linked, message + " misses a terminal");
+		}
+		for (int node = tree.nextSetBit(0); node >= 0; node = tree.nextSetBit(node + 1)) {
+			assertTrue(node == root || !query.isVirtual(node), message + " relays through a terminal");
+		}
+	}
+
+	// Point between min and max km from the given east/north offsets, in a random direction
+	private static double[] near(Random random, double[] spot, double minKm, double maxKm) {
+		double angle = random.nextDouble() * 2 * Math.PI;
+		double km = minKm + random.nextDouble() * (maxKm - minKm);
+		return new double[] {spot[0] + km * Math.cos(angle), spot[1] + km * Math.sin(angle)};
+	}
+
+	/**
+	 * Fewest real towers in a valid tree, trying every subset of towers by size; -1 when none works.
+	 */
+	private static int bruteForce(QueryGraph query, int root, int[] dests) {
+		int n = query.realCount();
+		for (int size = 0; size <= n; size++) {
+			for (int mask = 0; mask < 1 << n; mask++) {
+				if (Integer.bitCount(mask) != size) continue;
+				BitSet tree = BitSet.valueOf(new long[] {mask});
+				tree.set(root);
+				if (connected(query, tree) && linksAll(query, tree, dests)) return size;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean linksAll(QueryGraph query, BitSet tree, int[] dests) {
+		for (int d : dests) {
+			boolean linked = false;
+			for (int node = tree.nextSetBit(0); node >= 0 && !linked; node = tree.nextSetBit(node + 1)) {
+				linked = query.inLinkRange(node, d);
+			}
+			if (!linked) return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,89 @@
+package com.example.atheer_ct.graph;
+
+import com.example.atheer_ct.dto.TowerDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Link-range scan over every tower: per-pair Haversine against the unit-vector dot product,
+ * scalar and on the Vector API.
+ * Not part of the test suite; run with
+ * {@code mvn -Pvector test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath com.example.atheer_ct.graph.GeoKernelBenchmark"}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class GeoKernelBenchmark {
+
+	@Param({"1000", "10000", "100000"})
+	int towerCount;
+
+	private TowerStore store;
+	private GeoKernel kernel;
+	private GeoKernel vectorizedKernel;
+	private double queryLat;
+	private double queryLon;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(1);
+		List<TowerDto> towers = new ArrayList<>();
+		for (int i = 0; i < towerCount; i++) {
+			towers.add(TowerDto.builder()
+					.latitude(25 + random.nextDouble() * 2)
+					.longitude(49 + random.nextDouble() * 2)
+					.build());
+		}
+		store = new TowerStore(towers);
+		kernel = new GeoKernel(store, false);
+		vectorizedKernel = new GeoKernel(store, true);
+		queryLat = 26;
+		queryLon = 50;
+	}
+
+	@Benchmark
+	public int haversineScan() {
+		int inRange = 0;
+		for (int i = 0; i < store.size(); i++) {
+			if (GeoMath.distanceKm(queryLat, queryLon, store.lat(i), store.lon(i)) <= TowerGraph.MAX_TOWER_DISTANCE) {
+				inRange++;
+			}
+		}
+		return inRange;
+	}
+
+	@Benchmark
+	public int dotProductScan() {
+		return kernel.inLinkRange(GeoKernel.unitVector(queryLat, queryLon)).length;
+	}
+
+	@Benchmark
+	public int vectorizedDotProductScan() {
+		return vectorizedKernel.inLinkRange(GeoKernel.unitVector(queryLat, queryLon)).length;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(GeoKernelBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,119 @@
+package com.example.atheer_ct.graph;
+
+import com.example.atheer_ct.dto.TowerDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class GeoKernelTest {
+
+	// Pairs closer than this to the link range may legitimately fall either way
+	private static final double THRESHOLD_SLACK_KM = 1e-6;
+
+	@Test
+	void rangeCheckAgreesWithHaversine() {
+		Random random = new Random(42);
+		int checked = 0;
+		for (int i = 0; i < 200_000; i++) {
+			double lat1 = -80 + random.nextDouble() * 160;
+			double lon1 = -180 + random.nextDouble() * 360;
+			double[] p2 = destination(lat1, lon1, random.nextDouble() * 360, random.nextDouble() * 25);
+
+			double km = GeoMath.distanceKm(lat1, lon1, p2[0], p2[1]);
+			if (Math.abs(km - TowerGraph.MAX_TOWER_DISTANCE) < THRESHOLD_SLACK_KM) continue;
+
+			assertEquals(km <= TowerGraph.MAX_TOWER_DISTANCE, GeoKernel.inLinkRange(lat1, lon1, p2[0], p2[1]),
+					"pair at " + km + " km");
+			checked++;
+		}
+		assertTrue(checked > 199_000);
+	}
+
+	@Test
+	void rangeCheckResolvesCentimetresAtTheThreshold() {
+		Random random = new Random(7);
+		for (int i = 0; i < 10_000; i++) {
+			double lat = 16 + random.nextDouble() * 16; // Saudi Arabia
+			double lon = 36 + random.nextDouble() * 20;
+			double bearing = random.nextDouble() * 360;
+
+			double[] inside = destination(lat, lon, bearing, TowerGraph.MAX_TOWER_DISTANCE - 1e-5);
+			double[] outside = destination(lat, lon, bearing, TowerGraph.MAX_TOWER_DISTANCE + 1e-5);
+			assertTrue(GeoKernel.inLinkRange(lat, lon, inside[0], inside[1]));
+			assertFalse(GeoKernel.inLinkRange(lat, lon, outside[0], outside[1]));
+		}
+	}
+
+	@Test
+	void spatialIndexMatchesBruteForceHaversine() {
+		Random random = new Random(3);
+		List<TowerDto> towers = new ArrayList<>();
+		for (int i = 0; i < 3000; i++) {
+			towers.add(TowerDto.builder()
+					.id((long) i)
+					.latitude(25 + random.nextDouble() * 1.5)
+					.longitude(49 + random.nextDouble() * 1.5)
+					.build());
+		}
+		GeoKernel kernel = new GeoKernel(new TowerStore(towers));
+		TowerSpatialIndex index = TowerSpatialIndex.build(towers, kernel, TowerGraph.MAX_TOWER_DISTANCE);
+
+		for (int q = 0; q < 500; q++) {
+			double lat = 25 + random.nextDouble() * 1.5;
+			double lon = 49 + random.nextDouble() * 1.5;
+			int[] expected = towers.stream()
+					.filter(t -> GeoMath.distanceKm(lat, lon, t.getLatitude(), t.getLongitude()) <= TowerGraph.MAX_TOWER_DISTANCE)
+					.mapToInt(t -> t.getId().intValue())
+					.toArray();
+
+			assertArrayEquals(expected, index.withinRadius(lat, lon, TowerGraph.MAX_TOWER_DISTANCE));
+			assertArrayEquals(expected, kernel.inLinkRange(GeoKernel.unitVector(lat, lon)));
+			assertEquals(expected.length > 0, index.anyWithin(lat, lon, TowerGraph.MAX_TOWER_DISTANCE));
+		}
+	}
+
+	@Test
+	void vectorizedScanMatchesScalarScan() {
+		Random random = new Random(11);
+		List<TowerDto> towers = new ArrayList<>();
+		for (int i = 0; i < 20_000; i++) {
+			towers.add(TowerDto.builder()
+					.latitude(25 + random.nextDouble() * 0.8)
+					.longitude(49 + random.nextDouble() * 0.8)
+					.build());
+		}
+		TowerStore store = new TowerStore(towers);
+		GeoKernel scalar = new GeoKernel(store, false);
+		GeoKernel vectorized = new GeoKernel(store, true);
+		assumeTrue(vectorized.isVectorized(), "needs mvn -Pvector");
+		TowerSpatialIndex scalarIndex = TowerSpatialIndex.build(towers, scalar, TowerGraph.MAX_TOWER_DISTANCE);
+		TowerSpatialIndex vectorizedIndex = TowerSpatialIndex.build(towers, vectorized, TowerGraph.MAX_TOWER_DISTANCE);
+
+		for (int q = 0; q < 200; q++) {
+			double lat = 25 + random.nextDouble() * 0.8;
+			double lon = 49 + random.nextDouble() * 0.8;
+			double[] point = GeoKernel.unitVector(lat, lon);
+			assertArrayEquals(scalar.inLinkRange(point), vectorized.inLinkRange(point));
+			assertArrayEquals(scalarIndex.withinRadius(lat, lon, 5), vectorizedIndex.withinRadius(lat, lon, 5));
+		}
+	}
+
+	// Point reached from (lat, lon) after km along the great circle with the given initial bearing
+	private static double[] destination(double lat, double lon, double bearing, double km) {
+		double phi = Math.toRadians(lat);
+		double theta = Math.toRadians(bearing);
+		double delta = km / GeoMath.EARTH_RADIUS_KM;
+		double phi2 = Math.asin(Math.sin(phi) * Math.cos(delta) + Math.cos(phi) * Math.sin(delta) * Math.cos(theta));
+		double lambda2 = Math.toRadians(lon) + Math.atan2(Math.sin(theta) * Math.sin(delta) * Math.cos(phi),
+				Math.cos(delta) - Math.sin(phi) * Math.sin(phi2));
+		return new double[] {Math.toDegrees(phi2), Math.toDegrees(lambda2)};
+	}
+}
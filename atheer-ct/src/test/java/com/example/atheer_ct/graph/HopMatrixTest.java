@@ -0,0 +1,139 @@
+package com.example.atheer_ct.graph;
+
+import com.example.atheer_ct.dto.TowerDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.example.atheer_ct.graph.BackboneSelectionTest.at;
+import static com.example.atheer_ct.graph.BackboneSelectionTest.snapshot;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HopMatrixTest {
+
+	private static final ForkJoinPool POOL = ForkJoinPool.commonPool();
+
+	@Test
+	void towerPairsMatchBreadthFirstSearch() {
+		Random random = new Random(21);
+		// Sparse enough to leave some pairs unreachable
+		TowerSnapshot snapshot = snapshot(randomTowers(random, 250, 120));
+		HopMatrix matrix = HopMatrix.build(snapshot.getGraph(), POOL, Long.MAX_VALUE);
+		assertNotNull(matrix);
+		QueryGraph query = new QueryGraph(snapshot, List.of());
+
+		int unreachable = 0;
+		for (int q = 0; q < 2000; q++) {
+			int a = random.nextInt(snapshot.size());
+			int b = random.nextInt(snapshot.size());
+			int[] expected = BidirectionalBfs.findPath(query, a, b);
+			int[] path = matrix.findPath(query, a, b);
+			if (expected.length == 0) {
+				assertEquals(HopMatrix.UNREACHABLE, matrix.hops(a, b));
+				assertEquals(0, path.length);
+				unreachable++;
+				continue;
+			}
+			assertEquals(expected.length - 1, matrix.hops(a, b), a + " -> " + b);
+			assertEquals(matrix.hops(a, b), matrix.hops(b, a));
+			assertLinkedPath(query, a, b, expected.length, path);
+		}
+		assertTrue(unreachable > 0 && unreachable < 2000, unreachable + " unreachable pairs");
+	}
+
+	@Test
+	void virtualEndpointsMatchBreadthFirstSearch() {
+		Random random = new Random(22);
+		TowerSnapshot snapshot = snapshot(randomTowers(random, 1500, 120));
+		HopMatrix matrix = HopMatrix.build(snapshot.getGraph(), POOL, Long.MAX_VALUE);
+
+		for (int q = 0; q < 300; q++) {
+			TowerDto from = at(random.nextDouble() * 120 - 60, random.nextDouble() * 120 - 60);
+			TowerDto to = at(random.nextDouble() * 120 - 60, random.nextDouble() * 120 - 60);
+			QueryGraph query = new QueryGraph(snapshot, List.of(from, to));
+			int start = query.virtualNode(0);
+			int end = query.virtualNode(1);
+			int tower = random.nextInt(snapshot.size());
+
+			// virtual to virtual, virtual to tower and tower to virtual
+			int[][] pairs = {{start, end}, {start, tower}, {tower, end}};
+			for (int[] pair : pairs) {
+				int[] expected = BidirectionalBfs.findPath(query, pair[0], pair[1]);
+				int[] path = matrix.findPath(query, pair[0], pair[1]);
+				if (expected.length == 0) {
+					assertEquals(0, path.length, "query " + q);
+				} else {
+					assertLinkedPath(query, pair[0], pair[1], expected.length, path);
+				}
+			}
+		}
+	}
+
+	@Test
+	void linkedVirtualEndsNeedNoTowers() {
+		List<TowerDto> towers = List.of(at(0, 5), at(5, 5), at(10, 5));
+		TowerSnapshot snapshot = snapshot(towers);
+		HopMatrix matrix = HopMatrix.build(snapshot.getGraph(), POOL, Long.MAX_VALUE);
+		QueryGraph query = new QueryGraph(snapshot, List.of(at(0, 0), at(9, 0)));
+		int start = query.virtualNode(0);
+		int end = query.virtualNode(1);
+
+		assertArrayEquals(new int[] {start, end}, matrix.findPath(query, start, end));
+		assertArrayEquals(BidirectionalBfs.findPath(query, start, end), matrix.findPath(query, start, end));
+		assertArrayEquals(new int[] {start}, matrix.findPath(query, start, start));
+	}
+
+	@Test
+	void skippedWhenOverTheMemoryBudget() {
+		TowerSnapshot snapshot = snapshot(randomTowers(new Random(23), 300, 60));
+		TowerGraph graph = snapshot.getGraph();
+		long needed = HopMatrix.bytesFor(graph.nodeCount());
+
+		assertNull(HopMatrix.build(graph, POOL, needed - 1));
+		assertNotNull(HopMatrix.build(graph, POOL, needed));
+	}
+
+	@Test
+	void skippedWhenAPathIsLongerThan254Hops() {
+		// A straight chain 9 km apart: n towers have a shortest path of n - 1 hops end to end
+		HopMatrix fits = HopMatrix.build(chain(255).getGraph(), POOL, Long.MAX_VALUE);
+		assertNotNull(fits);
+		assertEquals(254, fits.hops(0, 254));
+		assertEquals(254, fits.hops(254, 0));
+
+		assertNull(HopMatrix.build(chain(256).getGraph(), POOL, Long.MAX_VALUE));
+	}
+
+	private static void assertLinkedPath(QueryGraph query, int start, int end, int length, int[] path) {
+		String message = start + " -> " + end;
+		assertEquals(length, path.length, message);
+		assertEquals(start, path[0], message);
+		assertEquals(end, path[path.length - 1], message);
+		for (int i = 1; i < path.length; i++) {
+			assertTrue(query.inLinkRange(path[i - 1], path[i]), message + " step " + i);
+		}
+	}
+
+	private static List<TowerDto> randomTowers(Random random, int count, double spanKm) {
+		List<TowerDto> towers = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			towers.add(at(random.nextDouble() * spanKm - spanKm / 2, random.nextDouble() * spanKm - spanKm / 2));
+		}
+		return towers;
+	}
+
+	private static TowerSnapshot chain(int count) {
+		List<TowerDto> towers = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			towers.add(at(0, 9 * i));
+		}
+		return snapshot(towers);
+	}
+}
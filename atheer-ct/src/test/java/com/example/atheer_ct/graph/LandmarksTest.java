@@ -0,0 +1,78 @@
+package com.example.atheer_ct.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static com.example.atheer_ct.graph.BackboneSelectionTest.randomPoint;
+import static com.example.atheer_ct.graph.BackboneSelectionTest.randomSnapshot;
+import static com.example.atheer_ct.graph.ContractionHierarchyTest.length;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LandmarksTest {
+
+	@Test
+	void boundNeverExceedsTheShortestDistance() {
+		Random random = new Random(51);
+		int tighter = 0;
+		int checked = 0;
+		for (int count : new int[] {600, 1500}) {
+			TowerSnapshot snapshot = randomSnapshot(random, count, 1.6);
+			Landmarks landmarks = snapshot.getLandmarks();
+			assertEquals(Landmarks.DEFAULT_COUNT, landmarks.count());
+
+			for (int q = 0; q < 40; q++) {
+				QueryGraph query = new QueryGraph(snapshot, List.of(randomPoint(random, 1.6), randomPoint(random, 1.6)));
+				int end = q % 2 == 0 ? random.nextInt(snapshot.size()) : query.virtualNode(1);
+				Landmarks.Target target = landmarks.target(query, end);
+
+				// The bound covers paths into the end that do not pass through the other virtual node
+				BitSet allowed = new BitSet();
+				allowed.set(0, snapshot.size());
+				allowed.set(end);
+				ShortestPathTree tree = DijkstraSearch.shortestPathTree(query, end, allowed);
+
+				for (int tower = 0; tower < snapshot.size(); tower++) {
+					double bound = landmarks.lowerBound(query, tower, target);
+					if (!tree.reaches(tower)) continue;
+					double distance = length(query, tree.pathTo(tower));
+					assertTrue(bound <= distance, "tower " + tower + " bound " + bound + " > " + distance + " in query " + q);
+					double straight = GeoMath.distanceKm(query.lat(tower), query.lon(tower), query.lat(end), query.lon(end));
+					if (bound > straight) tighter++;
+					checked++;
+				}
+			}
+		}
+		// Otherwise the landmarks add nothing over the straight line
+		assertTrue(tighter > checked / 10, tighter + " of " + checked + " bounds beat the straight line");
+	}
+
+	@Test
+	void aStarWithLandmarksMatchesDijkstra() {
+		Random random = new Random(52);
+		for (int count : new int[] {600, 1500}) {
+			TowerSnapshot snapshot = randomSnapshot(random, count, 1.6);
+
+			for (int q = 0; q < 200; q++) {
+				// Only the two ends are virtual, as in the path services; a spare virtual node would
+				// join towers that the landmark distances only know a detour between
+				boolean towerEnd = q % 3 == 0;
+				QueryGraph query = new QueryGraph(snapshot, towerEnd ? List.of(randomPoint(random, 1.6))
+						: List.of(randomPoint(random, 1.6), randomPoint(random, 1.6)));
+				int start = query.virtualNode(0);
+				int end = towerEnd ? random.nextInt(snapshot.size()) : query.virtualNode(1);
+
+				int[] expected = DijkstraSearch.findPath(query, start, end, null);
+				int[] actual = AStarSearch.findPath(query, start, end, 1, 0, Double.POSITIVE_INFINITY);
+				assertEquals(expected.length == 0, actual.length == 0, "reachability of query " + q);
+				if (expected.length == 0) continue;
+				assertEquals(start, actual[0]);
+				assertEquals(end, actual[actual.length - 1]);
+				assertEquals(length(query, expected), length(query, actual), 1e-6, "length of query " + q);
+			}
+		}
+	}
+}
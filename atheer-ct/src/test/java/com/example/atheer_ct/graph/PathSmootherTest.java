@@ -0,0 +1,65 @@
+package com.example.atheer_ct.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static com.example.atheer_ct.graph.BackboneSelectionTest.randomPoint;
+import static com.example.atheer_ct.graph.BackboneSelectionTest.randomSnapshot;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PathSmootherTest {
+
+	@Test
+	void lensQueryMatchesBothLinkRanges() {
+		Random random = new Random(4);
+		TowerSnapshot snapshot = randomSnapshot(random, 3000, 1.5);
+		GeoKernel kernel = snapshot.getGeoKernel();
+
+		for (int q = 0; q < 500; q++) {
+			double lat1 = 25 + random.nextDouble() * 1.5;
+			double lon1 = 49 + random.nextDouble() * 1.5;
+			double[] p1 = GeoKernel.unitVector(lat1, lon1);
+			// Second point close enough for the two discs to overlap most of the time
+			double lat3 = lat1 + (random.nextDouble() - 0.5) * 0.3;
+			double lon3 = lon1 + (random.nextDouble() - 0.5) * 0.3;
+			double[] p3 = GeoKernel.unitVector(lat3, lon3);
+
+			int[] expected = IntStream.range(0, snapshot.size())
+					.filter(t -> kernel.inLinkRange(t, p1) && kernel.inLinkRange(t, p3))
+					.toArray();
+			assertArrayEquals(expected, snapshot.getSpatialIndex()
+					.withinLens(lat1, lon1, lat3, lon3, TowerGraph.MAX_TOWER_DISTANCE));
+		}
+	}
+
+	@Test
+	void smoothedPathsStayLinkedAndNeverGrow() {
+		Random random = new Random(6);
+		TowerSnapshot snapshot = randomSnapshot(random, 2000, 1.5);
+
+		int smoothed = 0;
+		for (int q = 0; q < 200; q++) {
+			QueryGraph query = new QueryGraph(snapshot, List.of(randomPoint(random, 1.5), randomPoint(random, 1.5)));
+			int start = query.virtualNode(0);
+			int end = query.virtualNode(1);
+			int[] path = BidirectionalBfs.findPath(query, start, end);
+			if (path.length == 0) continue;
+
+			int[] result = PathSmoother.smooth(query, path);
+			assertEquals(start, result[0]);
+			assertEquals(end, result[result.length - 1]);
+			assertTrue(result.length <= path.length, "query " + q + " grew");
+			for (int i = 1; i < result.length; i++) {
+				assertTrue(query.inLinkRange(result[i - 1], result[i]), "query " + q + " step " + i);
+			}
+			if (!Arrays.equals(path, result)) smoothed++;
+		}
+		assertTrue(smoothed > 0);
+	}
+}
@@ -0,0 +1,122 @@
+package com.example.atheer_ct.graph;
+
+import com.example.atheer_ct.dto.TowerDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.example.atheer_ct.graph.BackboneSelectionTest.randomPoint;
+import static com.example.atheer_ct.graph.BackboneSelectionTest.randomSnapshot;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TowerCellsTest {
+
+	@Test
+	void corridorAlwaysHoldsAPathBetweenConnectedEnds() {
+		Random random = new Random(8);
+		// Sparse enough to leave several components, so both outcomes are exercised
+		TowerSnapshot snapshot = randomSnapshot(random, 2500, 3.0);
+		TowerCells cells = snapshot.getCells();
+
+		int connected = 0;
+		int disconnected = 0;
+		for (int q = 0; q < 300; q++) {
+			QueryGraph query = new QueryGraph(snapshot, List.of(randomPoint(random, 3.0), randomPoint(random, 3.0)));
+			int start = query.virtualNode(0);
+			int end = query.virtualNode(1);
+			if (query.realAttachments(start).length == 0 || query.realAttachments(end).length == 0) continue;
+
+			BitSet corridor = cells.corridor(query, start, end, 1);
+			if (!query.hasChain(start, end)) {
+				assertNull(corridor, "query " + q);
+				disconnected++;
+				continue;
+			}
+			assertNotNull(corridor, "query " + q);
+			int[] path = HopCostSearch.findPath(query, start, end, 0.1, corridor);
+			assertTrue(path.length > 0, "query " + q + " has no path inside its corridor");
+			assertEquals(start, path[0]);
+			assertEquals(end, path[path.length - 1]);
+			for (int i = 0; i < path.length; i++) {
+				assertTrue(corridor.get(path[i]), "query " + q + " leaves the corridor");
+				if (i > 0) assertTrue(query.inLinkRange(path[i - 1], path[i]), "query " + q + " step " + i);
+			}
+			connected++;
+		}
+		assertTrue(connected > 0 && disconnected > 0, connected + " connected, " + disconnected + " disconnected");
+	}
+
+	@Test
+	void corridorHopGapIsSmallAndVisibleInTheHopCount() {
+		Random random = new Random(9);
+		TowerSnapshot snapshot = roadSnapshot(random, 4000, 1200);
+		TowerCells cells = snapshot.getCells();
+
+		int queries = 0;
+		int fewestHops = 0;
+		int extraHops = 0;
+		int gapped = 0;
+		for (int q = 0; q < 150; q++) {
+			QueryGraph query = new QueryGraph(snapshot, List.of(nearTower(random, snapshot), nearTower(random, snapshot)));
+			int start = query.virtualNode(0);
+			int end = query.virtualNode(1);
+			int[] full = HopCostSearch.findPath(query, start, end, 0.1);
+			if (full.length == 0) continue;
+
+			int[] corridorPath = HopCostSearch.findPath(query, start, end, 0.1, cells.corridor(query, start, end, 1));
+			int gap = corridorPath.length - full.length;
+			assertTrue(gap >= 0, "query " + q + " beat the full search");
+			// CombinedPathService drops a corridor path longer than the exact count, which the hop
+			// matrix and hierarchy give as a breadth-first search would
+			assertEquals(full.length, BidirectionalBfs.findPath(query, start, end).length, "query " + q);
+			queries++;
+			fewestHops += full.length - 1;
+			extraHops += gap;
+			if (gap > 0) gapped++;
+		}
+		// Towers along roads with sparse ones between them: the shortest cluster route sometimes
+		// crosses the sparse area and costs a few hops, but only for a few queries
+		assertTrue(queries > 100);
+		assertTrue(gapped > 0 && gapped * 10 < queries, gapped + " of " + queries + " queries lost hops");
+		assertTrue(extraHops * 20 <= fewestHops, extraHops + " extra hops over " + fewestHops);
+	}
+
+	// background towers spread evenly, the rest scattered along a loop of random road segments
+	private static TowerSnapshot roadSnapshot(Random random, int count, int background) {
+		double[][] junctions = new double[8][];
+		for (int j = 0; j < junctions.length; j++) {
+			junctions[j] = new double[] {24 + random.nextDouble() * 3, 45 + random.nextDouble() * 3};
+		}
+		List<TowerDto> towers = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			double lat = 24 + random.nextDouble() * 3;
+			double lon = 45 + random.nextDouble() * 3;
+			if (i >= background) {
+				int j = random.nextInt(junctions.length);
+				double[] from = junctions[j];
+				double[] to = junctions[(j + 1) % junctions.length];
+				double f = random.nextDouble();
+				lat = from[0] + (to[0] - from[0]) * f + (random.nextDouble() - 0.5) * 0.1;
+				lon = from[1] + (to[1] - from[1]) * f + (random.nextDouble() - 0.5) * 0.1;
+			}
+			towers.add(TowerDto.builder().id((long) i).latitude(lat).longitude(lon).build());
+		}
+		return new TowerSnapshot(1, towers, ForkJoinPool.commonPool(), 0, false);
+	}
+
+	// A point a few km off a random tower, so it is linked to the towers around it
+	private static TowerDto nearTower(Random random, TowerSnapshot snapshot) {
+		TowerDto tower = snapshot.getTowers().get(random.nextInt(snapshot.size()));
+		return TowerDto.builder()
+				.latitude(tower.getLatitude() + (random.nextDouble() - 0.5) * 0.05)
+				.longitude(tower.getLongitude() + (random.nextDouble() - 0.5) * 0.05)
+				.build();
+	}
+}
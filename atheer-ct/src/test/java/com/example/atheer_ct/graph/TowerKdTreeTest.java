@@ -0,0 +1,169 @@
+package com.example.atheer_ct.graph;
+
+import com.example.atheer_ct.dto.TowerDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TowerKdTreeTest {
+
+	// Towers this close to the cut-off distance may legitimately fall either way
+	private static final double THRESHOLD_SLACK_KM = 1e-6;
+	// Haversine loses precision near antipodal points
+	private static final double ANTIPODAL_SLACK_KM = 1e-3;
+
+	@Test
+	void nearestMatchesBruteForceHaversine() {
+		Random random = new Random(31);
+		List<TowerDto> towers = towers(random, 3000, 25, 49, 1.5, 1.5);
+		TowerKdTree tree = tree(towers);
+
+		for (int q = 0; q < 300; q++) {
+			double lat = 24.8 + random.nextDouble() * 1.9;
+			double lon = 48.8 + random.nextDouble() * 1.9;
+			int k = 1 + random.nextInt(q % 3 == 0 ? 500 : 20);
+			assertNearest(towers, tree.nearest(lat, lon, k), lat, lon, k);
+		}
+	}
+
+	@Test
+	void nearestWithKOutsideTheTowerCount() {
+		Random random = new Random(32);
+		List<TowerDto> towers = towers(random, 200, 25, 49, 1.5, 1.5);
+		TowerKdTree tree = tree(towers);
+
+		assertEquals(0, tree.nearest(25.5, 49.5, 0).length);
+		assertEquals(0, tree.nearest(25.5, 49.5, -3).length);
+		// More than there are towers returns all of them, nearest first
+		int[] all = tree.nearest(25.5, 49.5, 1000);
+		assertEquals(towers.size(), all.length);
+		assertNearest(towers, all, 25.5, 49.5, towers.size());
+		assertEquals(0, tree(List.of()).nearest(25.5, 49.5, 5).length);
+	}
+
+	@Test
+	void nearestBreaksEqualDistancesByLowestId() {
+		// Four towers the same distance east, west, north and south of the query, each listed
+		// twice, and one tower further out. Any k short of all eight tied towers must keep the
+		// lowest ids, whatever order the tree visits them in
+		List<TowerDto> towers = new ArrayList<>();
+		double[][] points = {{0, 0.05}, {0.05, 0}, {0, -0.05}, {-0.05, 0}, {0.2, 0.2}};
+		for (int copy = 0; copy < 2; copy++) {
+			for (double[] p : points) {
+				towers.add(TowerDto.builder().id((long) towers.size()).latitude(p[0]).longitude(p[1]).build());
+			}
+		}
+		TowerKdTree tree = tree(towers);
+
+		int[] tied = {0, 1, 2, 3, 5, 6, 7, 8};
+		for (int k = 1; k <= tied.length; k++) {
+			assertArrayEquals(Arrays.copyOf(tied, k), tree.nearest(0, 0, k), "k = " + k);
+		}
+		assertArrayEquals(new int[] {0, 1, 2, 3, 5, 6, 7, 8, 4, 9}, tree.nearest(0, 0, 10));
+	}
+
+	@Test
+	void withinRadiusMatchesBruteForceHaversine() {
+		Random random = new Random(33);
+		List<TowerDto> towers = towers(random, 3000, 25, 49, 1.5, 1.5);
+		TowerKdTree tree = tree(towers);
+
+		for (int q = 0; q < 300; q++) {
+			double lat = 24.8 + random.nextDouble() * 1.9;
+			double lon = 48.8 + random.nextDouble() * 1.9;
+			double radius = random.nextDouble() * (q % 3 == 0 ? 80 : 15);
+			assertWithinRadius(towers, tree.withinRadius(lat, lon, radius), lat, lon, radius, THRESHOLD_SLACK_KM);
+		}
+		assertEquals(0, tree.withinRadius(25.5, 49.5, -1).length);
+	}
+
+	@Test
+	void withinRadiusAroundHalfTheCircumference() {
+		// Towers over the whole globe and radii from just short of the antipode to past it
+		Random random = new Random(34);
+		List<TowerDto> towers = towers(random, 4000, -80, -180, 160, 360);
+		TowerKdTree tree = tree(towers);
+		double halfCircumference = Math.PI * GeoMath.EARTH_RADIUS_KM;
+
+		for (double shortKm : new double[] {500, 50, 5, 0.5}) {
+			int found = assertWithinRadius(towers, tree.withinRadius(20, 40, halfCircumference - shortKm), 20, 40,
+					halfCircumference - shortKm, ANTIPODAL_SLACK_KM);
+			assertTrue(found > towers.size() / 2, shortKm + " km short: " + found);
+		}
+		// Every tower is within half the circumference, and a larger radius changes nothing
+		assertEquals(towers.size(), tree.withinRadius(20, 40, halfCircumference).length);
+		assertEquals(towers.size(), tree.withinRadius(20, 40, 3 * halfCircumference).length);
+	}
+
+	/**
+	 * Checks a nearest answer against every tower sorted by haversine distance, then id.
+	 */
+	private static void assertNearest(List<TowerDto> towers, int[] actual, double lat, double lon, int k) {
+		Integer[] order = new Integer[towers.size()];
+		double[] distance = new double[towers.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+			distance[i] = GeoMath.distanceKm(lat, lon, towers.get(i).getLatitude(), towers.get(i).getLongitude());
+		}
+		Arrays.sort(order, Comparator.<Integer>comparingDouble(i -> distance[i]).thenComparingInt(i -> i));
+
+		String message = "k = " + k + " at " + lat + ", " + lon;
+		assertEquals(Math.min(k, towers.size()), actual.length, message);
+		int[] ids = actual.clone();
+		Arrays.sort(ids);
+		for (int i = 0; i < actual.length; i++) {
+			assertEquals(distance[order[i]], distance[actual[i]], THRESHOLD_SLACK_KM, message + " rank " + i);
+			if (i > 0) assertTrue(ids[i] != ids[i - 1], message + " repeats " + ids[i]);
+		}
+		// Whatever is clearly closer than the k-th tower has to be in the answer
+		double kth = distance[order[actual.length - 1]];
+		for (int i = 0; i < actual.length; i++) {
+			if (distance[order[i]] < kth - THRESHOLD_SLACK_KM) {
+				assertTrue(Arrays.binarySearch(ids, order[i]) >= 0, message + " misses " + order[i]);
+			}
+		}
+	}
+
+	/**
+	 * Checks a withinRadius answer against the haversine distance of every tower and returns how
+	 * many towers it found.
+	 */
+	private static int assertWithinRadius(List<TowerDto> towers, int[] actual, double lat, double lon,
+										  double radius, double slackKm) {
+		for (int i = 1; i < actual.length; i++) {
+			assertTrue(actual[i - 1] < actual[i], "not ascending at " + i);
+		}
+		for (TowerDto t : towers) {
+			double distance = GeoMath.distanceKm(lat, lon, t.getLatitude(), t.getLongitude());
+			if (Math.abs(distance - radius) < slackKm) continue;
+			boolean found = Arrays.binarySearch(actual, t.getId().intValue()) >= 0;
+			assertEquals(distance <= radius, found, "tower " + t.getId() + " at " + distance + " for " + radius);
+		}
+		return actual.length;
+	}
+
+	private static List<TowerDto> towers(Random random, int count, double minLat, double minLon,
+										 double latSpan, double lonSpan) {
+		List<TowerDto> towers = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			towers.add(TowerDto.builder()
+					.id((long) i)
+					.latitude(minLat + random.nextDouble() * latSpan)
+					.longitude(minLon + random.nextDouble() * lonSpan)
+					.build());
+		}
+		return towers;
+	}
+
+	private static TowerKdTree tree(List<TowerDto> towers) {
+		return TowerKdTree.build(new GeoKernel(new TowerStore(towers)));
+	}
+}
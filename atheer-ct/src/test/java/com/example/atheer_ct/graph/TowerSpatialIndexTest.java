@@ -0,0 +1,113 @@
+package com.example.atheer_ct.graph;
+
+import com.example.atheer_ct.dto.TowerDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TowerSpatialIndexTest {
+
+	// Towers closer than this to the ellipse boundary may legitimately fall either way
+	private static final double THRESHOLD_SLACK_KM = 1e-6;
+	// Haversine loses precision near antipodal points
+	private static final double ANTIPODAL_SLACK_KM = 1e-3;
+
+	@Test
+	void ellipseQueryMatchesBruteForceHaversine() {
+		Random random = new Random(5);
+		List<TowerDto> towers = towers(random, 3000, 25, 49, 1.5, 1.5);
+		TowerSpatialIndex index = index(towers);
+
+		for (int q = 0; q < 300; q++) {
+			double lat1 = 25 + random.nextDouble() * 1.5;
+			double lon1 = 49 + random.nextDouble() * 1.5;
+			double lat2 = 25 + random.nextDouble() * 1.5;
+			double lon2 = 49 + random.nextDouble() * 1.5;
+			double focalSum = GeoMath.distanceKm(lat1, lon1, lat2, lon2) * (1 + random.nextDouble()) + 5;
+
+			assertMatchesBruteForce(towers, index, lat1, lon1, lat2, lon2, focalSum, THRESHOLD_SLACK_KM);
+		}
+	}
+
+	@Test
+	void ellipseQueryAroundAHalfCircumferenceFocalSum() {
+		// Towers over the whole globe and foci about 60 km short of antipodal, so focal sums
+		// run from just under to just over half the circumference
+		Random random = new Random(6);
+		List<TowerDto> towers = towers(random, 4000, -80, -180, 160, 360);
+		TowerSpatialIndex index = index(towers);
+		double halfCircumference = Math.PI * GeoMath.EARTH_RADIUS_KM;
+
+		for (double excessKm : new double[] {-40, -5, -0.5, 0, 0.5, 5, 40}) {
+			int found = assertMatchesBruteForce(towers, index, 20, 40, -19.6, -139.7,
+					halfCircumference + excessKm, ANTIPODAL_SLACK_KM);
+			// Either side of the boundary leaves towers both in and out
+			assertTrue(found > 0 && found < towers.size(), excessKm + " km: " + found);
+		}
+	}
+
+	@Test
+	void ellipseQueryWithTheCoveringDiscPastTheGridEdge() {
+		Random random = new Random(8);
+		List<TowerDto> towers = towers(random, 3000, 25, 49, 1.5, 1.5);
+		TowerSpatialIndex index = index(towers);
+
+		// Midpoints outside the towers' bounding box or right on its edge; the covering disc
+		// reaches into the grid from there
+		double[][] foci = {
+				{24.6, 48.7, 25.1, 49.2},
+				{26.9, 50.8, 26.3, 50.1},
+				{24.9, 50.6, 25.05, 50.45},
+				{25.75, 48.6, 25.75, 49.3},
+				{26.8, 49.5, 26.3, 49.8},
+		};
+		for (double[] f : foci) {
+			double focalSum = GeoMath.distanceKm(f[0], f[1], f[2], f[3]) + 20;
+			int found = assertMatchesBruteForce(towers, index, f[0], f[1], f[2], f[3], focalSum, THRESHOLD_SLACK_KM);
+			assertTrue(found > 0, Arrays.toString(f));
+		}
+	}
+
+	/**
+	 * Checks withinEllipse against the haversine focal sum of every tower and returns how many
+	 * towers it found.
+	 */
+	private static int assertMatchesBruteForce(List<TowerDto> towers, TowerSpatialIndex index, double lat1,
+											   double lon1, double lat2, double lon2, double focalSum, double slackKm) {
+		int[] actual = index.withinEllipse(lat1, lon1, lat2, lon2, focalSum);
+		int matched = 0;
+		for (TowerDto t : towers) {
+			double sum = GeoMath.distanceKm(lat1, lon1, t.getLatitude(), t.getLongitude())
+					+ GeoMath.distanceKm(t.getLatitude(), t.getLongitude(), lat2, lon2);
+			boolean found = Arrays.binarySearch(actual, t.getId().intValue()) >= 0;
+			if (found) matched++;
+			if (Math.abs(sum - focalSum) < slackKm) continue;
+			assertEquals(sum <= focalSum, found, "tower " + t.getId() + " at focal sum " + sum + " for " + focalSum);
+		}
+		assertEquals(actual.length, matched);
+		return actual.length;
+	}
+
+	private static List<TowerDto> towers(Random random, int count, double minLat, double minLon,
+										 double latSpan, double lonSpan) {
+		List<TowerDto> towers = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			towers.add(TowerDto.builder()
+					.id((long) i)
+					.latitude(minLat + random.nextDouble() * latSpan)
+					.longitude(minLon + random.nextDouble() * lonSpan)
+					.build());
+		}
+		return towers;
+	}
+
+	private static TowerSpatialIndex index(List<TowerDto> towers) {
+		return TowerSpatialIndex.build(towers, new GeoKernel(new TowerStore(towers)), TowerGraph.MAX_TOWER_DISTANCE);
+	}
+}
@@ -0,0 +1,111 @@
+package com.example.atheer_ct.services;
+
+import com.example.atheer_ct.dto.TowerDto;
+import com.example.atheer_ct.graph.GeoMath;
+import com.example.atheer_ct.graph.HopCostSearch;
+import com.example.atheer_ct.graph.QueryGraph;
+import com.example.atheer_ct.graph.TowerSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CombinedPathServiceTest {
+
+	@Test
+	void ellipsePathWithMoreTowersGivesWayToTheFewestTowerPath() {
+		// Start and end 100 km apart. Towers every 5.5 km on the straight line between them take
+		// 19 links; an arc bulging 40 km north takes 14, but its apex is outside an ellipse
+		// that only spans the direct distance
+		List<TowerDto> towers = new ArrayList<>();
+		for (int i = 1; i <= 18; i++) {
+			towers.add(at(5.5 * i, 0));
+		}
+		double radius = (50 * 50 + 40 * 40) / (2.0 * 40);
+		double half = Math.asin(50 / radius);
+		for (int i = 1; i < 14; i++) {
+			double angle = -half + 2 * half * i / 14;
+			towers.add(at(50 + radius * Math.sin(angle), 40 - radius + radius * Math.cos(angle)));
+		}
+		TowerSnapshot snapshot = snapshot(towers);
+		snapshot.hierarchiesReady().join();
+		TowerDto start = at(0, 0);
+		TowerDto end = at(100, 0);
+
+		// The layout does what it is meant to: the tightest ellipse alone misses the arc
+		QueryGraph query = new QueryGraph(snapshot, List.of(start, end));
+		int[] inEllipse = HopCostSearch.findPath(query, query.virtualNode(0), query.virtualNode(1), 0.1,
+				ellipse(query, 100 + 2 * 10.1));
+		int[] unrestricted = HopCostSearch.findPath(query, query.virtualNode(0), query.virtualNode(1), 0.1);
+		assertTrue(inEllipse.length > unrestricted.length, inEllipse.length + " <= " + unrestricted.length);
+
+		TowerService towerService = towerService(snapshot);
+		List<TowerDto> corridorPath = path(new CombinedPathService(towerService, 0, 1.0), start, end);
+		List<TowerDto> fullPath = path(new CombinedPathService(towerService, 0, 0), start, end);
+		assertEquals(unrestricted.length, fullPath.size());
+		assertEquals(ids(fullPath), ids(corridorPath));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<TowerDto> path(CombinedPathService service, TowerDto start, TowerDto end) {
+		Map<String, Object> result = service.findShortestPath(start.getLatitude(), start.getLongitude(),
+				end.getLatitude(), end.getLongitude());
+		return (List<TowerDto>) result.get("path");
+	}
+
+	private static List<Long> ids(List<TowerDto> path) {
+		List<Long> ids = new ArrayList<>();
+		for (TowerDto tower : path) {
+			ids.add(tower.getId());
+		}
+		return ids;
+	}
+
+	private static BitSet ellipse(QueryGraph query, double focalSumKm) {
+		int start = query.virtualNode(0);
+		int end = query.virtualNode(1);
+		BitSet allowed = new BitSet();
+		for (int tower : query.getSnapshot().getSpatialIndex().withinEllipse(query.lat(start), query.lon(start),
+				query.lat(end), query.lon(end), focalSumKm)) {
+			allowed.set(tower);
+		}
+		allowed.set(start);
+		allowed.set(end);
+		return allowed;
+	}
+
+	private static TowerService towerService(TowerSnapshot snapshot) {
+		return new TowerService(null, ForkJoinPool.commonPool(), 0, false) {
+			@Override
+			public TowerSnapshot getSnapshot() {
+				return snapshot;
+			}
+		};
+	}
+
+	private static TowerSnapshot snapshot(List<TowerDto> towers) {
+		List<TowerDto> numbered = new ArrayList<>();
+		for (int i = 0; i < towers.size(); i++) {
+			numbered.add(TowerDto.builder()
+					.id((long) i)
+					.latitude(towers.get(i).getLatitude())
+					.longitude(towers.get(i).getLongitude())
+					.build());
+		}
+		return new TowerSnapshot(1, numbered, ForkJoinPool.commonPool(), 0, false);
+	}
+
+	// Point the given km east and north of 25N 49E
+	private static TowerDto at(double eastKm, double northKm) {
+		return TowerDto.builder()
+				.latitude(25 + northKm / GeoMath.KM_PER_DEGREE)
+				.longitude(49 + eastKm / (GeoMath.KM_PER_DEGREE * Math.cos(Math.toRadians(25))))
+				.build();
+	}
+}
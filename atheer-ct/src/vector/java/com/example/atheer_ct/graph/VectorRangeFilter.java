@@ -0,0 +1,41 @@
+package com.example.atheer_ct.graph;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link RangeFilter} on the Vector API: the dot products of a whole vector of towers are
+ * computed and compared at once, and only the lanes that pass are unpacked into the result.
+ * The arithmetic is the same multiply-then-add sequence as the scalar filter (no fused
+ * multiply-add), so both return exactly the same towers. Created by {@link RangeFilter#create}
+ * only when the incubator module is present.
+ */
+final class VectorRangeFilter implements RangeFilter {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void filter(double[] x, double[] y, double[] z, int from, int to,
+                       double[] point, double minDot, TowerSpatialIndex.IntBuffer out) {
+        DoubleVector px = DoubleVector.broadcast(SPECIES, point[0]);
+        DoubleVector py = DoubleVector.broadcast(SPECIES, point[1]);
+        DoubleVector pz = DoubleVector.broadcast(SPECIES, point[2]);
+
+        int i = from;
+        int upper = from + SPECIES.loopBound(to - from);
+        for (; i < upper; i += SPECIES.length()) {
+            DoubleVector dot = DoubleVector.fromArray(SPECIES, x, i).mul(px)
+                    .add(DoubleVector.fromArray(SPECIES, y, i).mul(py))
+                    .add(DoubleVector.fromArray(SPECIES, z, i).mul(pz));
+            VectorMask<Double> inRange = dot.compare(VectorOperators.GE, minDot);
+            if (inRange.anyTrue()) {
+                for (long bits = inRange.toLong(); bits != 0; bits &= bits - 1) {
+                    out.add(i + Long.numberOfTrailingZeros(bits));
+                }
+            }
+        }
+        SCALAR.filter(x, y, z, i, to, point, minDot, out);
+    }
+}